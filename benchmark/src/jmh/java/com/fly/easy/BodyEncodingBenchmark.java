@@ -0,0 +1,43 @@
+package com.fly.easy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Map;
+
+import okio.Buffer;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * POST参数编码为JSON和表单 包括写出请求体
+ */
+
+@State(Scope.Benchmark)
+public class BodyEncodingBenchmark {
+
+    @Param({"JSON", "FORM"})
+    public String encoding;
+
+    @Param({"1", "8", "32"})
+    public int paramCount;
+
+    private RequestBodyEncoder encoder;
+    private Map<String, Object> params;
+
+    @Setup
+    public void setup() {
+        encoder = "JSON".equals(encoding) ? RequestBodyEncoder.JSON : RequestBodyEncoder.FORM;
+        params = SpliceParamsBenchmark.Params.create(paramCount);
+    }
+
+    @Benchmark
+    public long encode() throws IOException {
+        Buffer buffer = new Buffer();
+        encoder.encode(params).writeTo(buffer);
+        return buffer.size();
+    }
+}
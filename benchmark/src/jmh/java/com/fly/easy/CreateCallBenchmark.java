@@ -0,0 +1,43 @@
+package com.fly.easy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * {@link EasyOKHttp#createCall(Object, EasyOptions)} 请求模板缓存命中和未命中
+ * 未命中时每次都会创建{@link ServiceMethod}并淘汰一个旧的模板
+ */
+
+@State(Scope.Benchmark)
+public class CreateCallBenchmark {
+
+    private EasyOKHttp easyOKHttp;
+    private EasyOptions options;
+
+    @Setup
+    public void setup() {
+        easyOKHttp = new EasyOKHttp.Builder()
+                .baseUrl("http://localhost/")
+                .directCallbackExecutor()
+                .build();
+        options = new EasyOptions.OKHttpOptionsBuilder()
+                .path("user/detail")
+                .param("id", 10086)
+                .param("fields", "name,avatar")
+                .build();
+        easyOKHttp.createCall("hit", options);
+    }
+
+    @Benchmark
+    public EasyCall cacheHit() {
+        return easyOKHttp.createCall("hit", options);
+    }
+
+    @Benchmark
+    public EasyCall cacheMiss() {
+        return easyOKHttp.createCall(new Object(), options);
+    }
+}
@@ -0,0 +1,54 @@
+package com.fly.easy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import okhttp3.Request;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * Domain-Name请求头的地址替换 绝大多数请求没有Domain-Name
+ */
+
+@State(Scope.Benchmark)
+public class DomainRewriteBenchmark {
+
+    private EasyOKHttp easyOKHttp;
+    private Request plainRequest;
+    private Request routedRequest;
+
+    @Setup
+    public void setup() {
+        Map<String, String> baseUrls = new HashMap<>();
+        for (int i = 0; i < 16; i++) {
+            baseUrls.put("domain" + i, "https://api" + i + ".example.com/");
+        }
+        easyOKHttp = new EasyOKHttp.Builder()
+                .baseUrl("http://localhost/")
+                .baseUrls(baseUrls)
+                .directCallbackExecutor()
+                .build();
+        plainRequest = new Request.Builder()
+                .url("http://localhost/user/detail?id=10086")
+                .build();
+        routedRequest = new Request.Builder()
+                .url("http://localhost/user/detail?id=10086")
+                .header("Domain-Name", "domain7")
+                .build();
+    }
+
+    @Benchmark
+    public Request withoutDomainName() {
+        return easyOKHttp.resetRequest(plainRequest);
+    }
+
+    @Benchmark
+    public Request withDomainName() {
+        return easyOKHttp.resetRequest(routedRequest);
+    }
+}
@@ -0,0 +1,79 @@
+package com.fly.easy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 通过本地的{@link LocalHttpServer}完成整个请求 包括参数绑定、分发、读取响应和回调
+ * SampleTime模式输出延迟的分位数
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+public class EndToEndBenchmark {
+
+    @Param({"1024", "65536"})
+    public int bodySize;
+
+    private LocalHttpServer server;
+    private EasyOKHttp easyOKHttp;
+    private EasyOptions options;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] body = new byte[bodySize];
+        Arrays.fill(body, (byte) 'a');
+        server = new LocalHttpServer(body);
+
+        easyOKHttp = new EasyOKHttp.Builder()
+                .baseUrl(server.url("/"))
+                .directCallbackExecutor()
+                .build();
+        options = new EasyOptions.OKHttpOptionsBuilder()
+                .path("user/detail")
+                .param("id", 10086)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Benchmark
+    public EasyResponse<?> enqueue() throws Throwable {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<EasyResponse<?>> response = new AtomicReference<>();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        easyOKHttp.createCall("detail", options).enqueue(new EasyCallback<Object>() {
+            @Override
+            public void onResponse(EasyCall call, EasyResponse<Object> r) {
+                response.set(r);
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(EasyCall call, Throwable t) {
+                failure.set(t);
+                latch.countDown();
+            }
+        });
+        latch.await();
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return response.get();
+    }
+}
@@ -0,0 +1,98 @@
+package com.fly.easy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 本地的HTTP/1.1服务 对所有GET请求返回固定的响应体
+ * <p>
+ * 响应头和响应体一次写出并且关闭Nagle算法 避免MockWebServer分开写出时
+ * 与延迟确认叠加出现的约40毫秒等待 让结果反映客户端自身的开销
+ */
+
+final class LocalHttpServer implements Closeable {
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ByteString response;
+
+    LocalHttpServer(byte[] body) throws IOException {
+        Buffer buffer = new Buffer()
+                .writeUtf8("HTTP/1.1 200 OK\r\n")
+                .writeUtf8("Content-Type: application/json; charset=utf-8\r\n")
+                .writeUtf8("Content-Length: " + body.length + "\r\n")
+                .writeUtf8("\r\n")
+                .write(body);
+        response = buffer.readByteString();
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("localhost"));
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        });
+    }
+
+    String url(String path) {
+        return "http://localhost:" + serverSocket.getLocalPort() + path;
+    }
+
+    private void acceptConnections() {
+        try {
+            while (true) {
+                final Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(socket);
+                    }
+                });
+            }
+        } catch (IOException ignored) {
+            // 关闭
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            BufferedSource source = Okio.buffer(Okio.source(socket));
+            BufferedSink sink = Okio.buffer(Okio.sink(socket));
+            while (true) {
+                // 请求行和请求头 GET请求没有请求体
+                String line = source.readUtf8LineStrict();
+                while (!line.isEmpty()) {
+                    line = source.readUtf8LineStrict();
+                }
+                sink.write(response);
+                sink.flush();
+            }
+        } catch (IOException ignored) {
+            // 客户端断开连接
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+}
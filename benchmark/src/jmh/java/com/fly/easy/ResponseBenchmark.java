@@ -0,0 +1,68 @@
+package com.fly.easy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 创建{@link EasyResponse} 一次性读取响应体和流式读取
+ * 每次都会把响应体复制到新的Buffer中 这部分开销也包含在结果里
+ */
+
+@State(Scope.Benchmark)
+public class ResponseBenchmark {
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    @Param({"1024", "65536", "1048576", "10485760"})
+    public int bodySize;
+
+    private byte[] body;
+    private Request request;
+
+    @Setup
+    public void setup() {
+        body = new byte[bodySize];
+        Arrays.fill(body, (byte) 'a');
+        request = new Request.Builder().url("http://localhost/").build();
+    }
+
+    private Response rawResponse() {
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body(ResponseBody.create(JSON, body))
+                .build();
+    }
+
+    @Benchmark
+    public EasyResponse<?> buffered() throws IOException {
+        Response raw = rawResponse();
+        return new EasyResponse<>(raw, raw.body(), false);
+    }
+
+    @Benchmark
+    public long streaming() throws IOException {
+        Response raw = rawResponse();
+        EasyResponse<?> response = new EasyResponse<>(raw, raw.body(), true);
+        try {
+            return response.source().readByteString().size();
+        } finally {
+            response.close();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.fly.easy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * {@link ServiceMethod.Builder#build()} 创建请求模板的开销
+ */
+
+@State(Scope.Benchmark)
+public class ServiceMethodBuilderBenchmark {
+
+    private EasyOKHttp easyOKHttp;
+    private EasyOptions getOptions;
+    private EasyOptions postOptions;
+
+    @Setup
+    public void setup() {
+        easyOKHttp = new EasyOKHttp.Builder()
+                .baseUrl("http://localhost/")
+                .directCallbackExecutor()
+                .build();
+        easyOKHttp.initHttpClient();
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept", "application/json");
+        headers.put("User-Agent", "EasyOKHttp-Benchmark");
+        getOptions = new EasyOptions.OKHttpOptionsBuilder()
+                .path("user/detail")
+                .header(headers)
+                .param("id", 10086)
+                .build();
+        postOptions = new EasyOptions.OKHttpOptionsBuilder()
+                .method(EasyOptions.POST)
+                .path("user/update")
+                .header(headers)
+                .param("id", 10086)
+                .build();
+    }
+
+    @Benchmark
+    public ServiceMethod buildGet() {
+        return new ServiceMethod.Builder(easyOKHttp, getOptions).build();
+    }
+
+    @Benchmark
+    public ServiceMethod buildPost() {
+        return new ServiceMethod.Builder(easyOKHttp, postOptions).build();
+    }
+}
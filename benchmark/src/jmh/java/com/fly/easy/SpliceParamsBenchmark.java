@@ -0,0 +1,69 @@
+package com.fly.easy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * GET参数编码 以及每次请求绑定参数生成{@link Request}
+ */
+
+@State(Scope.Benchmark)
+public class SpliceParamsBenchmark {
+
+    @Param({"1", "8", "32"})
+    public int paramCount;
+
+    private Map<String, Object> params;
+    private ServiceMethod serviceMethod;
+
+    @Setup
+    public void setup() {
+        params = Params.create(paramCount);
+        EasyOKHttp easyOKHttp = new EasyOKHttp.Builder()
+                .baseUrl("http://localhost/")
+                .directCallbackExecutor()
+                .build();
+        easyOKHttp.initHttpClient();
+        serviceMethod = new ServiceMethod.Builder(easyOKHttp, new EasyOptions.OKHttpOptionsBuilder()
+                .path("search?from=benchmark")
+                .build()).build();
+    }
+
+    @Benchmark
+    public HttpUrl addQueryParameters() {
+        HttpUrl.Builder urlBuilder = serviceMethod.url.newBuilder();
+        ServiceMethod.addQueryParameters(urlBuilder, params);
+        return urlBuilder.build();
+    }
+
+    @Benchmark
+    public Request toRequest() {
+        return serviceMethod.toRequest(params);
+    }
+
+    static final class Params {
+        private Params() {
+        }
+
+        /**
+         * 一半的值包含需要编码的空格和中文 表单只支持字符串
+         */
+        static Map<String, Object> create(int count) {
+            Map<String, Object> params = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                params.put("key" + i, i % 2 == 0 ? "value " + i + " 中文" : String.valueOf(i));
+            }
+            return params;
+        }
+    }
+}
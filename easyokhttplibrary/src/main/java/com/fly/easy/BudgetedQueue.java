@@ -0,0 +1,62 @@
+package com.fly.easy;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 按时间预算分批执行的任务队列
+ * 任务先放入无锁队列 需要执行时通过scheduler安排一次{@link #drain()} 安排之后执行之前不会重复安排
+ * 每次执行不超过budget 剩下的任务留到下一次执行 任务的顺序不变
+ *
+ * @see CoalescingMainThreadExecutor
+ */
+
+final class BudgetedQueue {
+
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final long budgetNanos;
+    // 安排一次drain() 可以在任意线程中调用
+    private final Runnable scheduler;
+
+    BudgetedQueue(long budgetNanos, Runnable scheduler) {
+        this.budgetNanos = budgetNanos;
+        this.scheduler = scheduler;
+    }
+
+    void offer(Runnable r) {
+        queue.offer(r);
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            scheduler.run();
+        }
+    }
+
+    /**
+     * 执行队列中的任务 任务抛出异常时剩下的任务依然会安排执行
+     */
+    void drain() {
+        long deadline = System.nanoTime() + budgetNanos;
+        try {
+            Runnable r;
+            // 至少执行一个任务 保证队列在前进
+            while ((r = queue.poll()) != null) {
+                r.run();
+                if (System.nanoTime() - deadline >= 0) {
+                    break;
+                }
+            }
+        } finally {
+            scheduled.set(false);
+            // 超出预算剩下的任务 或者清空之后新加入的任务
+            if (!queue.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.fly.easy;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import okhttp3.ResponseBody;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 内置的转换器 总是优先于用户注册的转换器
+ */
+
+final class BuiltInConverters extends EasyConverter.Factory {
+
+    @Override
+    public EasyConverter<?> responseBodyConverter(Type type, EasyOKHttp easyOKHttp) {
+        if (type == String.class) {
+            return StringConverter.INSTANCE;
+        }
+        if (type == byte[].class) {
+            return BytesConverter.INSTANCE;
+        }
+        if (type == Void.class) {
+            return VoidConverter.INSTANCE;
+        }
+        return null;
+    }
+
+    static final class StringConverter implements EasyConverter<String> {
+        static final StringConverter INSTANCE = new StringConverter();
+
+        @Override
+        public String convert(ResponseBody value) throws IOException {
+            return value.string();
+        }
+    }
+
+    static final class BytesConverter implements EasyConverter<byte[]> {
+        static final BytesConverter INSTANCE = new BytesConverter();
+
+        @Override
+        public byte[] convert(ResponseBody value) throws IOException {
+            return value.bytes();
+        }
+    }
+
+    static final class VoidConverter implements EasyConverter<Void> {
+        static final VoidConverter INSTANCE = new VoidConverter();
+
+        @Override
+        public Void convert(ResponseBody value) throws IOException {
+            value.close();
+            return null;
+        }
+    }
+}
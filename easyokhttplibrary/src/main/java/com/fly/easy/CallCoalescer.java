@@ -0,0 +1,234 @@
+package com.fly.easy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 合并同时发出的相同GET请求
+ * 地址、请求头、响应体转换器都相同的请求共享同一个{@link Call} 结果读取一次后分发给所有回调
+ * 取消时按引用计数 所有请求都取消后才取消共享的{@link Call}
+ *
+ * @see EasyOptions.OKHttpOptionsBuilder#coalesce(boolean)
+ */
+
+final class CallCoalescer {
+
+    private final ConcurrentHashMap<RequestKey, InFlight> inFlights = new ConcurrentHashMap<>();
+
+    /**
+     * 加入一个正在进行的相同请求 没有则发起新的请求
+     */
+    InFlight enqueue(ServiceMethod serviceMethod, CallPolicy policy, RequestKey key, Request request,
+                     EasyCallImpl call, EasyCallback<Object> callback) {
+        while (true) {
+            InFlight inFlight = inFlights.get(key);
+            if (inFlight == null) {
+                InFlight created = new InFlight(key, serviceMethod, policy, request, call);
+                created.join(call, callback);
+                inFlight = inFlights.putIfAbsent(key, created);
+                if (inFlight == null) {
+                    created.start();
+                    return created;
+                }
+            }
+            if (inFlight.join(call, callback)) {
+                return inFlight;
+            }
+            // 已经完成或者全部取消 不能再加入
+            inFlights.remove(key, inFlight);
+        }
+    }
+
+    private static final class Subscriber {
+        final EasyCallImpl call;
+        final EasyCallback<Object> callback;
+        boolean canceled;
+
+        Subscriber(EasyCallImpl call, EasyCallback<Object> callback) {
+            this.call = call;
+            this.callback = callback;
+        }
+    }
+
+    final class InFlight implements Callback, RetryingCallback.Attempts {
+
+        private final RequestKey key;
+        private final ServiceMethod serviceMethod;
+        // 发起请求的调用的重试、对冲策略
+        private final CallPolicy policy;
+        private final Request request;
+        // 发起请求的调用 由它处理响应
+        private final EasyCallImpl leader;
+        private final List<Subscriber> subscribers = new ArrayList<>(2);
+        private int activeCount;
+        // 已经开始分发结果或者已经取消
+        private boolean closed;
+        private Call rawCall;
+        private RetryingCallback retry;
+        private HedgedCall hedged;
+
+        InFlight(RequestKey key, ServiceMethod serviceMethod, CallPolicy policy, Request request, EasyCallImpl leader) {
+            this.key = key;
+            this.serviceMethod = serviceMethod;
+            this.policy = policy;
+            this.request = request;
+            this.leader = leader;
+        }
+
+        Request request() {
+            return request;
+        }
+
+        synchronized boolean join(EasyCallImpl call, EasyCallback<Object> callback) {
+            if (closed) {
+                return false;
+            }
+            subscribers.add(new Subscriber(call, callback));
+            activeCount++;
+            return true;
+        }
+
+        void start() {
+            Callback callback = this;
+            if (policy.retryPolicy != null) {
+                RetryingCallback retry = new RetryingCallback(policy.retryPolicy,
+                        serviceMethod.easyOKHttp.scheduler(), request, this, this);
+                synchronized (this) {
+                    this.retry = retry;
+                }
+                callback = retry;
+            }
+            enqueue(request, callback);
+        }
+
+        /**
+         * 所有加入的请求都已经取消
+         */
+        @Override
+        public synchronized boolean isCanceled() {
+            return activeCount == 0;
+        }
+
+        @Override
+        public void enqueue(Request request, Callback callback) {
+            if (policy.hedgePolicy != null) {
+                enqueueHedged(request, callback);
+                return;
+            }
+            Call call = serviceMethod.httpClient.newCall(request);
+            boolean canceled;
+            synchronized (this) {
+                rawCall = call;
+                // 赋值之前所有请求可能都已经取消 cancel()拿不到rawCall
+                canceled = isCanceled();
+            }
+            if (canceled) {
+                // 已经取消的Call不会发出 回调onFailure后通知所有请求
+                call.cancel();
+            }
+            serviceMethod.easyOKHttp.dispatcher.enqueue(call, leader.priority(), callback);
+        }
+
+        private void enqueueHedged(Request request, Callback callback) {
+            HedgedCall call = new HedgedCall(serviceMethod, policy.hedgePolicy, request, leader.priority(), callback);
+            boolean canceled;
+            synchronized (this) {
+                hedged = call;
+                canceled = isCanceled();
+            }
+            // 先取消再开始 原始请求和对冲请求都不会发出
+            if (canceled) {
+                call.cancel();
+            }
+            call.start();
+        }
+
+        /**
+         * 只有所有加入的请求都取消后才会取消网络请求
+         */
+        void cancel(EasyCallImpl call) {
+            boolean cancelAll = false;
+            Call toCancel = null;
+            RetryingCallback retry = null;
+            HedgedCall hedged = null;
+            synchronized (this) {
+                for (Subscriber subscriber : subscribers) {
+                    if (subscriber.call == call && !subscriber.canceled) {
+                        subscriber.canceled = true;
+                        if (--activeCount == 0 && !closed) {
+                            closed = true;
+                            cancelAll = true;
+                            toCancel = rawCall;
+                            retry = this.retry;
+                            hedged = this.hedged;
+                        }
+                        break;
+                    }
+                }
+            }
+            if (!cancelAll) {
+                return;
+            }
+            inFlights.remove(key, this);
+            if (toCancel != null) {
+                toCancel.cancel();
+            }
+            if (hedged != null) {
+                hedged.cancel();
+            }
+            if (retry != null) {
+                retry.cancel();
+            }
+        }
+
+        private List<Subscriber> close() {
+            inFlights.remove(key, this);
+            synchronized (this) {
+                closed = true;
+                return new ArrayList<>(subscribers);
+            }
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) {
+            List<Subscriber> subscribers = close();
+            EasyResponse<Object> easyResponse;
+            try {
+                easyResponse = leader.parseResponse(response);
+            } catch (Throwable e) {
+                deliverFailure(subscribers, e);
+                return;
+            }
+            for (Subscriber subscriber : subscribers) {
+                try {
+                    subscriber.callback.onResponse(subscriber.call, easyResponse);
+                } catch (Throwable t) {
+                    t.printStackTrace();
+                }
+            }
+        }
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            deliverFailure(close(), e);
+        }
+
+        private void deliverFailure(List<Subscriber> subscribers, Throwable e) {
+            for (Subscriber subscriber : subscribers) {
+                try {
+                    subscriber.callback.onFailure(subscriber.call, e);
+                } catch (Throwable t) {
+                    t.printStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.fly.easy;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 同一个requestSignature和host的各阶段耗时
+ * 开启统计后作为请求的tag传递给OkHttp 在{@link PhaseListener}和{@link PriorityDispatcher}中取出
+ * 每个阶段的直方图在第一次记录时创建 复用连接时DNS、连接、TLS等阶段不会分配
+ */
+
+final class CallMetrics {
+
+    static final int QUEUE = 0;
+    static final int DNS = 1;
+    static final int CONNECT = 2;
+    static final int TLS = 3;
+    static final int TTFB = 4;
+    static final int BODY = 5;
+    static final int CONVERT = 6;
+    static final int TOTAL = 7;
+    static final int CALLBACK = 8;
+
+    // 与上面的序号一一对应
+    static final String[] PHASES = {
+            EasyCallMetrics.QUEUE,
+            EasyCallMetrics.DNS,
+            EasyCallMetrics.CONNECT,
+            EasyCallMetrics.TLS,
+            EasyCallMetrics.TTFB,
+            EasyCallMetrics.BODY,
+            EasyCallMetrics.CONVERT,
+            EasyCallMetrics.TOTAL,
+            EasyCallMetrics.CALLBACK,
+    };
+
+    final Object requestSignature;
+    final String host;
+    private final AtomicReferenceArray<LatencyHistogram> histograms =
+            new AtomicReferenceArray<>(PHASES.length);
+
+    CallMetrics(Object requestSignature, String host) {
+        this.requestSignature = requestSignature;
+        this.host = host;
+    }
+
+    void record(int phase, long nanos) {
+        LatencyHistogram histogram = histograms.get(phase);
+        if (histogram == null) {
+            histograms.compareAndSet(phase, null, new LatencyHistogram());
+            histogram = histograms.get(phase);
+        }
+        histogram.record(nanos);
+    }
+
+    EasyCallMetrics snapshot() {
+        EasyHistogram[] snapshots = new EasyHistogram[PHASES.length];
+        for (int i = 0; i < snapshots.length; i++) {
+            LatencyHistogram histogram = histograms.get(i);
+            snapshots[i] = histogram == null ? EasyHistogram.EMPTY : histogram.snapshot();
+        }
+        return new EasyCallMetrics(requestSignature, host, snapshots);
+    }
+
+    /**
+     * 请求可能已经被重新创建 例如条件请求、Domain-Name路由 tag会一直保留
+     */
+    static CallMetrics of(okhttp3.Request request) {
+        Object tag = request.tag();
+        return tag instanceof CallMetrics ? (CallMetrics) tag : null;
+    }
+}
@@ -0,0 +1,109 @@
+package com.fly.easy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 按requestSignature和host保存{@link CallMetrics}
+ * 签名可能每次请求都不同 与{@link ServiceMethodCache}一样限制数量 超出时使用CLOCK算法淘汰
+ */
+
+final class CallMetricsRegistry {
+
+    private final int maxSize;
+    private final ConcurrentMap<Object, Entry> signatures = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    CallMetricsRegistry(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return 没有签名时返回null 例如直接创建的{@link ServiceMethod}
+     */
+    CallMetrics get(Object requestSignature, String host) {
+        if (requestSignature == null) {
+            return null;
+        }
+        Entry entry = signatures.get(requestSignature);
+        if (entry == null) {
+            Entry created = new Entry(requestSignature);
+            entry = signatures.putIfAbsent(requestSignature, created);
+            if (entry == null) {
+                entry = created;
+                size.incrementAndGet();
+                clock.offer(created);
+                evict();
+            }
+        }
+        entry.referenced = true;
+        CallMetrics metrics = entry.hosts.get(host);
+        if (metrics == null) {
+            CallMetrics created = new CallMetrics(requestSignature, host);
+            metrics = entry.hosts.putIfAbsent(host, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        return metrics;
+    }
+
+    private void evict() {
+        if (size.get() <= maxSize || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int chances = 2 * size.get() + 1;
+            while (size.get() > maxSize) {
+                Entry entry = clock.poll();
+                if (entry == null) {
+                    break;
+                }
+                if (entry.referenced && chances-- > 0) {
+                    entry.referenced = false;
+                    clock.offer(entry);
+                } else if (signatures.remove(entry.signature, entry)) {
+                    size.decrementAndGet();
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    List<EasyCallMetrics> snapshot() {
+        List<EasyCallMetrics> result = new ArrayList<>();
+        for (Entry entry : signatures.values()) {
+            for (CallMetrics metrics : entry.hosts.values()) {
+                result.add(metrics.snapshot());
+            }
+        }
+        return result;
+    }
+
+    void reset() {
+        // 正在进行的请求写入旧的统计 不影响新的快照
+        // 与get同时进行时计数可能有少量偏差 淘汰时时钟环为空会停止
+        signatures.clear();
+        clock.clear();
+        size.set(0);
+    }
+
+    private static final class Entry {
+        final Object signature;
+        final ConcurrentMap<String, CallMetrics> hosts = new ConcurrentHashMap<>(4);
+        volatile boolean referenced;
+
+        Entry(Object signature) {
+            this.signature = signature;
+        }
+    }
+}
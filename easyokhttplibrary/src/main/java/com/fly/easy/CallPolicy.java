@@ -0,0 +1,128 @@
+package com.fly.easy;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.CacheControl;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 每次请求可以单独指定的策略 合并、内存缓存、磁盘缓存、重试、对冲
+ * 在{@link EasyCallImpl}创建时解析校验 与模板的第一次请求相同时直接复用
+ */
+
+final class CallPolicy {
+
+    // 用于判断是否可以复用
+    private final EasyOptions options;
+
+    // 合并相同的GET请求 为null时不合并
+    final CallCoalescer coalescer;
+    // 内存缓存 为null时不缓存
+    final EasyMemoryCache memoryCache;
+    // 内存缓存有效期 单位纳秒
+    final long memoryCacheTtl;
+    // CACHE_FIRST和STALE_WHILE_REVALIDATE先只读取磁盘缓存 为null时直接访问网络
+    final CacheControl cacheOnlyControl;
+    final boolean staleWhileRevalidate;
+    // NETWORK_ONLY 不读取磁盘缓存
+    final boolean networkOnly;
+    // 重试策略 为null时不重试
+    final EasyRetryPolicy retryPolicy;
+    // 对冲策略 为null时不对冲
+    final EasyHedgePolicy hedgePolicy;
+
+    private CallPolicy(EasyOKHttp easyOKHttp, EasyOptions options, int method, boolean streaming) {
+        this.options = options;
+        // 流式响应体只能读取一次 不能共享
+        coalescer = options.coalesce && method == EasyOptions.GET && !streaming
+                ? easyOKHttp.callCoalescer
+                : null;
+        memoryCache = createMemoryCache(easyOKHttp, options, method, streaming);
+        memoryCacheTtl = TimeUnit.MILLISECONDS.toNanos(options.memoryCacheTtl);
+        cacheOnlyControl = createCacheOnlyControl(easyOKHttp, options, method);
+        staleWhileRevalidate = options.cachePolicy == EasyOptions.STALE_WHILE_REVALIDATE;
+        networkOnly = options.cachePolicy == EasyOptions.NETWORK_ONLY;
+        retryPolicy = createRetryPolicy(easyOKHttp, options, method);
+        hedgePolicy = createHedgePolicy(easyOKHttp, options, method);
+    }
+
+    /**
+     * @param method    模板的请求方式
+     * @param streaming 模板是否以流的形式处理响应体
+     */
+    static CallPolicy resolve(EasyOKHttp easyOKHttp, EasyOptions options, int method, boolean streaming) {
+        return new CallPolicy(easyOKHttp, options, method, streaming);
+    }
+
+    /**
+     * options中的策略是否与这个策略相同
+     */
+    boolean matches(EasyOptions other) {
+        return other == options
+                || (other.coalesce == options.coalesce
+                && other.memoryCacheTtl == options.memoryCacheTtl
+                && other.cachePolicy == options.cachePolicy
+                && other.maxStale == options.maxStale
+                && other.retryPolicy == options.retryPolicy
+                && other.hedgePolicy == options.hedgePolicy);
+    }
+
+    private static EasyRetryPolicy createRetryPolicy(EasyOKHttp easyOKHttp, EasyOptions options, int method) {
+        EasyRetryPolicy policy = options.retryPolicy != null
+                ? options.retryPolicy
+                : easyOKHttp.retryPolicy;
+        if (policy == null || policy.maxAttempts <= 1) {
+            return null;
+        }
+        // 默认只重试幂等的请求
+        if (method != EasyOptions.GET && !policy.retryNonIdempotent) {
+            return null;
+        }
+        return policy;
+    }
+
+    private static EasyHedgePolicy createHedgePolicy(EasyOKHttp easyOKHttp, EasyOptions options, int method) {
+        EasyHedgePolicy policy = options.hedgePolicy != null
+                ? options.hedgePolicy
+                : easyOKHttp.hedgePolicy;
+        // 只对冲幂等的请求
+        if (policy == null || !policy.enabled || method != EasyOptions.GET) {
+            return null;
+        }
+        return policy;
+    }
+
+    private static CacheControl createCacheOnlyControl(EasyOKHttp easyOKHttp, EasyOptions options, int method) {
+        int cachePolicy = options.cachePolicy;
+        if (cachePolicy != EasyOptions.CACHE_FIRST && cachePolicy != EasyOptions.STALE_WHILE_REVALIDATE) {
+            return null;
+        }
+        if (method != EasyOptions.GET) {
+            throw new IllegalArgumentException("cachePolicy only supports GET requests");
+        }
+        if (easyOKHttp.diskCache == null) {
+            throw new IllegalStateException("diskCache is not configured, see EasyOKHttp.Builder#diskCache(File, long)");
+        }
+        CacheControl.Builder builder = new CacheControl.Builder().onlyIfCached();
+        if (cachePolicy == EasyOptions.STALE_WHILE_REVALIDATE && options.maxStale > 0) {
+            builder.maxStale((int) Math.min(Integer.MAX_VALUE,
+                    TimeUnit.MILLISECONDS.toSeconds(options.maxStale)), TimeUnit.SECONDS);
+        } else {
+            builder.maxStale(Integer.MAX_VALUE, TimeUnit.SECONDS);
+        }
+        return builder.build();
+    }
+
+    private static EasyMemoryCache createMemoryCache(EasyOKHttp easyOKHttp, EasyOptions options, int method, boolean streaming) {
+        if (options.memoryCacheTtl <= 0) {
+            return null;
+        }
+        if (method != EasyOptions.GET || streaming) {
+            throw new IllegalArgumentException("memoryCacheTtl only supports BUFFERED GET requests");
+        }
+        if (easyOKHttp.memoryCache == null) {
+            throw new IllegalStateException("memoryCache is not configured, see EasyOKHttp.Builder#memoryCache(long)");
+        }
+        return easyOKHttp.memoryCache;
+    }
+}
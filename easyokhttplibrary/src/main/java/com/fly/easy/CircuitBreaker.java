@@ -0,0 +1,143 @@
+package com.fly.easy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 单个host的熔断器 按照{@link EasyCircuitBreakerPolicy}切换状态
+ * <p>
+ * 不是线程安全的 由{@link PriorityDispatcher}加锁访问
+ */
+
+final class CircuitBreaker {
+
+    static final int CLOSED = 0;
+    static final int OPEN = 1;
+    static final int HALF_OPEN = 2;
+
+    private final EasyCircuitBreakerPolicy policy;
+    private final long openNanos;
+    private final long slowNanos;
+
+    private int state = CLOSED;
+    private long openedAt;
+
+    // 最近的请求结果 环形缓冲
+    private final boolean[] failures;
+    private final boolean[] slows;
+    private int next;
+    private int count;
+    private int failureCount;
+    private int slowCount;
+
+    // 半开状态已经放行和已经完成的请求
+    private int permitted;
+    private int completed;
+
+    CircuitBreaker(EasyCircuitBreakerPolicy policy) {
+        this.policy = policy;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(policy.openDuration);
+        this.slowNanos = TimeUnit.MILLISECONDS.toNanos(policy.slowCallDuration);
+        this.failures = new boolean[policy.windowSize];
+        this.slows = new boolean[policy.windowSize];
+    }
+
+    int state(long now) {
+        if (state == OPEN && now - openedAt >= openNanos) {
+            state = HALF_OPEN;
+            permitted = 0;
+            completed = 0;
+            reset();
+        }
+        return state;
+    }
+
+    /**
+     * 打开状态下直接失败 半开状态下没有名额时等待
+     */
+    boolean tryAcquire(long now) {
+        switch (state(now)) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (permitted < policy.halfOpenCalls) {
+                    permitted++;
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 请求被取消 不统计结果 归还半开状态的名额
+     *
+     * @param probe 是否是半开状态放行的请求
+     */
+    void onIgnored(boolean probe) {
+        if (probe && state == HALF_OPEN && permitted > completed) {
+            permitted--;
+        }
+    }
+
+    /**
+     * @param probe    是否是半开状态放行的请求
+     * @param duration 请求耗时 单位纳秒
+     */
+    void onResult(long now, boolean probe, boolean failure, long duration) {
+        boolean slow = duration >= slowNanos;
+        if (state == OPEN || (state == HALF_OPEN && !probe)) {
+            // 状态切换之前发出的请求
+            return;
+        }
+        record(failure, slow);
+        if (state == HALF_OPEN) {
+            if (++completed < policy.halfOpenCalls) {
+                return;
+            }
+            if (exceedsThreshold()) {
+                open(now);
+            } else {
+                state = CLOSED;
+                reset();
+            }
+            return;
+        }
+        if (count >= policy.minimumCalls && exceedsThreshold()) {
+            open(now);
+        }
+    }
+
+    private boolean exceedsThreshold() {
+        return failureCount >= policy.failureRateThreshold * count
+                || slowCount >= policy.slowCallRateThreshold * count;
+    }
+
+    private void open(long now) {
+        state = OPEN;
+        openedAt = now;
+        reset();
+    }
+
+    private void record(boolean failure, boolean slow) {
+        if (count == failures.length) {
+            if (failures[next]) failureCount--;
+            if (slows[next]) slowCount--;
+        } else {
+            count++;
+        }
+        failures[next] = failure;
+        slows[next] = slow;
+        if (failure) failureCount++;
+        if (slow) slowCount++;
+        next = (next + 1) % failures.length;
+    }
+
+    private void reset() {
+        next = 0;
+        count = 0;
+        failureCount = 0;
+        slowCount = 0;
+    }
+}
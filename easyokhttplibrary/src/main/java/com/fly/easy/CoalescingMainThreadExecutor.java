@@ -0,0 +1,70 @@
+package com.fly.easy;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 合并回调的主线程Executor
+ * <p>
+ * 回调先放入无锁队列 每一帧(或者每隔interval)在主线程中批量执行一次 而不是每个回调发送一条消息
+ * 每次执行不超过budget 剩下的回调留到下一次执行 回调的顺序不变 参见{@link BudgetedQueue}
+ *
+ * @see EasyOKHttp.Builder#callbackCoalescing(long, long)
+ */
+
+final class CoalescingMainThreadExecutor implements Executor, Runnable, Choreographer.FrameCallback {
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final BudgetedQueue queue;
+    // 0表示跟随屏幕刷新
+    private final long intervalMillis;
+
+    // 只在主线程中访问
+    private Choreographer choreographer;
+
+    CoalescingMainThreadExecutor(long intervalMillis, long budgetMillis) {
+        this.intervalMillis = intervalMillis;
+        this.queue = new BudgetedQueue(TimeUnit.MILLISECONDS.toNanos(budgetMillis), new Runnable() {
+            @Override
+            public void run() {
+                schedule();
+            }
+        });
+    }
+
+    @Override
+    public void execute(Runnable r) {
+        queue.offer(r);
+    }
+
+    private void schedule() {
+        if (intervalMillis > 0) {
+            handler.postDelayed(this, intervalMillis);
+        } else {
+            // Choreographer只能在主线程中获取
+            handler.post(this);
+        }
+    }
+
+    @Override
+    public void run() {
+        if (intervalMillis > 0) {
+            queue.drain();
+            return;
+        }
+        if (choreographer == null) {
+            choreographer = Choreographer.getInstance();
+        }
+        choreographer.postFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        queue.drain();
+    }
+}
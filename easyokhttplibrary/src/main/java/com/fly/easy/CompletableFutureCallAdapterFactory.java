@@ -0,0 +1,64 @@
+package com.fly.easy;
+
+import android.annotation.TargetApi;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 适配为{@link CompletableFuture} 在网络线程中完成 之后的thenCompose等操作不需要切换线程
+ * 响应失败时以{@link EasyResponseFailedException}结束 取消future会取消请求
+ * 只在API 24及以上注册
+ */
+
+@TargetApi(24)
+final class CompletableFutureCallAdapterFactory extends EasyCallAdapter.Factory {
+
+    @Override
+    public EasyCallAdapter<?> get(Type returnType, EasyOKHttp easyOKHttp) {
+        if (returnType != CompletableFuture.class) {
+            return null;
+        }
+        return new EasyCallAdapter<CompletableFuture<EasyResponse<?>>>() {
+            @Override
+            public CompletableFuture<EasyResponse<?>> adapt(EasyCall call) {
+                final CallFuture future = new CallFuture(call);
+                call.enqueue(new EasyCallback<Object>() {
+                    @Override
+                    public void onResponse(EasyCall call, EasyResponse<Object> response) {
+                        if (response.isSuccessful()) {
+                            future.complete(response);
+                        } else {
+                            future.completeExceptionally(new EasyResponseFailedException(response));
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(EasyCall call, Throwable t) {
+                        future.completeExceptionally(t);
+                    }
+                });
+                return future;
+            }
+        };
+    }
+
+    private static final class CallFuture extends CompletableFuture<EasyResponse<?>> {
+
+        private final EasyCall call;
+
+        CallFuture(EasyCall call) {
+            this.call = call;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            // 先改变future的状态 否则取消请求引起的onFailure可能先完成future
+            boolean canceled = super.cancel(mayInterruptIfRunning);
+            // 不再需要结果 不论mayInterruptIfRunning都取消请求
+            call.cancel();
+            return canceled;
+        }
+    }
+}
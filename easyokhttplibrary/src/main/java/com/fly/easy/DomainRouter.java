@@ -0,0 +1,83 @@
+package com.fly.easy;
+
+import android.support.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import okhttp3.HttpUrl;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * Domain-Name路由表
+ * 创建时解析所有baseUrl 创建后不可变 运行时通过整体替换实现切换
+ */
+
+final class DomainRouter {
+
+    static final DomainRouter EMPTY = new DomainRouter(Collections.<String, HttpUrl>emptyMap());
+
+    private final Map<String, HttpUrl> routes;
+
+    private DomainRouter(Map<String, HttpUrl> routes) {
+        this.routes = routes;
+    }
+
+    /**
+     * @param baseUrls 键为Domain-Name 值为对应的地址
+     * @throws IllegalArgumentException 地址不合法
+     */
+    static DomainRouter compile(Map<String, String> baseUrls) {
+        EasyUtils.checkNotNull(baseUrls, "baseUrls == null");
+        Map<String, HttpUrl> routes = new HashMap<>(baseUrls.size() * 2);
+        for (Map.Entry<String, String> entry : baseUrls.entrySet()) {
+            routes.put(EasyUtils.checkStringArgument(entry.getKey(), "domain name == null"),
+                    parse(entry.getValue()));
+        }
+        return new DomainRouter(Collections.unmodifiableMap(routes));
+    }
+
+    private static HttpUrl parse(String url) {
+        EasyUtils.checkStringArgument(url, "base url == null");
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (httpUrl == null) {
+            throw new IllegalArgumentException("Illegal URL: " + url);
+        }
+        return httpUrl;
+    }
+
+    /**
+     * 返回一个新的路由表 只替换或添加一个Domain-Name
+     */
+    DomainRouter with(String domainName, String url) {
+        Map<String, HttpUrl> routes = new HashMap<>(this.routes);
+        routes.put(EasyUtils.checkStringArgument(domainName, "domain name == null"), parse(url));
+        return new DomainRouter(Collections.unmodifiableMap(routes));
+    }
+
+    boolean isEmpty() {
+        return routes.isEmpty();
+    }
+
+    @Nullable
+    HttpUrl route(String domainName) {
+        return routes.get(domainName);
+    }
+
+    /**
+     * 将url的scheme、host、port替换为domainName对应的地址
+     *
+     * @throws NullPointerException 没有找到对应的地址
+     */
+    HttpUrl rewrite(HttpUrl url, String domainName) {
+        HttpUrl target = routes.get(domainName);
+        if (target == null) {
+            throw new NullPointerException("Did not find a matching address");
+        }
+        return url.newBuilder().
+                scheme(target.scheme()).
+                host(target.host()).
+                port(target.port()).build();
+    }
+}
@@ -0,0 +1,262 @@
+package com.fly.easy;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import okhttp3.Call;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 下载中的文件和进度
+ * 数据写入target.part 进度保存在target.part.meta 下载完成后重命名为target
+ * 再次下载同一个地址时 通过Range和If-Range从已经保存的位置继续
+ * <p>
+ * 分段下载时每一段记录自己的进度 各段通过FileChannel写入各自的位置
+ */
+
+final class DownloadState {
+
+    private static final String KEY_URL = "url";
+    private static final String KEY_VALIDATOR = "validator";
+    private static final String KEY_LENGTH = "length";
+    // 每一段为 start,end,position 以;分隔
+    private static final String KEY_SEGMENTS = "segments";
+    // 只有一段时的旧格式
+    private static final String KEY_POSITION = "position";
+
+    final File target;
+    final File partFile;
+    private final File metaFile;
+    private final String url;
+
+    // ETag或者Last-Modified 用于If-Range 为null时不能继续下载
+    volatile String validator;
+    // 文件总长度 未知时为-1
+    volatile long contentLength = -1;
+    // 分段之后不再改变
+    // 删除之后不再保存进度
+    private boolean discarded;
+    private volatile List<Segment> segments = Collections.singletonList(new Segment(0, -1, 0));
+
+    private DownloadState(File target, String url) {
+        this.target = target;
+        this.partFile = new File(target.getPath() + ".part");
+        this.metaFile = new File(target.getPath() + ".part.meta");
+        this.url = url;
+    }
+
+    /**
+     * 读取上一次下载的进度 地址不同或者不能继续时从头开始
+     */
+    static DownloadState load(File target, String url) throws IOException {
+        DownloadState state = new DownloadState(target, url);
+        File parent = target.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Failed to create directory " + parent);
+        }
+        if (state.metaFile.isFile() && state.partFile.isFile()) {
+            Properties properties = new Properties();
+            InputStream in = new FileInputStream(state.metaFile);
+            try {
+                properties.load(in);
+            } finally {
+                EasyUtils.closeQuietly(in);
+            }
+            try {
+                if (url.equals(properties.getProperty(KEY_URL))
+                        && properties.getProperty(KEY_VALIDATOR) != null) {
+                    state.validator = properties.getProperty(KEY_VALIDATOR);
+                    state.contentLength = Long.parseLong(properties.getProperty(KEY_LENGTH, "-1"));
+                    state.segments = parseSegments(properties, state.partFile.length());
+                    return state;
+                }
+            } catch (NumberFormatException ignored) {
+                // 进度文件损坏 从头开始
+            }
+        }
+        state.metaFile.delete();
+        state.partFile.delete();
+        return state;
+    }
+
+    private static List<Segment> parseSegments(Properties properties, long fileLength) {
+        String value = properties.getProperty(KEY_SEGMENTS);
+        if (value == null) {
+            // 进度在数据之后保存 文件可能比进度长 不会比进度短
+            long position = Math.min(Long.parseLong(properties.getProperty(KEY_POSITION, "0")), fileLength);
+            return Collections.singletonList(new Segment(0, -1, position));
+        }
+        List<Segment> segments = new ArrayList<>();
+        for (String segment : value.split(";")) {
+            String[] parts = segment.split(",");
+            long start = Long.parseLong(parts[0]);
+            long end = Long.parseLong(parts[1]);
+            long position = Long.parseLong(parts[2]);
+            if (position < start || (end >= 0 && position > end + 1)) {
+                throw new NumberFormatException("Illegal segment: " + segment);
+            }
+            segments.add(new Segment(start, end, position));
+        }
+        return Collections.unmodifiableList(segments);
+    }
+
+    FileChannel open() throws IOException {
+        return new RandomAccessFile(partFile, "rw").getChannel();
+    }
+
+    List<Segment> segments() {
+        return segments;
+    }
+
+    boolean isComplete() {
+        for (Segment segment : segments) {
+            if (!segment.isDone(contentLength)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 已经下载的字节数
+     */
+    long downloaded() {
+        long downloaded = 0;
+        for (Segment segment : segments) {
+            downloaded += segment.position - segment.start;
+        }
+        return downloaded;
+    }
+
+    /**
+     * 服务端返回了完整的内容 丢弃已经下载的部分 重新作为一段下载
+     */
+    synchronized Segment restart(FileChannel channel, String validator, long contentLength) throws IOException {
+        channel.truncate(0);
+        this.validator = validator;
+        this.contentLength = contentLength;
+        Segment segment = new Segment(0, -1, 0);
+        segments = Collections.singletonList(segment);
+        if (validator == null) {
+            metaFile.delete();
+        }
+        save();
+        return segment;
+    }
+
+    /**
+     * 把正在下载的唯一一段按长度分为count段 第一段继续使用当前的响应
+     *
+     * @return 新增的段
+     */
+    synchronized List<Segment> split(int count) throws IOException {
+        Segment first = segments.get(0);
+        long size = (contentLength + count - 1) / count;
+        List<Segment> result = new ArrayList<>(count);
+        result.add(new Segment(first.start, size - 1, first.position));
+        for (long start = size; start < contentLength; start += size) {
+            result.add(new Segment(start, Math.min(start + size, contentLength) - 1, start));
+        }
+        segments = Collections.unmodifiableList(result);
+        save();
+        return result;
+    }
+
+    /**
+     * 先写入临时文件再重命名 进程被杀时不会留下损坏的进度
+     */
+    synchronized void save() throws IOException {
+        if (validator == null || discarded) {
+            // 不能继续下载 不需要保存
+            return;
+        }
+        StringBuilder value = new StringBuilder();
+        for (Segment segment : segments) {
+            if (value.length() > 0) {
+                value.append(';');
+            }
+            value.append(segment.start).append(',').append(segment.end).append(',').append(segment.position);
+        }
+        Properties properties = new Properties();
+        properties.setProperty(KEY_URL, url);
+        properties.setProperty(KEY_VALIDATOR, validator);
+        properties.setProperty(KEY_LENGTH, String.valueOf(contentLength));
+        properties.setProperty(KEY_SEGMENTS, value.toString());
+        File temp = new File(metaFile.getPath() + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            properties.store(out, null);
+        } finally {
+            EasyUtils.closeQuietly(out);
+        }
+        if (!temp.renameTo(metaFile)) {
+            temp.delete();
+            throw new IOException("Failed to save " + metaFile);
+        }
+    }
+
+    /**
+     * 校验失败 删除已经下载的内容
+     */
+    synchronized void discard() {
+        discarded = true;
+        metaFile.delete();
+        partFile.delete();
+    }
+
+    /**
+     * 下载完成 重命名为目标文件
+     */
+    void finish() throws IOException {
+        metaFile.delete();
+        if (target.exists() && !target.delete()) {
+            throw new IOException("Failed to replace " + target);
+        }
+        if (!partFile.renameTo(target)) {
+            throw new IOException("Failed to rename " + partFile + " to " + target);
+        }
+    }
+
+    /**
+     * 文件中的一段 [start, end] end为-1时直到文件结束
+     */
+    static final class Segment {
+        final long start;
+        final long end;
+        // 下一个写入的位置 只在下载这一段的线程中修改
+        volatile long position;
+        // 连续失败的次数 有进展时清零
+        int failures;
+        Call call;
+
+        Segment(long start, long end, long position) {
+            this.start = start;
+            this.end = end;
+            this.position = position;
+        }
+
+        /**
+         * 这一段还需要下载到的位置 未知时为Long.MAX_VALUE
+         */
+        long limit(long contentLength) {
+            if (end >= 0) {
+                return end + 1;
+            }
+            return contentLength >= 0 ? contentLength : Long.MAX_VALUE;
+        }
+
+        boolean isDone(long contentLength) {
+            return position == limit(contentLength);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.fly.easy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 批量请求
+ * <p>
+ * 同时进行的请求数量不超过parallelism 单个请求的结果不会切换线程
+ * 按顺序汇总后再通过callbackExecutor回调 避免每个请求都向主线程发送一次消息
+ *
+ * @see EasyOKHttp#createBatch(Object, List)
+ */
+
+public final class EasyBatch {
+
+    private final Executor callbackExecutor;
+    private final List<EasyCallImpl> calls;
+
+    private int parallelism = 4;
+    private boolean failFast;
+
+    private EasyBatchCallback<Object> callback;
+    private boolean executed;
+    private boolean canceled;
+    // 所有请求结束 或者failFast时出现失败
+    private boolean finished;
+    // 下一个发起的请求
+    private int nextStart;
+    private int remaining;
+    private final List<EasyResponse<Object>> responses;
+    private final Throwable[] failures;
+    private final boolean[] completed;
+
+    // 下一个按顺序回调的请求 只在deliverLock中修改
+    private int nextDeliver;
+    private boolean completeDelivered;
+    private boolean drainScheduled;
+    private final Object deliverLock = new Object();
+
+    EasyBatch(Executor callbackExecutor, List<EasyCallImpl> calls) {
+        this.callbackExecutor = callbackExecutor;
+        this.calls = calls;
+        this.remaining = calls.size();
+        this.responses = new ArrayList<>(Collections.<EasyResponse<Object>>nCopies(calls.size(), null));
+        this.failures = new Throwable[calls.size()];
+        this.completed = new boolean[calls.size()];
+    }
+
+    /**
+     * 同时进行的最大请求数量
+     *
+     * @param parallelism 默认4
+     */
+    public synchronized EasyBatch parallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be greater than 0 ");
+        }
+        checkNotExecuted();
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * 出现第一个失败时取消其他请求并结束 默认false 等待所有请求结束
+     */
+    public synchronized EasyBatch failFast(boolean failFast) {
+        checkNotExecuted();
+        this.failFast = failFast;
+        return this;
+    }
+
+    public synchronized int size() {
+        return calls.size();
+    }
+
+    public synchronized boolean isExecuted() {
+        return executed;
+    }
+
+    public synchronized boolean isCanceled() {
+        return canceled;
+    }
+
+    private void checkNotExecuted() {
+        if (executed) throw new IllegalStateException("Already executed.");
+    }
+
+    @SuppressWarnings("unchecked")
+    public void enqueue(EasyBatchCallback<?> callback) {
+        EasyUtils.checkNotNull(callback, "callback == null");
+        int count;
+        boolean canceled;
+        synchronized (this) {
+            checkNotExecuted();
+            executed = true;
+            // 响应体转换后的类型由responseType在运行时决定
+            this.callback = (EasyBatchCallback<Object>) callback;
+            canceled = this.canceled;
+            if (calls.isEmpty() || canceled) {
+                // 已经取消时不发出任何请求 与EasyCall一样每一项都以Canceled失败
+                finished = true;
+                count = 0;
+            } else {
+                count = nextStart = Math.min(parallelism, calls.size());
+            }
+        }
+        if (canceled) {
+            cancelCalls();
+        }
+        if (count == 0) {
+            scheduleDrain();
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            start(i);
+        }
+    }
+
+    private void start(final int index) {
+        calls.get(index).enqueue(new EasyCallback<Object>() {
+            @Override
+            public void onResponse(EasyCall call, EasyResponse<Object> response) {
+                if (response.isSuccessful()) {
+                    onItemComplete(index, response, null);
+                } else {
+                    onItemComplete(index, null, new EasyResponseFailedException(response));
+                }
+            }
+
+            @Override
+            public void onFailure(EasyCall call, Throwable t) {
+                onItemComplete(index, null, t);
+            }
+        });
+    }
+
+    private void onItemComplete(int index, EasyResponse<Object> response, Throwable failure) {
+        int next = -1;
+        boolean cancelOthers = false;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            responses.set(index, response);
+            failures[index] = failure;
+            completed[index] = true;
+            remaining--;
+            if (failure != null && failFast) {
+                finished = true;
+                cancelOthers = true;
+            } else if (remaining == 0) {
+                finished = true;
+            } else if (nextStart < calls.size()) {
+                next = nextStart++;
+            }
+        }
+        if (cancelOthers) {
+            cancelCalls();
+        }
+        if (next >= 0) {
+            start(next);
+        }
+        scheduleDrain();
+    }
+
+    /**
+     * 取消所有未完成的请求 回调{@link EasyBatchCallback#onComplete}
+     * 在{@link #enqueue}之前取消时 enqueue不发出任何请求 直接回调onComplete
+     */
+    public void cancel() {
+        synchronized (this) {
+            canceled = true;
+            if (!executed || finished) {
+                return;
+            }
+            finished = true;
+        }
+        cancelCalls();
+        scheduleDrain();
+    }
+
+    private void cancelCalls() {
+        for (EasyCallImpl call : calls) {
+            call.cancel();
+        }
+    }
+
+    private void scheduleDrain() {
+        synchronized (this) {
+            if (drainScheduled) {
+                return;
+            }
+            drainScheduled = true;
+        }
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        });
+    }
+
+    /**
+     * 按顺序回调已经完成的结果 最后回调onComplete
+     */
+    private void drain() {
+        synchronized (deliverLock) {
+            while (true) {
+                int from;
+                int to;
+                boolean complete = false;
+                EasyBatchResult<Object> result = null;
+                synchronized (this) {
+                    from = nextDeliver;
+                    to = from;
+                    while (to < completed.length && completed[to]) {
+                        to++;
+                    }
+                    if (from == to) {
+                        drainScheduled = false;
+                        if (finished && !completeDelivered) {
+                            completeDelivered = true;
+                            complete = true;
+                            result = createResult();
+                        }
+                    }
+                }
+                if (complete) {
+                    callback.onComplete(this, result);
+                }
+                if (from == to) {
+                    return;
+                }
+                for (int i = from; i < to; i++) {
+                    nextDeliver = i + 1;
+                    callback.onItem(this, i, responses.get(i), failures[i]);
+                }
+            }
+        }
+    }
+
+    private EasyBatchResult<Object> createResult() {
+        Throwable[] failures = this.failures.clone();
+        for (int i = 0; i < failures.length; i++) {
+            if (!completed[i]) {
+                failures[i] = new IOException("Canceled");
+            }
+        }
+        return new EasyBatchResult<>(new ArrayList<>(responses), failures);
+    }
+}
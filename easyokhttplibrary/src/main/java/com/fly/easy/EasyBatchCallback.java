@@ -0,0 +1,30 @@
+package com.fly.easy;
+
+import android.support.annotation.Nullable;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 批量请求的回调 在callbackExecutor中执行
+ *
+ * @param <T> 响应体转换后的类型 与{@link EasyOptions.OKHttpOptionsBuilder#responseType(java.lang.reflect.Type)}对应
+ */
+
+public interface EasyBatchCallback<T> {
+
+    /**
+     * 按照请求的顺序回调已经完成的结果 index之前的结果都已经回调过
+     * 多个连续完成的结果在一次线程切换中回调
+     * <p>
+     * failFast模式下 结束后未完成的请求不会再回调
+     *
+     * @param response 请求成功时不为null
+     * @param failure  请求失败或者响应码不是2xx时不为null
+     */
+    void onItem(EasyBatch batch, int index, @Nullable EasyResponse<T> response, @Nullable Throwable failure);
+
+    /**
+     * 所有请求结束 或者failFast模式下出现第一个失败 或者批量请求被取消
+     * 在最后一次{@link #onItem}之后调用 只会调用一次
+     */
+    void onComplete(EasyBatch batch, EasyBatchResult<T> result);
+}
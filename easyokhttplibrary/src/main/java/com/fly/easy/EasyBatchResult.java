@@ -0,0 +1,64 @@
+package com.fly.easy;
+
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 批量请求的结果 与请求的顺序一致
+ */
+
+public final class EasyBatchResult<T> {
+
+    private final List<EasyResponse<T>> responses;
+    private final List<Throwable> failures;
+    private final int failureCount;
+
+    EasyBatchResult(List<EasyResponse<T>> responses, Throwable[] failures) {
+        this.responses = Collections.unmodifiableList(responses);
+        this.failures = Collections.unmodifiableList(Arrays.asList(failures));
+        int count = 0;
+        for (Throwable failure : failures) {
+            if (failure != null) {
+                count++;
+            }
+        }
+        this.failureCount = count;
+    }
+
+    public int size() {
+        return responses.size();
+    }
+
+    /** True if every request succeeded. */
+    public boolean isSuccessful() {
+        return failureCount == 0;
+    }
+
+    public int failureCount() {
+        return failureCount;
+    }
+
+    /** 第index个请求的响应 失败时为null */
+    @Nullable
+    public EasyResponse<T> response(int index) {
+        return responses.get(index);
+    }
+
+    /** 第index个请求失败的原因 成功时为null 没有完成的请求为"Canceled" */
+    @Nullable
+    public Throwable failure(int index) {
+        return failures.get(index);
+    }
+
+    public List<EasyResponse<T>> responses() {
+        return responses;
+    }
+
+    public List<Throwable> failures() {
+        return failures;
+    }
+}
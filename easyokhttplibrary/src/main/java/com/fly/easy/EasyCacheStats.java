@@ -0,0 +1,64 @@
+package com.fly.easy;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 缓存命中统计快照
+ */
+
+public final class EasyCacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long size;
+    private final long maxSize;
+
+    EasyCacheStats(long hitCount, long missCount, long evictionCount, long size, long maxSize) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+        this.maxSize = maxSize;
+    }
+
+    /** Number of lookups that found a cached value. */
+    public long hitCount() {
+        return hitCount;
+    }
+
+    /** Number of lookups that had to create a new value. */
+    public long missCount() {
+        return missCount;
+    }
+
+    /** Number of values removed to keep the cache within {@link #maxSize()}. */
+    public long evictionCount() {
+        return evictionCount;
+    }
+
+    /** Current size of the cache. */
+    public long size() {
+        return size;
+    }
+
+    /** Maximum size of the cache. */
+    public long maxSize() {
+        return maxSize;
+    }
+
+    /** Ratio of hits to lookups, or 1.0 if there were no lookups yet. */
+    public double hitRate() {
+        long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    @Override
+    public String toString() {
+        return "EasyCacheStats{hitCount=" + hitCount
+                + ", missCount=" + missCount
+                + ", evictionCount=" + evictionCount
+                + ", size=" + size
+                + ", maxSize=" + maxSize
+                + '}';
+    }
+}
@@ -24,7 +24,7 @@ public interface EasyCall {
      * Asynchronously send the request and notify {@code callback} of its response or if an error
      * occurred talking to the server, creating the request, or processing the response.
      */
-    void enqueue(EasyCallback callback);
+    void enqueue(EasyCallback<?> callback);
 
     /**
      * Returns true if this call has been either {@linkplain #execute() executed} or {@linkplain
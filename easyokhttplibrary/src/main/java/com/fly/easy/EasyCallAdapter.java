@@ -1,9 +1,39 @@
 package com.fly.easy;
 
+import android.support.annotation.Nullable;
+
+import java.lang.reflect.Type;
+
 /**
  * 作者 ${郭鹏飞}.<br/>
+ * 把请求包装为其他的类型 例如CompletableFuture
+ * 通过{@link EasyOKHttp.Builder#addCallAdapterFactory(Factory)}注册
  */
 
-public interface EasyCallAdapter<T extends EasyCall> {
-    T adapt(EasyCall call);
+public interface EasyCallAdapter<R> {
+
+    /**
+     * Returns an instance of {@code R} which delegates to {@code call}. The call has not been
+     * executed yet. Callbacks of {@code call} run on the network thread, adapters that need the
+     * main thread should switch through {@link EasyOKHttp#callbackExecutor()}.
+     */
+    R adapt(EasyCall call);
+
+    /**
+     * Creates {@link EasyCallAdapter} instances based on the requested type.
+     */
+    abstract class Factory {
+
+        /**
+         * Returns a call adapter for {@code returnType}, or null if it cannot be handled by this
+         * factory.
+         *
+         * @see EasyOKHttp#createCall(Object, EasyOptions, Class)
+         */
+        public
+        @Nullable
+        EasyCallAdapter<?> get(Type returnType, EasyOKHttp easyOKHttp) {
+            return null;
+        }
+    }
 }
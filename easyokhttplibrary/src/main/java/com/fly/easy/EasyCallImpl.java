@@ -4,10 +4,17 @@ import android.support.annotation.Nullable;
 
 import java.io.IOException;
 
+import okhttp3.CacheControl;
 import okhttp3.Call;
+import okhttp3.MediaType;
 import okhttp3.Request;
+import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
 
 /**
  * 作者 ${郭鹏飞}.<br/>
@@ -16,21 +23,99 @@ import okhttp3.ResponseBody;
 
 final class EasyCallImpl implements EasyCall {
 
+    private static final int HTTP_GATEWAY_TIMEOUT = 504;
+
     private volatile boolean canceled;
 
     private Call mCall;
+    // 合并请求时共享的请求
+    private CallCoalescer.InFlight mInFlight;
+    // 内存缓存 在发出网络请求前确定
+    private RequestKey mCacheKey;
+    private EasyMemoryCache.Entry mCacheEntry;
+    // 正在等待的重试
+    private RetryingCallback mRetry;
+    // 正在进行的对冲请求
+    private HedgedCall mHedged;
     private boolean executed;
+    // 耗时统计 没有开启时为null
+    private volatile CallMetrics mMetrics;
+    // 包含InputStream的请求体 不能重试 结束时关闭没有写出的流
+    private volatile OneShotRequestBody mOneShotBody;
     private @Nullable
     Throwable creationFailure; // Either a RuntimeException or IOException.
 
-    private ServiceMethod mServiceMethod;
+    private final ServiceMethod mServiceMethod;
+    // 本次请求的参数
+    private final EasyOptions mEasyOptions;
+    // 本次请求的合并、缓存、重试、对冲策略
+    private final CallPolicy mPolicy;
+
+    EasyCallImpl(ServiceMethod serviceMethod, EasyOptions easyOptions) {
+        this(serviceMethod, easyOptions, serviceMethod.policy(easyOptions));
+    }
 
-    EasyCallImpl(ServiceMethod serviceMethod) {
+    private EasyCallImpl(ServiceMethod serviceMethod, EasyOptions easyOptions, CallPolicy policy) {
         mServiceMethod = serviceMethod;
+        mEasyOptions = easyOptions;
+        mPolicy = policy;
     }
 
     private Call createRawCall() throws IOException {
-        Request request = mServiceMethod.toRequest();
+        return createRawCall(newRequest());
+    }
+
+    /**
+     * 绑定本次请求的参数 需要上传进度或者压缩时包装请求体
+     */
+    private Request newRequest() throws IOException {
+        Request request = mServiceMethod.toRequest(mEasyOptions.params);
+        if (mPolicy.networkOnly) {
+            request = request.newBuilder().cacheControl(CacheControl.FORCE_NETWORK).build();
+        }
+        RequestBody body = request.body();
+        if (body == null) {
+            return request;
+        }
+        OneShotRequestBody oneShot = body instanceof OneShotRequestBody ? (OneShotRequestBody) body : null;
+        mOneShotBody = oneShot;
+        EasyProgressListener listener = mEasyOptions.uploadProgress;
+        boolean gzip = false;
+        boolean buffered = false;
+        long threshold = mServiceMethod.easyOKHttp.gzipThreshold(request, mEasyOptions.gzipRequest);
+        if (threshold > 0 && body.contentLength() == -1) {
+            // 长度未知时先写出阈值以内的部分 较小的请求体不压缩
+            RequestBody small = GzipRequestBody.bufferIfSmaller(body, threshold);
+            if (small != null) {
+                body = small;
+                buffered = true;
+            } else {
+                gzip = true;
+            }
+        } else if (threshold >= 0) {
+            long contentLength = body.contentLength();
+            gzip = contentLength == -1 || contentLength >= threshold;
+        }
+        if (listener == null && !gzip && !buffered) {
+            return request;
+        }
+        Request.Builder builder = request.newBuilder();
+        if (listener != null) {
+            body = new ProgressRequestBody(body, new ProgressReporter(listener,
+                    mServiceMethod.easyOKHttp.callbackExecutor, mEasyOptions.progressInterval));
+        }
+        if (gzip) {
+            // 进度统计的是压缩之前的字节数 和contentLength一致
+            body = new GzipRequestBody(body);
+            builder.header("Content-Encoding", "gzip");
+        }
+        if (oneShot != null) {
+            body = mOneShotBody = oneShot.wrap(body);
+        }
+        return builder.method(request.method(), body).build();
+    }
+
+    private Call createRawCall(Request request) {
         Call call = mServiceMethod.httpClient.newCall(request);
         if (call == null) {
             throw new NullPointerException("httpClient returned null by newCall");
@@ -38,12 +123,60 @@ final class EasyCallImpl implements EasyCall {
         return call;
     }
 
-    private EasyResponse parseResponse(okhttp3.Response rawResponse) throws IOException {
+    /**
+     * 处理网络响应 同时更新内存缓存
+     */
+    EasyResponse<Object> parseResponse(okhttp3.Response rawResponse) throws IOException {
+        EasyMemoryCache cache = mPolicy.memoryCache;
+        if (cache == null) {
+            return parseResponse(mServiceMethod, rawResponse, false);
+        }
+        if (mCacheEntry != null) {
+            EasyResponse<Object> cached = cache.revalidate(rawResponse, mCacheEntry, mPolicy.memoryCacheTtl);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        EasyResponse<Object> response = parseResponse(mServiceMethod, rawResponse, true);
+        cache.put(mCacheKey, response, mPolicy.memoryCacheTtl);
+        return response;
+    }
+
+    /**
+     * @param countBytes 统计转换时读取的字节数 用于计算内存缓存的大小
+     */
+    static EasyResponse<Object> parseResponse(ServiceMethod serviceMethod, okhttp3.Response rawResponse,
+                                              boolean countBytes) throws IOException {
 
         ResponseBody rawBody = rawResponse.body();
 
-        return new EasyResponse(rawResponse, rawBody);
+        if (serviceMethod.responseConverter != null && rawResponse.isSuccessful()) {
+            // 在网络线程中直接从响应体转换 回调线程只拿到转换结果
+            try {
+                if (countBytes && rawBody != null) {
+                    CountingResponseBody countingBody = new CountingResponseBody(rawBody);
+                    Object entity = serviceMethod.toResponse(countingBody);
+                    return EasyResponse.converted(rawResponse, rawBody, entity, countingBody.bytesRead);
+                }
+                return EasyResponse.converted(rawResponse, rawBody, serviceMethod.toResponse(rawBody), -1);
+            } finally {
+                rawResponse.close();
+            }
+        }
+
+        // 错误响应的响应体通常很小 依然一次性读取 方便onFailure中处理
+        boolean streaming = serviceMethod.streaming && rawResponse.isSuccessful();
+        try {
+            return new EasyResponse<>(rawResponse, rawBody, streaming);
+        } catch (IOException | RuntimeException e) {
+            rawResponse.close();
+            throw e;
+        }
+
+    }
 
+    int priority() {
+        return mEasyOptions.priority;
     }
 
     @Override
@@ -52,6 +185,12 @@ final class EasyCallImpl implements EasyCall {
         if (call != null) {
             return call.request();
         }
+        if (mInFlight != null) {
+            return mInFlight.request();
+        }
+        if (mHedged != null) {
+            return mHedged.request();
+        }
         return null;
     }
 
@@ -87,25 +226,39 @@ final class EasyCallImpl implements EasyCall {
             call.cancel();
         }
 
-        return call.execute();
+        try {
+            return call.execute();
+        } finally {
+            releaseBody();
+        }
+    }
+
+    /**
+     * 请求结束 关闭请求体中没有写出的流
+     */
+    private void releaseBody() {
+        OneShotRequestBody body = mOneShotBody;
+        if (body != null) {
+            body.close();
+        }
     }
 
     @Override
-    public void enqueue(final EasyCallback callback) {
-        EasyUtils.checkNotNull(callback, "callback == null");
+    public void enqueue(EasyCallback<?> easyCallback) {
+        EasyUtils.checkNotNull(easyCallback, "callback == null");
+        EasyCallback<Object> callback = EasyUtils.castCallback(easyCallback);
 
-        Call call;
+        Request request = null;
         Throwable failure;
 
         synchronized (this) {
             if (executed) throw new IllegalStateException("Already executed.");
             executed = true;
 
-            call = mCall;
             failure = creationFailure;
-            if (call == null && failure == null) {
+            if (failure == null) {
                 try {
-                    call = mCall = createRawCall();
+                    request = newRequest();
                 } catch (Throwable t) {
                     failure = creationFailure = t;
                 }
@@ -117,55 +270,333 @@ final class EasyCallImpl implements EasyCall {
             return;
         }
 
-        if (canceled) {
-            call.cancel();
+        CallMetricsRegistry registry = mServiceMethod.easyOKHttp.callMetrics;
+        if (registry != null) {
+            CallMetrics metrics = registry.get(mServiceMethod.requestSignature,
+                    mServiceMethod.easyOKHttp.resolveHost(request));
+            if (metrics != null) {
+                mMetrics = metrics;
+                // tag在重试、对冲、条件请求中都会保留
+                request = request.newBuilder().tag(metrics).build();
+                callback = new MeasuredCallback(metrics, callback);
+            }
+        }
+
+        RequestKey key = null;
+        if (mPolicy.memoryCache != null) {
+            key = mCacheKey = new RequestKey(request, mServiceMethod.responseConverter);
+            EasyMemoryCache.Entry entry = mPolicy.memoryCache.get(key);
+            if (entry != null) {
+                if (entry.isFresh()) {
+                    deliverCached(entry.response, callback);
+                    return;
+                }
+                if (entry.canRevalidate()) {
+                    mCacheEntry = entry;
+                    request = entry.conditionalRequest(request);
+                }
+            }
+        }
+
+        if (mPolicy.cacheOnlyControl != null) {
+            enqueueCacheOnly(key, request, callback);
+            return;
         }
 
-        call.enqueue(new okhttp3.Callback() {
+        enqueueNetwork(key, request, callback);
+    }
+
+    /**
+     * 先只读取磁盘缓存 没有可用的缓存时再访问网络
+     */
+    private void enqueueCacheOnly(final RequestKey key, final Request request, final EasyCallback<Object> callback) {
+        Request cacheRequest = request.newBuilder().cacheControl(mPolicy.cacheOnlyControl).build();
+        final ResponseCallback responseCallback = new ResponseCallback(callback);
+        enqueueRawCall(cacheRequest, new okhttp3.Callback() {
             @Override
-            public void onResponse(Call call, Response response)
-                    throws IOException {
-                callSuccess(parseResponse(response));
+            public void onResponse(Call call, Response response) {
+                if (response.code() == HTTP_GATEWAY_TIMEOUT
+                        && response.cacheResponse() == null && response.networkResponse() == null) {
+                    // only-if-cached没有可用的缓存
+                    response.close();
+                    enqueueNetworkIfNotCanceled(key, request, callback);
+                    return;
+                }
+                if (mPolicy.staleWhileRevalidate && isStale(response)) {
+                    revalidateInBackground(request);
+                }
+                responseCallback.onResponse(call, response);
             }
 
             @Override
             public void onFailure(Call call, IOException e) {
-                try {
-                    callback.onFailure(EasyCallImpl.this, e);
-                } catch (Throwable t) {
-                    t.printStackTrace();
-                }
+                // 读取缓存失败 依然可以访问网络
+                enqueueNetworkIfNotCanceled(key, request, callback);
             }
+        }, callback);
+    }
+
+    private void enqueueNetworkIfNotCanceled(RequestKey key, Request request, EasyCallback<Object> callback) {
+        if (canceled) {
+            callback.onFailure(this, new IOException("Canceled"));
+        } else {
+            enqueueNetwork(key, request, callback);
+        }
+    }
 
-            private void callFailure(Throwable e) {
+    private static boolean isStale(Response response) {
+        // OkHttp使用过期的缓存时会添加110警告
+        String warning = response.header("Warning");
+        return warning != null && warning.startsWith("110");
+    }
+
+    /**
+     * 在后台强制访问网络 刷新磁盘缓存
+     */
+    private void revalidateInBackground(Request request) {
+        Request networkRequest = request.newBuilder().cacheControl(CacheControl.FORCE_NETWORK).build();
+        Call call = mServiceMethod.httpClient.newCall(networkRequest);
+        // 后台刷新不应该影响用户正在等待的请求
+        mServiceMethod.easyOKHttp.dispatcher.enqueue(call, EasyOptions.PRIORITY_LOW, new okhttp3.Callback() {
+            @Override
+            public void onResponse(Call call, Response response) {
+                // 响应体读取完成后才会写入缓存
                 try {
-                    callback.onFailure(EasyCallImpl.this, e);
-                } catch (Throwable t) {
-                    t.printStackTrace();
+                    response.body().source().readAll(Okio.blackhole());
+                } catch (IOException ignored) {
+                } finally {
+                    response.close();
                 }
             }
 
-            private void callSuccess(EasyResponse response) {
-                try {
-                    callback.onResponse(EasyCallImpl.this, response);
-                } catch (Throwable t) {
-                    t.printStackTrace();
-                }
+            @Override
+            public void onFailure(Call call, IOException e) {
             }
         });
     }
 
+    private void enqueueNetwork(@Nullable RequestKey key, Request request, EasyCallback<Object> callback) {
+        if (mPolicy.coalescer != null) {
+            if (key == null) {
+                key = new RequestKey(request, mServiceMethod.responseConverter);
+            }
+            enqueueCoalesced(key, request, callback);
+            return;
+        }
+        okhttp3.Callback responseCallback = new ResponseCallback(callback);
+        // InputStream只能读取一次 不能重试
+        if (mPolicy.retryPolicy != null && mOneShotBody == null) {
+            RetryingCallback retry = new RetryingCallback(mPolicy.retryPolicy,
+                    mServiceMethod.easyOKHttp.scheduler(), request, new NetworkAttempts(callback), responseCallback);
+            synchronized (this) {
+                mRetry = retry;
+            }
+            responseCallback = retry;
+        }
+        enqueueAttempt(request, responseCallback, callback);
+    }
+
+    private final class NetworkAttempts implements RetryingCallback.Attempts {
+
+        private final EasyCallback<Object> callback;
+
+        NetworkAttempts(EasyCallback<Object> callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return canceled;
+        }
+
+        @Override
+        public void enqueue(Request request, okhttp3.Callback responseCallback) {
+            enqueueAttempt(request, responseCallback, callback);
+        }
+    }
+
+    /**
+     * 发起一次网络请求 配置了对冲策略时可能同时发出两个请求
+     */
+    private void enqueueAttempt(Request request, okhttp3.Callback responseCallback, EasyCallback<Object> callback) {
+        if (mPolicy.hedgePolicy == null) {
+            enqueueRawCall(request, responseCallback, callback);
+            return;
+        }
+        HedgedCall hedged = new HedgedCall(mServiceMethod, mPolicy.hedgePolicy, request, mEasyOptions.priority,
+                responseCallback);
+        synchronized (this) {
+            mHedged = hedged;
+        }
+        hedged.start();
+
+        if (canceled) {
+            hedged.cancel();
+        }
+    }
+
+    private void enqueueRawCall(Request request, okhttp3.Callback responseCallback, EasyCallback<Object> callback) {
+        Call call;
+        try {
+            call = createRawCall(request);
+        } catch (Throwable t) {
+            synchronized (this) {
+                creationFailure = t;
+            }
+            releaseBody();
+            callback.onFailure(this, t);
+            return;
+        }
+        synchronized (this) {
+            mCall = call;
+        }
+
+        if (canceled) {
+            call.cancel();
+        }
+
+        mServiceMethod.easyOKHttp.dispatcher.enqueue(call, mEasyOptions.priority, responseCallback);
+    }
+
+    /**
+     * 读取网络响应后回调
+     */
+    private final class ResponseCallback implements okhttp3.Callback {
+
+        private final EasyCallback<Object> callback;
+
+        ResponseCallback(EasyCallback<Object> callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) {
+            releaseBody();
+            CallMetrics metrics = CallMetrics.of(response.request());
+            long start = metrics != null ? System.nanoTime() : 0;
+            EasyResponse<Object> easyResponse;
+            try {
+                easyResponse = parseResponse(response);
+            } catch (Throwable e) {
+                callFailure(e);
+                return;
+            } finally {
+                if (metrics != null) {
+                    metrics.record(CallMetrics.CONVERT, System.nanoTime() - start);
+                }
+            }
+            callSuccess(easyResponse);
+        }
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            releaseBody();
+            callFailure(e);
+        }
+
+        private void callFailure(Throwable e) {
+            try {
+                callback.onFailure(EasyCallImpl.this, e);
+            } catch (Throwable t) {
+                t.printStackTrace();
+            }
+        }
+
+        private void callSuccess(EasyResponse<Object> response) {
+            try {
+                callback.onResponse(EasyCallImpl.this, response);
+            } catch (Throwable t) {
+                t.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 统计从enqueue到回调的总耗时
+     */
+    private static final class MeasuredCallback implements EasyCallback<Object> {
+
+        private final CallMetrics metrics;
+        private final EasyCallback<Object> callback;
+        private final long start = System.nanoTime();
+
+        MeasuredCallback(CallMetrics metrics, EasyCallback<Object> callback) {
+            this.metrics = metrics;
+            this.callback = callback;
+        }
+
+        @Override
+        public void onResponse(EasyCall call, EasyResponse<Object> response) {
+            metrics.record(CallMetrics.TOTAL, System.nanoTime() - start);
+            callback.onResponse(call, response);
+        }
+
+        @Override
+        public void onFailure(EasyCall call, Throwable t) {
+            metrics.record(CallMetrics.TOTAL, System.nanoTime() - start);
+            callback.onFailure(call, t);
+        }
+    }
+
+    CallMetrics metrics() {
+        return mMetrics;
+    }
+
+    private void deliverCached(EasyResponse<Object> response, EasyCallback<Object> callback) {
+        try {
+            if (canceled) {
+                callback.onFailure(this, new IOException("Canceled"));
+            } else {
+                callback.onResponse(this, response);
+            }
+        } catch (Throwable t) {
+            t.printStackTrace();
+        }
+    }
+
+    private void enqueueCoalesced(RequestKey key, Request request, EasyCallback<Object> callback) {
+        if (canceled) {
+            callback.onFailure(this, new IOException("Canceled"));
+            return;
+        }
+        CallCoalescer.InFlight inFlight = mPolicy.coalescer.enqueue(mServiceMethod, mPolicy, key, request, this, callback);
+        synchronized (this) {
+            mInFlight = inFlight;
+        }
+        // cancel()可能发生在加入之前
+        if (canceled) {
+            inFlight.cancel(this);
+        }
+    }
+
     @Override
     public void cancel() {
         canceled = true;
 
         Call call;
+        CallCoalescer.InFlight inFlight;
+        RetryingCallback retry;
+        HedgedCall hedged;
         synchronized (this) {
             call = mCall;
+            inFlight = mInFlight;
+            retry = mRetry;
+            hedged = mHedged;
         }
         if (call != null) {
             call.cancel();
         }
+        if (hedged != null) {
+            hedged.cancel();
+        }
+        if (retry != null) {
+            retry.cancel();
+        }
+        if (inFlight != null) {
+            inFlight.cancel(this);
+        }
+        // 还在排队的请求立即回调失败
+        mServiceMethod.easyOKHttp.dispatcher.promoteCalls();
     }
 
     @Override
@@ -185,7 +616,54 @@ final class EasyCallImpl implements EasyCall {
 
     @Override
     public EasyCall clone() {
-        return new EasyCallImpl(mServiceMethod);
+        return new EasyCallImpl(mServiceMethod, mEasyOptions, mPolicy);
     }
 
+
+    /**
+     * 统计实际读取的字节数 chunked的响应没有Content-Length
+     */
+    private static final class CountingResponseBody extends ResponseBody {
+
+        private final ResponseBody delegate;
+        private BufferedSource source;
+        long bytesRead;
+
+        CountingResponseBody(ResponseBody delegate) {
+            this.delegate = delegate;
+        }
+
+        @Nullable
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            if (source == null) {
+                source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                    @Override
+                    public long read(Buffer sink, long byteCount) throws IOException {
+                        long read = super.read(sink, byteCount);
+                        if (read != -1) {
+                            bytesRead += read;
+                        }
+                        return read;
+                    }
+                });
+            }
+            return source;
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
 }
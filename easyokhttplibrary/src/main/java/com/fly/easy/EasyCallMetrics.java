@@ -0,0 +1,86 @@
+package com.fly.easy;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 同一个requestSignature和host的各阶段耗时快照
+ * 每个阶段只统计实际发生的请求 例如复用连接时没有DNS和CONNECT
+ *
+ * @see EasyOKHttp.Builder#instrumentation(boolean)
+ */
+
+public final class EasyCallMetrics {
+
+    /** 在优先级队列中等待的时间 */
+    public static final String QUEUE = "queue";
+    /** DNS解析 */
+    public static final String DNS = "dns";
+    /** 建立连接 包括TLS握手 */
+    public static final String CONNECT = "connect";
+    /** TLS握手 */
+    public static final String TLS = "tls";
+    /** 开始发送请求到读取完响应头 */
+    public static final String TTFB = "ttfb";
+    /** 读取响应体 */
+    public static final String BODY = "body";
+    /** 在网络线程中读取和转换响应 包括BODY */
+    public static final String CONVERT = "convert";
+    /** 从enqueue到回调交给callbackExecutor 包括重试和缓存命中 */
+    public static final String TOTAL = "total";
+    /** 回调交给callbackExecutor到实际执行的延迟 */
+    public static final String CALLBACK = "callback";
+
+    private final Object requestSignature;
+    private final String host;
+    private final EasyHistogram[] histograms;
+
+    EasyCallMetrics(Object requestSignature, String host, EasyHistogram[] histograms) {
+        this.requestSignature = requestSignature;
+        this.host = host;
+        this.histograms = histograms;
+    }
+
+    /** The signature passed to {@link EasyOKHttp#createCall(Object, EasyOptions)}. */
+    public Object requestSignature() {
+        return requestSignature;
+    }
+
+    /** Host the calls were sent to, after Domain-Name routing. */
+    public String host() {
+        return host;
+    }
+
+    /** Names of all phases, in the order a call goes through them. */
+    public static List<String> phases() {
+        return Collections.unmodifiableList(Arrays.asList(CallMetrics.PHASES));
+    }
+
+    /**
+     * @param phase 例如{@link #TTFB}
+     * @throws IllegalArgumentException 未知的阶段
+     */
+    public EasyHistogram histogram(String phase) {
+        for (int i = 0; i < CallMetrics.PHASES.length; i++) {
+            if (CallMetrics.PHASES[i].equals(phase)) {
+                return histograms[i];
+            }
+        }
+        throw new IllegalArgumentException("Unknown phase: " + phase);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("EasyCallMetrics{requestSignature=")
+                .append(requestSignature)
+                .append(", host=").append(host);
+        for (int i = 0; i < CallMetrics.PHASES.length; i++) {
+            if (histograms[i].count() > 0) {
+                sb.append(", ").append(CallMetrics.PHASES[i]).append('=').append(histograms[i]);
+            }
+        }
+        return sb.append('}').toString();
+    }
+}
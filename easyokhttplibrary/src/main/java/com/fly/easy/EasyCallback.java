@@ -4,16 +4,19 @@ import okhttp3.Response;
 
 /**
  * 作者 ${郭鹏飞}.<br/>
+ *
+ * @param <T> 响应体转换后的类型 与{@link EasyOptions.OKHttpOptionsBuilder#responseType(java.lang.reflect.Type)}对应
  */
 
-public interface EasyCallback {
+public interface EasyCallback<T> {
     /**
      * Invoked for a received HTTP response.
      * <p>
      * Note: An HTTP response may still indicate an application-level failure such as a 404 or 500.
      * Call {@link Response#isSuccessful()} to determine if the response indicates success.
+     * The converted body is available from {@link EasyResponse#entity()}.
      */
-    void onResponse(EasyCall call, EasyResponse response);
+    void onResponse(EasyCall call, EasyResponse<T> response);
 
     /**
      * Invoked when a network exception occurred talking to the server or when an unexpected
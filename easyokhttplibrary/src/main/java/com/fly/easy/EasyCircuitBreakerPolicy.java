@@ -0,0 +1,121 @@
+package com.fly.easy;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 每个host的熔断策略
+ * <p>
+ * 关闭状态下统计最近windowSize个请求 失败或者慢请求的比例超过阈值时打开
+ * 打开状态下请求直接以{@link EasyCircuitOpenException}失败 不占用OkHttp的线程
+ * 经过openDuration后进入半开状态 只放行halfOpenCalls个请求 根据它们的结果关闭或者重新打开
+ * <p>
+ * 失败指网络异常、超时和5xx响应 取消的请求不统计
+ *
+ * @see EasyOKHttp.Builder#circuitBreaker(EasyCircuitBreakerPolicy)
+ */
+
+public final class EasyCircuitBreakerPolicy {
+
+    final double failureRateThreshold;
+    final double slowCallRateThreshold;
+    final long slowCallDuration;
+    final int windowSize;
+    final int minimumCalls;
+    final long openDuration;
+    final int halfOpenCalls;
+
+    EasyCircuitBreakerPolicy(Builder builder) {
+        failureRateThreshold = builder.failureRateThreshold;
+        slowCallRateThreshold = builder.slowCallRateThreshold;
+        slowCallDuration = builder.slowCallDuration;
+        windowSize = builder.windowSize;
+        minimumCalls = builder.minimumCalls;
+        openDuration = builder.openDuration;
+        halfOpenCalls = builder.halfOpenCalls;
+    }
+
+    public static final class Builder {
+        private double failureRateThreshold = 0.5;
+        private double slowCallRateThreshold = 1;
+        private long slowCallDuration = 5 * 1000L;
+        private int windowSize = 20;
+        private int minimumCalls = 10;
+        private long openDuration = 10 * 1000L;
+        private int halfOpenCalls = 3;
+
+        /**
+         * 失败比例达到阈值时打开
+         *
+         * @param failureRateThreshold 0到1之间 默认0.5
+         */
+        public Builder failureRateThreshold(double failureRateThreshold) {
+            if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+                throw new IllegalArgumentException("failureRateThreshold must be between 0 and 1");
+            }
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        /**
+         * 耗时超过slowCallDuration的请求比例达到阈值时打开
+         *
+         * @param slowCallRateThreshold 0到1之间 默认1 即全部请求都很慢时才打开
+         * @param slowCallDuration      单位毫秒 默认5000
+         */
+        public Builder slowCallRateThreshold(double slowCallRateThreshold, long slowCallDuration) {
+            if (slowCallRateThreshold <= 0 || slowCallRateThreshold > 1) {
+                throw new IllegalArgumentException("slowCallRateThreshold must be between 0 and 1");
+            }
+            if (slowCallDuration <= 0) {
+                throw new IllegalArgumentException("slowCallDuration must be greater than 0 ");
+            }
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            this.slowCallDuration = slowCallDuration;
+            return this;
+        }
+
+        /**
+         * 统计最近windowSize个请求 至少有minimumCalls个请求时才会打开
+         *
+         * @param windowSize   默认20
+         * @param minimumCalls 默认10
+         */
+        public Builder window(int windowSize, int minimumCalls) {
+            if (minimumCalls < 1 || windowSize < minimumCalls) {
+                throw new IllegalArgumentException("1 <= minimumCalls <= windowSize");
+            }
+            this.windowSize = windowSize;
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * 打开状态持续的时间
+         *
+         * @param openDuration 单位毫秒 默认10000
+         */
+        public Builder openDuration(long openDuration) {
+            if (openDuration < 0) {
+                throw new IllegalArgumentException("openDuration must be greater than 0 ");
+            }
+            this.openDuration = openDuration;
+            return this;
+        }
+
+        /**
+         * 半开状态放行的请求数量
+         *
+         * @param halfOpenCalls 默认3
+         */
+        public Builder halfOpenCalls(int halfOpenCalls) {
+            if (halfOpenCalls < 1) {
+                throw new IllegalArgumentException("halfOpenCalls must be greater than 0 ");
+            }
+            this.halfOpenCalls = halfOpenCalls;
+            return this;
+        }
+
+        public EasyCircuitBreakerPolicy build() {
+            return new EasyCircuitBreakerPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.fly.easy;
+
+import java.io.IOException;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * host的熔断器处于打开状态 请求没有发出
+ *
+ * @see EasyOKHttp.Builder#circuitBreaker(EasyCircuitBreakerPolicy)
+ */
+
+public class EasyCircuitOpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String mHost;
+
+    public EasyCircuitOpenException(String host) {
+        super("Circuit breaker is open for " + host);
+        mHost = host;
+    }
+
+    /**
+     * Domain-Name路由之后的host
+     */
+    public String getHost() {
+        return mHost;
+    }
+}
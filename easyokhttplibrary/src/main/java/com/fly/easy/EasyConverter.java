@@ -0,0 +1,43 @@
+package com.fly.easy;
+
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import okhttp3.ResponseBody;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 响应体转换器 在网络线程中将响应体直接转换为对象
+ * 通过{@link EasyOKHttp.Builder#addConverterFactory(Factory)}注册
+ */
+
+public interface EasyConverter<T> {
+
+    /**
+     * Decode {@code value} into an object. Implementations should read from {@link
+     * ResponseBody#source()} or {@link ResponseBody#charStream()} rather than buffering the whole
+     * body into a String first. The body is closed by the caller.
+     */
+    T convert(ResponseBody value) throws IOException;
+
+    /**
+     * Creates {@link EasyConverter} instances based on a type and target usage.
+     */
+    abstract class Factory {
+
+        /**
+         * Returns a {@link EasyConverter} for converting an HTTP response body to {@code type}, or
+         * null if {@code type} cannot be handled by this factory.
+         *
+         * @see EasyOptions.OKHttpOptionsBuilder#responseType(Type)
+         */
+        public
+        @Nullable
+        EasyConverter<?> responseBodyConverter(Type type, EasyOKHttp easyOKHttp) {
+            return null;
+        }
+    }
+
+}
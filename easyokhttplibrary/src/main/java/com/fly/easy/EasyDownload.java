@@ -0,0 +1,577 @@
+package com.fly.easy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fly.easy.DownloadState.Segment;
+
+import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 下载到文件 响应体直接写入文件 不经过{@link EasyResponse}
+ * <p>
+ * 下载中断后保留已经下载的部分和进度 再次下载同一个地址到同一个文件时
+ * 通过Range和If-Range继续 服务端的文件已经改变时从头下载
+ * <p>
+ * 开启分段下载后 服务端返回Accept-Ranges和Content-Length时把文件分为多段同时下载
+ * 每一段单独重试 全部完成后校验长度和摘要
+ *
+ * @see EasyOKHttp#createDownload(String, File)
+ */
+
+public final class EasyDownload {
+
+    private static final int HTTP_PARTIAL_CONTENT = 206;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    // 每次从响应体读取的大小 整个下载过程复用
+    private static final int CHUNK_SIZE = 64 * 1024;
+    // 每写入这么多字节保存一次进度
+    private static final long SAVE_INTERVAL = 1024 * 1024;
+    // 下载的文件不写入磁盘缓存
+    private static final CacheControl NO_STORE = new CacheControl.Builder().noCache().noStore().build();
+    // 每一段至少这么大 文件太小时不分段
+    static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+    // 没有配置重试策略时 下载是幂等的 默认重试
+    private static final EasyRetryPolicy DEFAULT_RETRY = new EasyRetryPolicy.Builder().build();
+
+    private final EasyOKHttp easyOKHttp;
+    private final HttpUrl url;
+    private final File target;
+    private final Headers.Builder headers = new Headers.Builder();
+    private int priority = EasyOptions.PRIORITY_NORMAL;
+    private EasyProgressListener progressListener;
+    private long progressInterval = 100;
+    private int segmentCount = 1;
+    private EasyRetryPolicy retryPolicy;
+    private String checksumAlgorithm;
+    private String checksum;
+
+    private EasyDownloadCallback callback;
+    private boolean executed;
+    private volatile boolean canceled;
+    // 回调成功或者失败后不再改变
+    private final AtomicBoolean finished = new AtomicBoolean();
+    // 还没有完成的段
+    private final AtomicInteger remaining = new AtomicInteger();
+
+    private volatile DownloadState state;
+    private volatile FileChannel channel;
+    private ProgressReporter reporter;
+
+    EasyDownload(EasyOKHttp easyOKHttp, HttpUrl url, File target) {
+        this.easyOKHttp = easyOKHttp;
+        this.url = url;
+        this.target = target;
+    }
+
+    public HttpUrl url() {
+        return url;
+    }
+
+    public File target() {
+        return target;
+    }
+
+    /**
+     * 添加请求头 例如认证信息
+     */
+    public synchronized EasyDownload header(String name, String value) {
+        checkNotExecuted();
+        headers.add(name, value);
+        return this;
+    }
+
+    /**
+     * @param priority {@link EasyOptions.Priority} 默认{@link EasyOptions#PRIORITY_NORMAL}
+     */
+    public synchronized EasyDownload priority(@EasyOptions.Priority int priority) {
+        if (priority < EasyOptions.PRIORITY_LOW || priority > EasyOptions.PRIORITY_HIGH) {
+            throw new IllegalArgumentException("see Priority");
+        }
+        checkNotExecuted();
+        this.priority = priority;
+        return this;
+    }
+
+    /**
+     * 下载进度 通过callbackExecutor回调 两次回调至少间隔intervalMillis
+     * 继续下载时bytesWritten包括之前已经下载的部分
+     */
+    public synchronized EasyDownload progress(EasyProgressListener listener, long intervalMillis) {
+        EasyUtils.checkNotNull(listener, "listener == null");
+        if (intervalMillis < 0) {
+            throw new IllegalArgumentException("intervalMillis < 0");
+        }
+        checkNotExecuted();
+        this.progressListener = listener;
+        this.progressInterval = intervalMillis;
+        return this;
+    }
+
+    /**
+     * 分段同时下载 服务端需要返回Accept-Ranges: bytes、Content-Length和ETag或Last-Modified
+     * 每一段至少1MB 同时进行的数量依然受OkHttp的maxRequestsPerHost限制
+     *
+     * @param count 默认1 不分段
+     */
+    public synchronized EasyDownload segments(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be greater than 0 ");
+        }
+        checkNotExecuted();
+        this.segmentCount = count;
+        return this;
+    }
+
+    /**
+     * 每一段失败后的重试策略 重试时从这一段已经下载的位置继续
+     * 默认使用{@link EasyOKHttp.Builder#retryPolicy(EasyRetryPolicy)} 没有配置时最多请求3次
+     */
+    public synchronized EasyDownload retryPolicy(EasyRetryPolicy retryPolicy) {
+        checkNotExecuted();
+        this.retryPolicy = EasyUtils.checkNotNull(retryPolicy, "retryPolicy == null");
+        return this;
+    }
+
+    /**
+     * 下载完成后校验摘要 不一致时删除下载的内容并回调失败
+     *
+     * @param algorithm 例如MD5、SHA-256
+     * @param hex       期望的摘要 十六进制
+     */
+    public synchronized EasyDownload checksum(String algorithm, String hex) {
+        checkNotExecuted();
+        this.checksumAlgorithm = EasyUtils.checkNotNull(algorithm, "algorithm == null");
+        this.checksum = EasyUtils.checkNotNull(hex, "hex == null");
+        return this;
+    }
+
+    public synchronized boolean isExecuted() {
+        return executed;
+    }
+
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    /**
+     * 开始下载 读取进度等文件操作不在调用线程中进行
+     */
+    public void enqueue(EasyDownloadCallback callback) {
+        EasyUtils.checkNotNull(callback, "callback == null");
+        synchronized (this) {
+            checkNotExecuted();
+            executed = true;
+            this.callback = callback;
+            if (progressListener != null) {
+                reporter = new ProgressReporter(progressListener, easyOKHttp.callbackExecutor, progressInterval);
+            }
+        }
+        easyOKHttp.scheduler().execute(new Runnable() {
+            @Override
+            public void run() {
+                start();
+            }
+        });
+    }
+
+    /**
+     * 取消下载 已经下载的部分会保留
+     */
+    public void cancel() {
+        canceled = true;
+        cancelSegments();
+    }
+
+    private void checkNotExecuted() {
+        if (executed) {
+            throw new IllegalStateException("Already executed.");
+        }
+    }
+
+    private void start() {
+        try {
+            state = DownloadState.load(target, url.toString());
+            channel = state.open();
+            if (state.isComplete()) {
+                complete();
+                return;
+            }
+        } catch (Throwable t) {
+            fail(t);
+            return;
+        }
+        List<Segment> segments = state.segments();
+        remaining.set(segments.size());
+        for (Segment segment : segments) {
+            if (segment.isDone(state.contentLength)) {
+                remaining.decrementAndGet();
+            } else {
+                fetch(segment);
+            }
+        }
+    }
+
+    private void fetch(final Segment segment) {
+        Request.Builder builder = new Request.Builder()
+                .url(url)
+                .headers(headers.build())
+                .cacheControl(NO_STORE)
+                // 关闭透明的gzip Range针对的是原始的内容
+                .header("Accept-Encoding", "identity");
+        if (segment.end >= 0) {
+            builder.header("Range", "bytes=" + segment.position + "-" + segment.end);
+        } else if (segment.position > 0) {
+            builder.header("Range", "bytes=" + segment.position + "-");
+        }
+        if (state.validator != null && (segment.end >= 0 || segment.position > 0)) {
+            builder.header("If-Range", state.validator);
+        }
+        Call call = easyOKHttp.httpClient.newCall(builder.build());
+        synchronized (this) {
+            segment.call = call;
+        }
+        if (canceled || finished.get()) {
+            call.cancel();
+        }
+        easyOKHttp.dispatcher.enqueue(call, priority, new Callback() {
+            @Override
+            public void onResponse(Call call, Response response) {
+                try {
+                    onSegmentResponse(segment, response);
+                } catch (Throwable t) {
+                    retryOrFail(segment, t);
+                } finally {
+                    response.close();
+                }
+            }
+
+            @Override
+            public void onFailure(Call call, IOException e) {
+                retryOrFail(segment, e);
+            }
+        });
+    }
+
+    private void onSegmentResponse(Segment segment, Response response) throws IOException {
+        int code = response.code();
+        if (code == HTTP_RANGE_NOT_SATISFIABLE && segment.end < 0 && segment.position > 0
+                && segment.position == state.contentLength) {
+            // 上一次已经下载完成 只是没有来得及重命名
+            segmentFinished();
+            return;
+        }
+        if (code == HTTP_PARTIAL_CONTENT) {
+            long[] range = parseContentRange(response.header("Content-Range"));
+            if (range == null || range[0] != segment.position) {
+                throw new IOException("Unexpected Content-Range: " + response.header("Content-Range"));
+            }
+            if (range[2] >= 0 && state.contentLength < 0) {
+                state.contentLength = range[2];
+            }
+        } else if (response.isSuccessful()) {
+            // If-Range不匹配或者服务端不支持Range 返回完整的内容
+            if (!restart()) {
+                return;
+            }
+            Call call = segment.call;
+            segment = state.restart(channel, validator(response), response.body().contentLength());
+            if (canSplit(response)) {
+                List<Segment> segments = state.split(segmentCount);
+                remaining.set(segments.size());
+                segment = segments.get(0);
+                for (int i = 1; i < segments.size(); i++) {
+                    fetch(segments.get(i));
+                }
+            }
+            // 新的第一段继续使用当前的请求
+            synchronized (this) {
+                segment.call = call;
+            }
+            if (canceled) {
+                call.cancel();
+            }
+        } else if (policy().isRetryable(code)) {
+            throw new RetryableStatusException(code);
+        } else {
+            failResponse(response);
+            return;
+        }
+        transfer(segment, response.body().source());
+        segmentFinished();
+    }
+
+    /**
+     * 只有一段下载完整的内容时才能重新开始 其他段的下载已经失效
+     *
+     * @return 返回false时已经回调失败
+     */
+    private boolean restart() {
+        if (state.segments().size() > 1) {
+            // 先删除进度 回调时已经不会再继续下载
+            state.discard();
+            fail(new IOException("Remote file changed during a segmented download"));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 服务端支持Range 并且文件足够大时分段下载
+     */
+    private boolean canSplit(Response response) {
+        return segmentCount > 1
+                && "bytes".equalsIgnoreCase(response.header("Accept-Ranges"))
+                && state.validator != null
+                && state.contentLength >= segmentCount * MIN_SEGMENT_SIZE;
+    }
+
+    private void transfer(Segment segment, BufferedSource source) throws IOException {
+        long limit = segment.limit(state.contentLength);
+        byte[] chunk = new byte[CHUNK_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        long unsaved = 0;
+        while (segment.position < limit) {
+            int read = source.read(chunk, 0, (int) Math.min(CHUNK_SIZE, limit - segment.position));
+            if (read == -1) {
+                break;
+            }
+            buffer.clear();
+            buffer.limit(read);
+            long position = segment.position;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            segment.position = position;
+            // 有进展时重新计算重试次数
+            segment.failures = 0;
+            unsaved += read;
+            if (unsaved >= SAVE_INTERVAL) {
+                unsaved = 0;
+                state.save();
+            }
+            if (reporter != null) {
+                reporter.update(state.downloaded(), state.contentLength);
+            }
+        }
+        if (limit != Long.MAX_VALUE && segment.position != limit) {
+            throw new IOException("Expected " + (limit - segment.start) + " bytes but received "
+                    + (segment.position - segment.start));
+        }
+    }
+
+    private void segmentFinished() throws IOException {
+        if (remaining.decrementAndGet() == 0) {
+            complete();
+        }
+    }
+
+    /**
+     * 每一段单独重试 从这一段已经下载的位置继续
+     */
+    private void retryOrFail(final Segment segment, Throwable t) {
+        EasyRetryPolicy policy = policy();
+        boolean retryable = t instanceof RetryableStatusException || policy.isRetryable(t);
+        if (!canceled && !finished.get() && retryable && ++segment.failures < policy.maxAttempts) {
+            try {
+                state.save();
+                easyOKHttp.scheduler().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        fetch(segment);
+                    }
+                }, policy.backoff(segment.failures), TimeUnit.MILLISECONDS);
+                return;
+            } catch (IOException | RejectedExecutionException e) {
+                t = e;
+            }
+        }
+        fail(t);
+    }
+
+    private EasyRetryPolicy policy() {
+        return retryPolicy != null ? retryPolicy
+                : easyOKHttp.retryPolicy != null ? easyOKHttp.retryPolicy : DEFAULT_RETRY;
+    }
+
+    private void complete() throws IOException {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            channel.force(false);
+            channel.close();
+            if (state.contentLength >= 0 && state.partFile.length() != state.contentLength) {
+                throw new IOException("Expected " + state.contentLength + " bytes but file has "
+                        + state.partFile.length());
+            }
+            verifyChecksum();
+            state.finish();
+        } catch (IOException e) {
+            deliverFailure(e);
+            return;
+        }
+        if (reporter != null) {
+            reporter.finish(state.downloaded(), state.contentLength);
+        }
+        final EasyDownloadCallback callback = this.callback;
+        easyOKHttp.callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (canceled) {
+                    callback.onFailure(EasyDownload.this, new IOException("Canceled"));
+                } else {
+                    callback.onSuccess(EasyDownload.this, target);
+                }
+            }
+        });
+    }
+
+    /**
+     * 校验失败时删除下载的内容 下一次从头下载
+     */
+    private void verifyChecksum() throws IOException {
+        if (checksumAlgorithm == null) {
+            return;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(checksumAlgorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        Source source = Okio.source(state.partFile);
+        try {
+            Buffer buffer = new Buffer();
+            while (source.read(buffer, CHUNK_SIZE) != -1) {
+                digest.update(buffer.readByteArray());
+            }
+        } finally {
+            EasyUtils.closeQuietly(source);
+        }
+        String actual = ByteString.of(digest.digest()).hex();
+        if (!actual.equalsIgnoreCase(checksum)) {
+            state.discard();
+            throw new IOException(checksumAlgorithm + " mismatch, expected " + checksum + " but was " + actual);
+        }
+    }
+
+    private void failResponse(Response response) throws IOException {
+        EasyResponse<?> easyResponse = new EasyResponse<>(response, response.body(), false);
+        fail(new EasyResponseFailedException(easyResponse));
+    }
+
+    /**
+     * 只回调一次 取消其他段 保存进度
+     */
+    private void fail(Throwable t) {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        cancelSegments();
+        if (state != null) {
+            try {
+                state.save();
+            } catch (IOException ignored) {
+            }
+        }
+        EasyUtils.closeQuietly(channel);
+        deliverFailure(t);
+    }
+
+    private void deliverFailure(final Throwable t) {
+        final EasyDownloadCallback callback = this.callback;
+        easyOKHttp.callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.onFailure(EasyDownload.this, canceled ? new IOException("Canceled") : t);
+            }
+        });
+    }
+
+    private void cancelSegments() {
+        List<Call> calls = new ArrayList<>();
+        synchronized (this) {
+            if (state != null) {
+                for (Segment segment : state.segments()) {
+                    if (segment.call != null) {
+                        calls.add(segment.call);
+                    }
+                }
+            }
+        }
+        for (Call call : calls) {
+            call.cancel();
+        }
+        easyOKHttp.dispatcher.promoteCalls();
+    }
+
+    /**
+     * 可以重试的状态码 例如503
+     */
+    private static final class RetryableStatusException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        RetryableStatusException(int code) {
+            super("HTTP " + code);
+        }
+    }
+
+    /**
+     * 弱ETag不能用于If-Range
+     */
+    static String validator(Response response) {
+        String etag = response.header("ETag");
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return response.header("Last-Modified");
+    }
+
+    /**
+     * bytes start-end/total
+     *
+     * @return start end total 总长度未知时为-1 格式不正确时返回null
+     */
+    static long[] parseContentRange(String contentRange) {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return null;
+        }
+        int dash = contentRange.indexOf('-', 6);
+        int slash = contentRange.indexOf('/', dash + 1);
+        if (dash < 0 || slash < 0) {
+            return null;
+        }
+        try {
+            long start = Long.parseLong(contentRange.substring(6, dash).trim());
+            long end = Long.parseLong(contentRange.substring(dash + 1, slash).trim());
+            String total = contentRange.substring(slash + 1).trim();
+            return new long[]{start, end, "*".equals(total) ? -1 : Long.parseLong(total)};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.fly.easy;
+
+import java.io.File;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 下载结果 通过callbackExecutor回调
+ */
+
+public interface EasyDownloadCallback {
+
+    /**
+     * @param file 下载完成的文件 即{@link EasyDownload#target()}
+     */
+    void onSuccess(EasyDownload download, File file);
+
+    /**
+     * 已经下载的部分会保留 再次下载同一个地址到同一个文件时继续下载
+     */
+    void onFailure(EasyDownload download, Throwable t);
+}
@@ -0,0 +1,120 @@
+package com.fly.easy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 对冲请求策略
+ * <p>
+ * 幂等的请求在延迟时间内没有响应时 再发出一个相同的请求 先返回的响应生效 另一个请求会被取消
+ * 额外的请求数量受预算限制 避免在服务端整体变慢时放大负载
+ *
+ * @see EasyOKHttp.Builder#hedgePolicy(EasyHedgePolicy)
+ * @see EasyOptions.OKHttpOptionsBuilder#hedgePolicy(EasyHedgePolicy)
+ * @see EasyOKHttp#hedgeStats()
+ */
+
+public final class EasyHedgePolicy {
+
+    /** 不进行对冲 可以用来关闭全局的对冲策略 */
+    public static final EasyHedgePolicy NONE = new EasyHedgePolicy(new Builder());
+
+    // 统计的样本数量不足时使用maxDelay
+    static final int MIN_SAMPLES = 20;
+
+    final boolean enabled;
+    final long fixedDelay;
+    final double percentile;
+    final long minDelay;
+    final long maxDelay;
+    final double budget;
+
+    EasyHedgePolicy(Builder builder) {
+        enabled = builder.enabled;
+        fixedDelay = builder.fixedDelay;
+        percentile = builder.percentile;
+        minDelay = builder.minDelay;
+        maxDelay = builder.maxDelay;
+        budget = builder.budget;
+    }
+
+    /**
+     * 发出对冲请求前等待的时间 单位纳秒
+     */
+    long delayNanos(LatencyTracker latency) {
+        if (fixedDelay >= 0) {
+            return TimeUnit.MILLISECONDS.toNanos(fixedDelay);
+        }
+        long observed = latency.percentile(percentile, MIN_SAMPLES);
+        if (observed < 0) {
+            return TimeUnit.MILLISECONDS.toNanos(maxDelay);
+        }
+        return Math.max(TimeUnit.MILLISECONDS.toNanos(minDelay),
+                Math.min(observed, TimeUnit.MILLISECONDS.toNanos(maxDelay)));
+    }
+
+    public static final class Builder {
+        private boolean enabled;
+        private long fixedDelay = -1;
+        private double percentile = 0.95;
+        private long minDelay = 50;
+        private long maxDelay = 2 * 1000L;
+        private double budget = 0.1;
+
+        /**
+         * 固定的等待时间
+         *
+         * @param delay 单位毫秒
+         */
+        public Builder delay(long delay) {
+            if (delay < 0) {
+                throw new IllegalArgumentException("delay < 0");
+            }
+            this.enabled = true;
+            this.fixedDelay = delay;
+            return this;
+        }
+
+        /**
+         * 根据同一个请求最近的耗时计算等待时间 样本不足时使用maxDelay
+         *
+         * @param percentile 0到1之间 通常使用0.95
+         * @param minDelay   单位毫秒 默认50
+         * @param maxDelay   单位毫秒 默认2000
+         */
+        public Builder percentileDelay(double percentile, long minDelay, long maxDelay) {
+            if (percentile <= 0 || percentile >= 1) {
+                throw new IllegalArgumentException("percentile must be between 0 and 1");
+            }
+            if (minDelay < 0 || maxDelay < minDelay) {
+                throw new IllegalArgumentException("0 <= minDelay <= maxDelay");
+            }
+            this.enabled = true;
+            this.fixedDelay = -1;
+            this.percentile = percentile;
+            this.minDelay = minDelay;
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        /**
+         * 对冲请求占普通请求的最大比例
+         *
+         * @param budget 0到1之间 默认0.1 即最多增加10%的请求
+         */
+        public Builder budget(double budget) {
+            if (budget < 0 || budget > 1) {
+                throw new IllegalArgumentException("budget must be between 0 and 1");
+            }
+            this.budget = budget;
+            return this;
+        }
+
+        public EasyHedgePolicy build() {
+            if (!enabled) {
+                throw new IllegalStateException("delay or percentileDelay required.");
+            }
+            return new EasyHedgePolicy(this);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.fly.easy;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 对冲请求统计快照
+ */
+
+public final class EasyHedgeStats {
+
+    private final long requestCount;
+    private final long hedgeCount;
+    private final long hedgeWinCount;
+    private final long throttledCount;
+
+    EasyHedgeStats(long requestCount, long hedgeCount, long hedgeWinCount, long throttledCount) {
+        this.requestCount = requestCount;
+        this.hedgeCount = hedgeCount;
+        this.hedgeWinCount = hedgeWinCount;
+        this.throttledCount = throttledCount;
+    }
+
+    /** Number of requests sent with a hedge policy. */
+    public long requestCount() {
+        return requestCount;
+    }
+
+    /** Number of hedge requests actually sent. */
+    public long hedgeCount() {
+        return hedgeCount;
+    }
+
+    /** Number of hedge requests that responded before the original request. */
+    public long hedgeWinCount() {
+        return hedgeWinCount;
+    }
+
+    /** Number of hedge requests skipped because the budget was exhausted. */
+    public long throttledCount() {
+        return throttledCount;
+    }
+
+    /** Ratio of hedge requests to requests, or 0.0 if there were no requests yet. */
+    public double hedgeRate() {
+        return requestCount == 0 ? 0.0 : (double) hedgeCount / requestCount;
+    }
+
+    @Override
+    public String toString() {
+        return "EasyHedgeStats{requestCount=" + requestCount
+                + ", hedgeCount=" + hedgeCount
+                + ", hedgeWinCount=" + hedgeWinCount
+                + ", throttledCount=" + throttledCount
+                + '}';
+    }
+}
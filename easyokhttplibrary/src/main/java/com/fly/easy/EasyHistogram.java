@@ -0,0 +1,100 @@
+package com.fly.easy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 耗时分布的快照 单位纳秒 分位数的相对误差不超过12.5%
+ */
+
+public final class EasyHistogram {
+
+    static final EasyHistogram EMPTY = new EasyHistogram(new long[0], 0, 0, 0);
+
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    EasyHistogram(long[] counts, long count, long sum, long max) {
+        this.counts = counts;
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    /** Number of recorded values. */
+    public long count() {
+        return count;
+    }
+
+    /** Sum of recorded values in nanoseconds. */
+    public long sum() {
+        return sum;
+    }
+
+    /** Mean in nanoseconds, or 0 if nothing was recorded. */
+    public long mean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /** Largest recorded value in nanoseconds. */
+    public long max() {
+        return max;
+    }
+
+    /**
+     * @param percentile 0到1之间 例如0.99
+     * @return 单位纳秒 没有数据时返回0
+     */
+    public long percentile(double percentile) {
+        if (percentile < 0 || percentile > 1) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1");
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                // 使用桶的上界 不超过最大值
+                long upper = i + 1 < counts.length ? LatencyHistogram.lowerBound(i + 1) - 1 : Long.MAX_VALUE;
+                return Math.min(upper, max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 导出每个桶 依次为桶的最小值和数量 只包含数量不为0的桶
+     */
+    public long[][] buckets() {
+        int size = 0;
+        for (long c : counts) {
+            if (c != 0) size++;
+        }
+        long[][] buckets = new long[size][];
+        for (int i = 0, j = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                buckets[j++] = new long[]{LatencyHistogram.lowerBound(i), counts[i]};
+            }
+        }
+        return buckets;
+    }
+
+    @Override
+    public String toString() {
+        return "EasyHistogram{count=" + count
+                + ", meanMs=" + millis(mean())
+                + ", p50Ms=" + millis(percentile(0.5))
+                + ", p99Ms=" + millis(percentile(0.99))
+                + ", maxMs=" + millis(max)
+                + '}';
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,60 @@
+package com.fly.easy;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 单个host的并发限制快照
+ *
+ * @see EasyOKHttp#hostLimits()
+ */
+
+public final class EasyHostLimit {
+
+    private final String host;
+    private final int limit;
+    private final int inFlight;
+    private final int queued;
+    private final long rttMillis;
+
+    EasyHostLimit(String host, int limit, int inFlight, int queued, long rttMillis) {
+        this.host = host;
+        this.limit = limit;
+        this.inFlight = inFlight;
+        this.queued = queued;
+        this.rttMillis = rttMillis;
+    }
+
+    /** The resolved host, after {@code Domain-Name} routing. */
+    public String host() {
+        return host;
+    }
+
+    /** Maximum number of concurrent requests currently allowed for this host. */
+    public int limit() {
+        return limit;
+    }
+
+    /** Number of requests to this host handed to OkHttp. */
+    public int inFlight() {
+        return inFlight;
+    }
+
+    /** Number of requests to this host waiting for a slot. */
+    public int queued() {
+        return queued;
+    }
+
+    /** Smoothed response time in milliseconds, or 0 if no request completed yet. */
+    public long rttMillis() {
+        return rttMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "EasyHostLimit{host=" + host
+                + ", limit=" + limit
+                + ", inFlight=" + inFlight
+                + ", queued=" + queued
+                + ", rttMillis=" + rttMillis
+                + '}';
+    }
+}
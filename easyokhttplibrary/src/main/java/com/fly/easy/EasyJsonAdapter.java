@@ -0,0 +1,19 @@
+package com.fly.easy;
+
+import java.io.IOException;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 把自定义对象写为JSON 通过{@link EasyOKHttp.Builder#addJsonAdapter(Class, EasyJsonAdapter)}注册
+ * 在网络线程中直接写入请求体 不生成中间的字符串
+ */
+
+public interface EasyJsonAdapter<T> {
+
+    /**
+     * 写出一个完整的JSON值 例如一个对象
+     *
+     * @param value 不为null
+     */
+    void toJson(EasyJsonWriter writer, T value) throws IOException;
+}
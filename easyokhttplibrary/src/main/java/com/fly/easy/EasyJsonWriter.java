@@ -0,0 +1,355 @@
+package com.fly.easy;
+
+import android.support.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+import okio.BufferedSink;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 流式的JSON写入 直接以UTF-8写入OkHttp的{@link BufferedSink}
+ * 支持Map、Collection、数组、基础类型、org.json的对象和注册的{@link EasyJsonAdapter}
+ * 其他对象按照org.json的行为写为toString()的字符串
+ * <p>
+ * org.json是可选的 只依赖OkHttp的JVM上也可以使用 只在第一次使用时查找一次
+ */
+
+public final class EasyJsonWriter {
+
+    private static final int EMPTY_ARRAY = 1;
+    private static final int NONEMPTY_ARRAY = 2;
+    private static final int EMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int EMPTY_DOCUMENT = 6;
+    private static final int NONEMPTY_DOCUMENT = 7;
+
+    // 避免循环引用导致栈溢出
+    private static final int MAX_DEPTH = 255;
+
+    // 没有org.json时为null 只有在存在时才使用OrgJson
+    private static final Class<?> JSON_OBJECT = findClass("org.json.JSONObject");
+    private static final Class<?> JSON_ARRAY = findClass("org.json.JSONArray");
+    private static final Object JSON_NULL = jsonNull();
+
+    private final BufferedSink sink;
+    private final JsonAdapters adapters;
+    private int[] stack = new int[32];
+    private int stackSize;
+
+    EasyJsonWriter(BufferedSink sink, JsonAdapters adapters) {
+        this.sink = sink;
+        this.adapters = adapters;
+        stack[stackSize++] = EMPTY_DOCUMENT;
+    }
+
+    public EasyJsonWriter beginObject() throws IOException {
+        return open(EMPTY_OBJECT, '{');
+    }
+
+    public EasyJsonWriter endObject() throws IOException {
+        return close(EMPTY_OBJECT, NONEMPTY_OBJECT, '}');
+    }
+
+    public EasyJsonWriter beginArray() throws IOException {
+        return open(EMPTY_ARRAY, '[');
+    }
+
+    public EasyJsonWriter endArray() throws IOException {
+        return close(EMPTY_ARRAY, NONEMPTY_ARRAY, ']');
+    }
+
+    public EasyJsonWriter name(String name) throws IOException {
+        EasyUtils.checkNotNull(name, "name == null");
+        int context = peek();
+        if (context == NONEMPTY_OBJECT) {
+            sink.writeByte(',');
+        } else if (context != EMPTY_OBJECT) {
+            throw new IllegalStateException("Nesting problem.");
+        }
+        stack[stackSize - 1] = DANGLING_NAME;
+        string(name);
+        sink.writeByte(':');
+        return this;
+    }
+
+    public EasyJsonWriter value(@Nullable String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        string(value);
+        return this;
+    }
+
+    public EasyJsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        sink.writeUtf8(value ? "true" : "false");
+        return this;
+    }
+
+    public EasyJsonWriter value(long value) throws IOException {
+        beforeValue();
+        sink.writeDecimalLong(value);
+        return this;
+    }
+
+    /**
+     * @throws IllegalArgumentException NaN或者无穷大
+     */
+    public EasyJsonWriter value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+        beforeValue();
+        sink.writeUtf8(Double.toString(value));
+        return this;
+    }
+
+    public EasyJsonWriter value(@Nullable Number value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return value(value.longValue());
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return value(value.doubleValue());
+        }
+        // BigDecimal等使用自身的格式
+        String string = value.toString();
+        if (string.equals("NaN") || string.contains("Infinity")) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+        beforeValue();
+        sink.writeUtf8(string);
+        return this;
+    }
+
+    public EasyJsonWriter nullValue() throws IOException {
+        beforeValue();
+        sink.writeUtf8("null");
+        return this;
+    }
+
+    /**
+     * 按类型写出任意的值 优先使用注册的{@link EasyJsonAdapter}
+     */
+    @SuppressWarnings("unchecked")
+    public EasyJsonWriter value(@Nullable Object value) throws IOException {
+        if (value == null || value == JSON_NULL) {
+            return nullValue();
+        }
+        EasyJsonAdapter<Object> adapter = (EasyJsonAdapter<Object>) adapters.get(value.getClass());
+        if (adapter != null) {
+            int depth = stackSize;
+            adapter.toJson(this, value);
+            if (stackSize != depth) {
+                throw new IllegalStateException(adapter + " did not close every object and array");
+            }
+            return this;
+        }
+        if (value instanceof String) {
+            return value((String) value);
+        }
+        if (value instanceof Number) {
+            return value((Number) value);
+        }
+        if (value instanceof Boolean) {
+            return value(((Boolean) value).booleanValue());
+        }
+        if (value instanceof Map) {
+            beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                name(String.valueOf(entry.getKey()));
+                value(entry.getValue());
+            }
+            return endObject();
+        }
+        if (value instanceof Iterable) {
+            beginArray();
+            for (Object element : (Iterable<?>) value) {
+                value(element);
+            }
+            return endArray();
+        }
+        if (value instanceof Object[]) {
+            return value(Arrays.asList((Object[]) value));
+        }
+        if (value.getClass().isArray()) {
+            // 基础类型的数组
+            beginArray();
+            for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                value(Array.get(value, i));
+            }
+            return endArray();
+        }
+        if (JSON_OBJECT != null && JSON_OBJECT.isInstance(value)) {
+            return OrgJson.writeObject(this, value);
+        }
+        if (JSON_ARRAY != null && JSON_ARRAY.isInstance(value)) {
+            return OrgJson.writeArray(this, value);
+        }
+        if (value instanceof Enum) {
+            return value(((Enum<?>) value).name());
+        }
+        // 与JSONObject.put的行为一致
+        return value(value.toString());
+    }
+
+    private static Class<?> findClass(String name) {
+        try {
+            return Class.forName(name);
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    private static Object jsonNull() {
+        if (JSON_OBJECT == null) {
+            return null;
+        }
+        try {
+            return JSON_OBJECT.getField("NULL").get(null);
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    private EasyJsonWriter open(int empty, char openBracket) throws IOException {
+        beforeValue();
+        if (stackSize == stack.length) {
+            if (stackSize > MAX_DEPTH) {
+                throw new IllegalStateException("Nesting too deep, circular reference?");
+            }
+            stack = Arrays.copyOf(stack, stackSize * 2);
+        }
+        stack[stackSize++] = empty;
+        sink.writeByte(openBracket);
+        return this;
+    }
+
+    private EasyJsonWriter close(int empty, int nonempty, char closeBracket) throws IOException {
+        int context = peek();
+        if (context != nonempty && context != empty) {
+            throw new IllegalStateException("Nesting problem.");
+        }
+        stackSize--;
+        sink.writeByte(closeBracket);
+        return this;
+    }
+
+    private int peek() {
+        if (stackSize == 0) {
+            throw new IllegalStateException("JsonWriter is closed.");
+        }
+        return stack[stackSize - 1];
+    }
+
+    private void beforeValue() throws IOException {
+        switch (peek()) {
+            case NONEMPTY_DOCUMENT:
+                throw new IllegalStateException("JSON must have only one top-level value.");
+            case EMPTY_DOCUMENT:
+                stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+                break;
+            case EMPTY_ARRAY:
+                stack[stackSize - 1] = NONEMPTY_ARRAY;
+                break;
+            case NONEMPTY_ARRAY:
+                sink.writeByte(',');
+                break;
+            case DANGLING_NAME:
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                break;
+            default:
+                throw new IllegalStateException("Nesting problem.");
+        }
+    }
+
+    /**
+     * 连续不需要转义的字符一次写入
+     */
+    private void string(String value) throws IOException {
+        sink.writeByte('"');
+        int last = 0;
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            String replacement;
+            if (c < 0x20) {
+                replacement = controlCharacter(c);
+            } else if (c == '"') {
+                replacement = "\\\"";
+            } else if (c == '\\') {
+                replacement = "\\\\";
+            } else if (c == '\u2028') {
+                replacement = "\\u2028";
+            } else if (c == '\u2029') {
+                replacement = "\\u2029";
+            } else {
+                continue;
+            }
+            if (last < i) {
+                sink.writeUtf8(value, last, i);
+            }
+            sink.writeUtf8(replacement);
+            last = i + 1;
+        }
+        if (last < value.length()) {
+            sink.writeUtf8(value, last, value.length());
+        }
+        sink.writeByte('"');
+    }
+
+    private static String controlCharacter(char c) {
+        switch (c) {
+            case '\b':
+                return "\\b";
+            case '\t':
+                return "\\t";
+            case '\n':
+                return "\\n";
+            case '\f':
+                return "\\f";
+            case '\r':
+                return "\\r";
+            default:
+                return String.format("\\u%04x", (int) c);
+        }
+    }
+
+    /**
+     * 直接引用org.json的代码 只有确认org.json存在时才会加载这个类
+     */
+    private static final class OrgJson {
+
+        @SuppressWarnings("unchecked")
+        static EasyJsonWriter writeObject(EasyJsonWriter writer, Object value) throws IOException {
+            JSONObject object = (JSONObject) value;
+            writer.beginObject();
+            for (Iterator<String> keys = object.keys(); keys.hasNext(); ) {
+                String key = keys.next();
+                writer.name(key);
+                writer.value(object.opt(key));
+            }
+            return writer.endObject();
+        }
+
+        static EasyJsonWriter writeArray(EasyJsonWriter writer, Object value) throws IOException {
+            JSONArray array = (JSONArray) value;
+            writer.beginArray();
+            for (int i = 0, length = array.length(); i < length; i++) {
+                writer.value(array.opt(i));
+            }
+            return writer.endArray();
+        }
+    }
+}
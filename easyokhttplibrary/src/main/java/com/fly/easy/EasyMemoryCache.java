@@ -0,0 +1,155 @@
+package com.fly.easy;
+
+import android.support.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 内存响应缓存 按响应体占用的字节数做LRU淘汰
+ * <p>
+ * 缓存的是已经读取好的{@link EasyResponse} 命中时不访问网络 也不再创建String<br/>
+ * 转换后的entity按转换时实际读取的字节数计算大小 所有命中的请求共享同一个entity对象<br/>
+ * 过期后如果响应带有ETag或Last-Modified 发送If-None-Match/If-Modified-Since进行验证 返回304时继续使用缓存
+ *
+ * @see EasyOKHttp.Builder#memoryCache(long)
+ * @see EasyOptions.OKHttpOptionsBuilder#memoryCacheTtl(long)
+ */
+
+final class EasyMemoryCache {
+
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    private final long maxSize;
+    // accessOrder为true 迭代顺序即最近最少使用的顺序
+    private final LinkedHashMap<RequestKey, Entry> map = new LinkedHashMap<>(0, 0.75f, true);
+    private long size;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    EasyMemoryCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 返回缓存 可能已经过期 需要通过{@link Entry#isFresh()}判断
+     */
+    @Nullable
+    synchronized Entry get(RequestKey key) {
+        Entry entry = map.get(key);
+        if (entry != null && entry.isFresh()) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return entry;
+    }
+
+    /**
+     * 缓存成功的响应
+     *
+     * @param ttl 有效期 单位纳秒
+     */
+    void put(RequestKey key, EasyResponse<Object> response, long ttl) {
+        if (response.code() != 200 || response.raw().cacheControl().noStore()) {
+            return;
+        }
+        long entrySize = response.estimatedSize();
+        if (entrySize < 0 || entrySize > maxSize) {
+            return;
+        }
+        Entry entry = new Entry(response, entrySize, System.nanoTime() + ttl);
+        synchronized (this) {
+            Entry previous = map.put(key, entry);
+            size += entrySize;
+            if (previous != null) {
+                size -= previous.size;
+            }
+            trimToSize();
+        }
+    }
+
+    /**
+     * 服务端返回304 刷新有效期后继续使用缓存
+     *
+     * @param ttl 有效期 单位纳秒
+     */
+    @Nullable
+    EasyResponse<Object> revalidate(Response networkResponse, Entry entry, long ttl) {
+        if (networkResponse.code() != HTTP_NOT_MODIFIED) {
+            return null;
+        }
+        networkResponse.close();
+        entry.expiresAt = System.nanoTime() + ttl;
+        synchronized (this) {
+            hitCount++;
+        }
+        return entry.response;
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<RequestKey, Entry>> iterator = map.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            size -= eldest.size;
+            evictionCount++;
+        }
+    }
+
+    synchronized void evictAll() {
+        map.clear();
+        size = 0;
+    }
+
+    synchronized EasyCacheStats stats() {
+        return new EasyCacheStats(hitCount, missCount, evictionCount, size, maxSize);
+    }
+
+    static final class Entry {
+        final EasyResponse<Object> response;
+        final long size;
+        volatile long expiresAt;
+        @Nullable
+        private final String etag;
+        @Nullable
+        private final String lastModified;
+
+        Entry(EasyResponse<Object> response, long size, long expiresAt) {
+            this.response = response;
+            this.size = size;
+            this.expiresAt = expiresAt;
+            etag = response.headers().get("ETag");
+            lastModified = response.headers().get("Last-Modified");
+        }
+
+        boolean isFresh() {
+            return System.nanoTime() - expiresAt < 0;
+        }
+
+        boolean canRevalidate() {
+            return etag != null || lastModified != null;
+        }
+
+        /**
+         * 添加验证缓存的条件请求头
+         */
+        Request conditionalRequest(Request request) {
+            Request.Builder builder = request.newBuilder();
+            if (etag != null) {
+                builder.header("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                builder.header("If-Modified-Since", lastModified);
+            }
+            return builder.build();
+        }
+    }
+}
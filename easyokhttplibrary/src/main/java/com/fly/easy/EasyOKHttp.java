@@ -2,19 +2,35 @@ package com.fly.easy;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.text.TextUtils;
 
+import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+import okhttp3.Cache;
+import okhttp3.Dispatcher;
+import okhttp3.Headers;
 import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
+import okhttp3.MultipartBody;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
+import okhttp3.RequestBody;
 import okhttp3.Response;
 
 /**
@@ -41,29 +57,85 @@ public class EasyOKHttp {
     Executor callbackExecutor;
 
     OkHttpClient httpClient;
-    private Map<String, String> mBaseUrls;
+    // Domain-Name路由表 可以在运行时整体替换
+    private final AtomicReference<DomainRouter> mDomainRouter;
+    // 响应体转换器 按注册顺序匹配
+    final List<EasyConverter.Factory> converterFactories;
+    // 请求适配器 按注册顺序匹配 默认的适配器在最后
+    final List<EasyCallAdapter.Factory> callAdapterFactories;
+    private final ConcurrentHashMap<Type, EasyCallAdapter<?>> callAdapterCache = new ConcurrentHashMap<>();
+    // POST JSON的编码 包括注册的EasyJsonAdapter
+    final RequestBodyEncoder jsonEncoder;
 
     // 方法缓冲
-    private final Map<Object, ServiceMethod> serviceRequestCache = new ConcurrentHashMap<>();
+    private final ServiceMethodCache serviceRequestCache;
+    // 合并相同的GET请求
+    final CallCoalescer callCoalescer = new CallCoalescer();
+    // 内存响应缓存 没有配置时为null
+    final
+    @Nullable
+    EasyMemoryCache memoryCache;
+    // 磁盘缓存 没有配置时为null
+    final
+    @Nullable
+    Cache diskCache;
 
-    private OkHttpClient.Builder builder;
+    // 全局重试策略 没有配置时为null
+    final
+    @Nullable
+    EasyRetryPolicy retryPolicy;
+    // 全局对冲策略 没有配置时为null
+    final
+    @Nullable
+    EasyHedgePolicy hedgePolicy;
+    final HedgeBudget hedgeBudget = new HedgeBudget();
+    // 各阶段耗时统计 没有开启时为null
+    final
+    @Nullable
+    CallMetricsRegistry callMetrics;
+    // 请求体达到这个大小时gzip压缩 -1表示默认不压缩
+    final long gzipThreshold;
+    // 不接受压缩请求体的host
+    final Set<String> gzipExcludedHosts;
+    // 按优先级排队
+    final PriorityDispatcher dispatcher;
+    // 延迟任务 例如重试的退避等待
+    private volatile ScheduledExecutorService scheduler;
 
-    EasyOKHttp(HttpUrl baseUrl, Map<String, String> baseUrls, long readTimeout, long connectTimeout, long writeTimeout, Executor callbackExecutor) {
-        this.baseUrl = baseUrl;
-        mBaseUrls = baseUrls;
-        this.readTimeout = readTimeout;
-        this.connectTimeout = connectTimeout;
-        this.writeTimeout = writeTimeout;
-        this.callbackExecutor = callbackExecutor;
-        initInterceptor();
-    }
+    private OkHttpClient.Builder builder;
 
-    EasyOKHttp(HttpUrl baseUrl, long readTimeout, long connectTimeout, long writeTimeout, Executor callbackExecutor) {
-        this.baseUrl = baseUrl;
-        this.readTimeout = readTimeout;
-        this.connectTimeout = connectTimeout;
-        this.writeTimeout = writeTimeout;
-        this.callbackExecutor = callbackExecutor;
+    EasyOKHttp(Builder builder) {
+        this.baseUrl = builder.baseUrl;
+        mDomainRouter = new AtomicReference<>(builder.otherBaseUrls == null
+                ? DomainRouter.EMPTY
+                : DomainRouter.compile(builder.otherBaseUrls));
+        this.readTimeout = builder.readTimeout;
+        this.connectTimeout = builder.connectTimeout;
+        this.writeTimeout = builder.writeTimeout;
+        this.callbackExecutor = builder.callbackExecutor;
+
+        // 内置转换器优先 保证String等基础类型的行为一致
+        List<EasyConverter.Factory> converterFactories = new ArrayList<>(1 + builder.converterFactories.size());
+        converterFactories.add(new BuiltInConverters());
+        converterFactories.addAll(builder.converterFactories);
+        this.converterFactories = Collections.unmodifiableList(converterFactories);
+        List<EasyCallAdapter.Factory> callAdapterFactories = new ArrayList<>(builder.callAdapterFactories);
+        callAdapterFactories.addAll(builder.platform.defaultCallAdapterFactories(callbackExecutor));
+        this.callAdapterFactories = Collections.unmodifiableList(callAdapterFactories);
+        jsonEncoder = RequestBodyEncoder.json(new JsonAdapters(builder.jsonAdapters));
+
+        serviceRequestCache = new ServiceMethodCache(this, builder.serviceMethodCacheSize);
+        dispatcher = new PriorityDispatcher(this, builder.priorityAging,
+                builder.initialHostLimit, builder.maxHostLimit, builder.circuitBreaker);
+        memoryCache = builder.memoryCacheSize > 0 ? new EasyMemoryCache(builder.memoryCacheSize) : null;
+        diskCache = builder.diskCache;
+        retryPolicy = builder.retryPolicy;
+        hedgePolicy = builder.hedgePolicy;
+        callMetrics = builder.instrumentation
+                ? new CallMetricsRegistry(builder.callMetricsSize)
+                : null;
+        gzipThreshold = builder.gzipThreshold;
+        gzipExcludedHosts = Collections.unmodifiableSet(new HashSet<>(builder.gzipExcludedHosts));
         initInterceptor();
     }
 
@@ -77,29 +149,86 @@ public class EasyOKHttp {
         });
     }
 
-    private Request resetRequest(Request request) {
-        List<String> headers = request.headers(DOMAIN_NAME);
-        if (headers == null || headers.isEmpty()) {
+    Request resetRequest(Request request) {
+        // 绝大多数请求没有Domain-Name 不分配任何对象直接返回
+        String domainName = request.header(DOMAIN_NAME);
+        if (domainName == null) {
             return request;
         }
-        if (headers.size() > 1) {
-            throw new IllegalArgumentException("Only one Domain-Name in the headers");
+        Headers headers = request.headers();
+        int count = 0;
+        for (int i = 0, size = headers.size(); i < size; i++) {
+            if (DOMAIN_NAME.equalsIgnoreCase(headers.name(i)) && ++count > 1) {
+                throw new IllegalArgumentException("Only one Domain-Name in the headers");
+            }
+        }
+        DomainRouter router = mDomainRouter.get();
+        if (router.isEmpty()) {
+            throw new NullPointerException("baseUrls is empty");
         }
-        EasyUtils.checkNotNull(mBaseUrls, "mBaseUrls == null");
-        EasyUtils.checkMapNotEmpty(mBaseUrls, "mBaseUrls is empty");
-        String header = request.header(DOMAIN_NAME);
-        String url = mBaseUrls.get(header);
-        if (TextUtils.isEmpty(url)) {
-            throw new NullPointerException("Did not find a matching address");
+        return request.newBuilder().url(router.rewrite(request.url(), domainName)).build();
+    }
+
+    /**
+     * 请求实际访问的host 有Domain-Name时使用路由之后的地址
+     */
+    String resolveHost(Request request) {
+        String domainName = request.header(DOMAIN_NAME);
+        if (domainName != null) {
+            HttpUrl target = mDomainRouter.get().route(domainName);
+            if (target != null) {
+                return target.host();
+            }
+        }
+        return request.url().host();
+    }
+
+    /**
+     * 请求体达到多少字节时gzip压缩 已经指定Content-Encoding的请求不再压缩
+     * multipart中通常是已经压缩过的图片、文件 不压缩
+     *
+     * @param gzip 本次请求的配置 为null时使用全局配置
+     * @return -1表示不压缩
+     */
+    long gzipThreshold(Request request, @Nullable Boolean gzip) {
+        RequestBody body = request.body();
+        if (body == null || Boolean.FALSE.equals(gzip) || (gzip == null && gzipThreshold < 0)) {
+            return -1;
+        }
+        if (body instanceof MultipartBody || body instanceof OneShotRequestBody
+                || request.header("Content-Encoding") != null
+                || gzipExcludedHosts.contains(resolveHost(request))) {
+            return -1;
+        }
+        return gzip != null ? 0 : gzipThreshold;
+    }
+
+    /**
+     * 替换整个Domain-Name路由表 所有地址在调用时解析 替换是原子的
+     * 已经发出的请求不受影响 之后的请求使用新的地址
+     *
+     * @param baseUrls 键为Domain-Name 值为对应的地址
+     * @throws IllegalArgumentException 地址不合法
+     */
+    public void setBaseUrls(Map<String, String> baseUrls) {
+        EasyUtils.checkNotNull(baseUrls, "baseUrls == null");
+        mDomainRouter.set(DomainRouter.compile(baseUrls));
+    }
+
+    /**
+     * 原子的替换或添加一个Domain-Name对应的地址 例如蓝绿发布时切换单个域名
+     *
+     * @param domainName Domain-Name
+     * @param url        地址
+     * @throws IllegalArgumentException 地址不合法
+     */
+    public void putBaseUrl(String domainName, String url) {
+        while (true) {
+            DomainRouter router = mDomainRouter.get();
+            if (mDomainRouter.compareAndSet(router, router.with(domainName, url))) {
+                return;
+            }
         }
-        HttpUrl newHttpUrl = HttpUrl.parse(url);
-        HttpUrl httpUrl = request.url();
-        Request.Builder builder = request.newBuilder();
-        builder.url(httpUrl.newBuilder().
-                host(newHttpUrl.host()).
-                scheme(newHttpUrl.scheme()).
-                port(newHttpUrl.port()).build());
-        return builder.build();
     }
 
     public OkHttpClient.Builder getOkHttpClientBuilder() {
@@ -117,40 +246,272 @@ public class EasyOKHttp {
         this.httpClient = buildHttpClient(httpClient.newBuilder());
     }
 
+    ScheduledExecutorService scheduler() {
+        ScheduledExecutorService result = scheduler;
+        if (result == null) {
+            synchronized (this) {
+                result = scheduler;
+                if (result == null) {
+                    scheduler = result = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "EasyOKHttp Scheduler");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                }
+            }
+        }
+        return result;
+    }
+
     private OkHttpClient buildHttpClient(OkHttpClient.Builder builder) {
+        if (diskCache != null) {
+            builder.cache(diskCache);
+        }
         // 关闭重试
-        return builder.retryOnConnectionFailure(false).build();
+        OkHttpClient client = builder.retryOnConnectionFailure(false).build();
+        Dispatcher dispatcher = client.dispatcher();
+        if (this.dispatcher.maxHostLimit > dispatcher.getMaxRequestsPerHost()) {
+            // 自适应限制负责每个host的并发 OkHttp不再排队 使用单独的Dispatcher避免影响共享的OkHttpClient
+            Dispatcher adaptive = new Dispatcher(dispatcher.executorService());
+            adaptive.setMaxRequests(dispatcher.getMaxRequests());
+            adaptive.setMaxRequestsPerHost(this.dispatcher.maxHostLimit);
+            client = client.newBuilder().dispatcher(adaptive).build();
+        }
+        if (callMetrics != null) {
+            // 包装原有的EventListener 只统计EasyOKHttp发出的请求
+            client = client.newBuilder()
+                    .eventListenerFactory(PhaseListener.factory(client.eventListenerFactory()))
+                    .build();
+        }
+        return client;
     }
 
     /**
-     * @param requestSignature 请求签名 注意这个需要保证唯一性
+     * 相同的requestSignature共享同一个请求模板{@link ServiceMethod}
+     * 模板中的请求方式、地址、请求头、提交方式取自第一次创建时的easyOptions
+     * 参数{@link EasyOptions.OKHttpOptionsBuilder#params(Map)}在每次请求时重新绑定
+     * 合并、内存缓存、磁盘缓存策略、重试、对冲、优先级、上传进度、压缩每次请求单独生效
+     *
+     * @param requestSignature 请求签名 同一个接口使用同一个签名即可
      * @param easyOptions
      * @return
      */
     public EasyCall createCall(@NonNull Object requestSignature, @NonNull EasyOptions easyOptions) {
+        return createCall(requestSignature, easyOptions, EasyCall.class);
+    }
+
+    /**
+     * 创建请求并通过{@link #callAdapter(Type)}适配为returnType 参见{@link #createCall(Object, EasyOptions)}
+     * 除了默认的{@link EasyCall} 其他适配器的结果都在网络线程中返回 组合多个请求时不需要切换线程
+     * <pre>
+     * CompletableFuture&lt;EasyResponse&lt;?&gt;&gt; user = easyOKHttp.createCall("user", options, CompletableFuture.class);
+     * </pre>
+     *
+     * @param returnType 例如{@link EasyCall}、CompletableFuture(API 24)、
+     *                   Publisher({@link PublisherCallAdapterFactory})
+     * @throws IllegalArgumentException 没有可以处理returnType的适配器
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R createCall(@NonNull Object requestSignature, @NonNull EasyOptions easyOptions,
+                            @NonNull Class<? super R> returnType) {
         EasyUtils.checkNotNull(requestSignature, "methodSignature == null");
         EasyUtils.checkNotNull(easyOptions, "easyOptions == null");
+        EasyCallAdapter<?> callAdapter = callAdapter(returnType);
         if (httpClient == null) {
             initHttpClient();
         }
         ServiceMethod serviceMethod = loadServiceMethod(requestSignature, easyOptions);
         // TODO: 2017/9/21 优化配置不同的call实现不同的逻辑 上传和下载
-        EasyCall call = new EasyCallImpl(serviceMethod);
-        return serviceMethod.callAdapter.adapt(call);
+        EasyCall call = new EasyCallImpl(serviceMethod, easyOptions);
+        return (R) callAdapter.adapt(call);
     }
 
-    private ServiceMethod loadServiceMethod(Object methodSignature, EasyOptions easyOptions) {
-        ServiceMethod result = serviceRequestCache.get(methodSignature);
-        if (result != null) return result;
+    /**
+     * 批量请求 地址、请求方式、请求头与缓存的模板相同的请求共享模板 参见{@link #createCall(Object, EasyOptions)}
+     * 不同的请求单独创建模板 不加入缓存 例如/items/1、/items/2
+     * 结果汇总后通过callbackExecutor回调 不支持{@link EasyOptions#STREAMING}
+     *
+     * @param requestSignature 请求签名
+     * @param easyOptions      每个请求的参数 回调结果的顺序与之一致
+     */
+    public EasyBatch createBatch(@NonNull Object requestSignature, @NonNull List<EasyOptions> easyOptions) {
+        EasyUtils.checkNotNull(requestSignature, "methodSignature == null");
+        EasyUtils.checkNotNull(easyOptions, "easyOptions == null");
+        if (httpClient == null) {
+            initHttpClient();
+        }
+        List<EasyCallImpl> calls = new ArrayList<>(easyOptions.size());
+        ServiceMethod template = null;
+        for (EasyOptions options : easyOptions) {
+            EasyUtils.checkNotNull(options, "easyOptions contains null");
+            if (template == null) {
+                template = loadServiceMethod(requestSignature, options);
+            }
+            ServiceMethod serviceMethod;
+            if (template.isSameTemplate(options)) {
+                serviceMethod = template;
+            } else {
+                serviceMethod = new ServiceMethod.Builder(this, options).requestSignature(requestSignature).build();
+            }
+            if (serviceMethod.streaming) {
+                throw new IllegalArgumentException("Batch does not support STREAMING responses.");
+            }
+            calls.add(new EasyCallImpl(serviceMethod, options));
+        }
+        return new EasyBatch(callbackExecutor, calls);
+    }
 
-        synchronized (serviceRequestCache) {
-            result = serviceRequestCache.get(methodSignature);
-            if (result == null) {
-                result = new ServiceMethod.Builder(this, easyOptions).build();
-                serviceRequestCache.put(methodSignature, result);
+    /**
+     * 下载到文件 中断后再次下载同一个地址到同一个文件时继续下载
+     *
+     * @param url    完整的地址 或者相对于baseUrl的地址
+     * @param target 目标文件 下载过程中使用target.part和target.part.meta
+     */
+    public EasyDownload createDownload(@NonNull String url, @NonNull File target) {
+        EasyUtils.checkNotNull(url, "url == null");
+        EasyUtils.checkNotNull(target, "target == null");
+        HttpUrl httpUrl = baseUrl.resolve(url);
+        if (httpUrl == null) {
+            throw new IllegalArgumentException("Illegal URL: " + url);
+        }
+        if (httpClient == null) {
+            initHttpClient();
+        }
+        return new EasyDownload(this, httpUrl, target);
+    }
+
+    /**
+     * Returns a {@link EasyConverter} for {@code type} from the available {@linkplain
+     * #converterFactories factories}.
+     *
+     * @throws IllegalArgumentException if no converter available for {@code type}.
+     */
+    public EasyConverter<?> responseBodyConverter(Type type) {
+        EasyUtils.checkNotNull(type, "type == null");
+        for (EasyConverter.Factory factory : converterFactories) {
+            EasyConverter<?> converter = factory.responseBodyConverter(type, this);
+            if (converter != null) {
+                return converter;
             }
         }
-        return result;
+        throw new IllegalArgumentException("Could not locate ResponseBody converter for " + type);
+    }
+
+    /**
+     * Returns the {@link EasyCallAdapter} for {@code returnType} from the available {@linkplain
+     * #callAdapterFactories factories}. The result is cached per type.
+     *
+     * @throws IllegalArgumentException if no call adapter available for {@code returnType}.
+     */
+    public EasyCallAdapter<?> callAdapter(Type returnType) {
+        EasyUtils.checkNotNull(returnType, "returnType == null");
+        EasyCallAdapter<?> cached = callAdapterCache.get(returnType);
+        if (cached != null) {
+            return cached;
+        }
+        for (EasyCallAdapter.Factory factory : callAdapterFactories) {
+            EasyCallAdapter<?> adapter = factory.get(returnType, this);
+            if (adapter != null) {
+                EasyCallAdapter<?> previous = callAdapterCache.putIfAbsent(returnType, adapter);
+                return previous != null ? previous : adapter;
+            }
+        }
+        throw new IllegalArgumentException("Could not locate call adapter for " + returnType);
+    }
+
+    /**
+     * 默认的{@link EasyCall}执行回调的Executor 其他适配器需要回到主线程时使用
+     */
+    public Executor callbackExecutor() {
+        return callbackExecutor;
+    }
+
+    private ServiceMethod loadServiceMethod(Object methodSignature, EasyOptions easyOptions) {
+        return serviceRequestCache.get(methodSignature, easyOptions);
+    }
+
+    /**
+     * 请求模板缓存的命中、未命中、淘汰次数
+     *
+     * @see Builder#serviceMethodCacheSize(int)
+     */
+    public EasyCacheStats serviceMethodCacheStats() {
+        return serviceRequestCache.stats();
+    }
+
+    /**
+     * 在优先级队列中等待的请求数量
+     *
+     * @see EasyOptions.OKHttpOptionsBuilder#priority(int)
+     */
+    public int queuedCallsCount() {
+        return dispatcher.queuedCallsCount();
+    }
+
+    /**
+     * 已经交给OkHttp的请求数量
+     */
+    public int runningCallsCount() {
+        return dispatcher.runningCallsCount();
+    }
+
+    /**
+     * 每个host当前的并发限制、正在进行和排队的请求数量
+     * host为Domain-Name路由之后的地址
+     *
+     * @see Builder#adaptiveHostLimit(int, int)
+     */
+    public List<EasyHostLimit> hostLimits() {
+        return dispatcher.hostLimits();
+    }
+
+    /**
+     * 内存响应缓存的统计 size为当前占用的字节数 没有配置内存缓存时返回null
+     *
+     * @see Builder#memoryCache(long)
+     */
+    @Nullable
+    public EasyCacheStats memoryCacheStats() {
+        return memoryCache == null ? null : memoryCache.stats();
+    }
+
+    /**
+     * 对冲请求的统计 可以用来监控额外增加的请求量
+     *
+     * @see Builder#hedgePolicy(EasyHedgePolicy)
+     */
+    public EasyHedgeStats hedgeStats() {
+        return hedgeBudget.stats();
+    }
+
+    /**
+     * 每个requestSignature和host的各阶段耗时快照 没有开启统计时返回空列表
+     *
+     * @see Builder#instrumentation(boolean)
+     */
+    public List<EasyCallMetrics> callMetrics() {
+        return callMetrics == null ? Collections.<EasyCallMetrics>emptyList() : callMetrics.snapshot();
+    }
+
+    /**
+     * 清空耗时统计 例如每次上报之后
+     */
+    public void resetCallMetrics() {
+        if (callMetrics != null) {
+            callMetrics.reset();
+        }
+    }
+
+    /**
+     * 清空内存响应缓存
+     */
+    public void evictMemoryCache() {
+        if (memoryCache != null) {
+            memoryCache.evictAll();
+        }
     }
 
     public static final class Builder {
@@ -163,6 +524,32 @@ public class EasyOKHttp {
         private
         @Nullable
         Executor callbackExecutor;
+        private final List<EasyConverter.Factory> converterFactories = new ArrayList<>();
+        private final List<EasyCallAdapter.Factory> callAdapterFactories = new ArrayList<>();
+        private final Map<Class<?>, EasyJsonAdapter<?>> jsonAdapters = new LinkedHashMap<>();
+        private int serviceMethodCacheSize = 256;
+        private long priorityAging = 1000;
+        private int initialHostLimit;
+        private int maxHostLimit;
+        private long coalesceInterval;
+        private long coalesceBudget;
+        private
+        @Nullable
+        EasyCircuitBreakerPolicy circuitBreaker;
+        private long memoryCacheSize = 0;
+        private
+        @Nullable
+        Cache diskCache;
+        private
+        @Nullable
+        EasyRetryPolicy retryPolicy;
+        private
+        @Nullable
+        EasyHedgePolicy hedgePolicy;
+        private boolean instrumentation;
+        private int callMetricsSize = 32;
+        private long gzipThreshold = -1;
+        private final Set<String> gzipExcludedHosts = new HashSet<>();
 
         Builder(Platform platform) {
             this.platform = platform;
@@ -172,6 +559,11 @@ public class EasyOKHttp {
             this(Platform.get());
         }
 
+        /**
+         * 配置多个baseUrl 通过请求头{@link #DOMAIN_NAME_HEADER}选择 地址在{@link #build()}时解析
+         *
+         * @see EasyOKHttp#setBaseUrls(Map)
+         */
         public Builder baseUrls(Map<String, String> otherBaseUrls) {
             EasyUtils.checkNotNull(otherBaseUrls, "otherBaseUrls == null");
             EasyUtils.checkMapNotEmpty(otherBaseUrls, "otherBaseUrls is empty");
@@ -227,19 +619,239 @@ public class EasyOKHttp {
             return this;
         }
 
+        /**
+         * 请求模板缓存的最大数量 超出后淘汰最近最少使用的模板
+         *
+         * @param serviceMethodCacheSize 默认256
+         */
+        public Builder serviceMethodCacheSize(int serviceMethodCacheSize) {
+            if (serviceMethodCacheSize <= 0) {
+                throw new IllegalArgumentException("serviceMethodCacheSize must be greater than 0 ");
+            }
+            this.serviceMethodCacheSize = serviceMethodCacheSize;
+            return this;
+        }
+
+        /**
+         * 请求排队的时间每增加priorityAging 相当于提升一个优先级 避免低优先级的请求一直等待
+         * 同时进行的请求数量由OkHttp的{@link okhttp3.Dispatcher}决定
+         *
+         * @param priorityAging 单位毫秒 默认1000
+         * @see EasyOptions.OKHttpOptionsBuilder#priority(int)
+         */
+        public Builder priorityAging(long priorityAging) {
+            if (priorityAging < 0) {
+                throw new IllegalArgumentException("priorityAging must be greater than 0 ");
+            }
+            this.priorityAging = priorityAging;
+            return this;
+        }
+
+        /**
+         * 开启每个host的自适应并发限制 代替OkHttp固定的maxRequestsPerHost
+         * 耗时明显增加、超时或者返回429、503时减小限制 恢复后逐渐增大
+         *
+         * @param initialLimit 初始的并发数量
+         * @param maxLimit     最大的并发数量 总数依然不超过OkHttp的maxRequests
+         * @see EasyOKHttp#hostLimits()
+         */
+        public Builder adaptiveHostLimit(int initialLimit, int maxLimit) {
+            if (initialLimit < 1 || maxLimit < initialLimit) {
+                throw new IllegalArgumentException("1 <= initialLimit <= maxLimit");
+            }
+            this.initialHostLimit = initialLimit;
+            this.maxHostLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * 开启每个host的熔断器 host不可用时请求立即以{@link EasyCircuitOpenException}失败
+         * 不再等待连接超时占用OkHttp的线程 host为Domain-Name路由之后的地址
+         */
+        public Builder circuitBreaker(EasyCircuitBreakerPolicy circuitBreaker) {
+            this.circuitBreaker = EasyUtils.checkNotNull(circuitBreaker, "circuitBreaker == null");
+            return this;
+        }
+
+        /**
+         * 执行回调的Executor 默认Android中为主线程 普通JVM中为OkHttp的线程
+         * 设置后{@link #callbackCoalescing(long, long)}不再生效
+         *
+         * @see #directCallbackExecutor()
+         */
+        public Builder callbackExecutor(Executor callbackExecutor) {
+            this.callbackExecutor = EasyUtils.checkNotNull(callbackExecutor, "callbackExecutor == null");
+            return this;
+        }
+
+        /**
+         * 在OkHttp的线程中直接回调 不切换线程 适合服务端和单元测试
+         */
+        public Builder directCallbackExecutor() {
+            return callbackExecutor(Platform.DirectExecutor.INSTANCE);
+        }
+
+        /**
+         * 合并主线程回调 大量请求同时完成时不再每个回调发送一条消息
+         * 回调在每一帧(或者每隔intervalMillis)批量执行 每次最多执行budgetMillis 剩下的留到下一次
+         *
+         * @param intervalMillis 0表示跟随屏幕刷新 每一帧执行一次
+         * @param budgetMillis   每次执行回调的时间预算 例如4
+         */
+        public Builder callbackCoalescing(long intervalMillis, long budgetMillis) {
+            if (intervalMillis < 0) {
+                throw new IllegalArgumentException("intervalMillis < 0");
+            }
+            if (budgetMillis <= 0) {
+                throw new IllegalArgumentException("budgetMillis must be greater than 0 ");
+            }
+            this.coalesceInterval = intervalMillis;
+            this.coalesceBudget = budgetMillis;
+            return this;
+        }
+
+        /**
+         * 开启内存响应缓存 按响应体占用的字节数淘汰
+         * 具体的请求通过{@link EasyOptions.OKHttpOptionsBuilder#memoryCacheTtl(long)}开启缓存
+         *
+         * @param maxSize 最大占用字节数
+         */
+        public Builder memoryCache(long maxSize) {
+            if (maxSize <= 0) {
+                throw new IllegalArgumentException("maxSize must be greater than 0 ");
+            }
+            this.memoryCacheSize = maxSize;
+            return this;
+        }
+
+        /**
+         * 开启磁盘缓存 具体的请求通过{@link EasyOptions.OKHttpOptionsBuilder#cachePolicy(int)}选择缓存策略
+         *
+         * @param directory 缓存目录 同一时间只能有一个缓存使用这个目录
+         * @param maxSize   最大占用字节数
+         */
+        public Builder diskCache(File directory, long maxSize) {
+            EasyUtils.checkNotNull(directory, "directory == null");
+            if (maxSize <= 0) {
+                throw new IllegalArgumentException("maxSize must be greater than 0 ");
+            }
+            this.diskCache = new Cache(directory, maxSize);
+            return this;
+        }
+
+        /**
+         * 全局重试策略 可以通过{@link EasyOptions.OKHttpOptionsBuilder#retryPolicy(EasyRetryPolicy)}覆盖
+         * 默认不重试
+         */
+        public Builder retryPolicy(EasyRetryPolicy retryPolicy) {
+            this.retryPolicy = EasyUtils.checkNotNull(retryPolicy, "retryPolicy == null");
+            return this;
+        }
+
+        /**
+         * 全局对冲策略 可以通过{@link EasyOptions.OKHttpOptionsBuilder#hedgePolicy(EasyHedgePolicy)}覆盖
+         * 默认不对冲
+         */
+        public Builder hedgePolicy(EasyHedgePolicy hedgePolicy) {
+            this.hedgePolicy = EasyUtils.checkNotNull(hedgePolicy, "hedgePolicy == null");
+            return this;
+        }
+
+        /**
+         * 统计每个请求的排队、DNS、连接、TLS、首字节、响应体、转换、回调延迟等阶段的耗时
+         * 按requestSignature和host汇总 通过{@link EasyOKHttp#callMetrics()}导出
+         * 最多保留{@link #callMetricsSize(int)}个签名的统计 超出时淘汰最近没有使用的
+         * 默认关闭 关闭时不创建任何统计对象
+         */
+        public Builder instrumentation(boolean instrumentation) {
+            this.instrumentation = instrumentation;
+            return this;
+        }
+
+        /**
+         * 耗时统计保留的签名数量 每个签名和host的每个阶段占用约2KB 只为记录过的阶段分配
+         *
+         * @param callMetricsSize 默认32
+         */
+        public Builder callMetricsSize(int callMetricsSize) {
+            if (callMetricsSize <= 0) {
+                throw new IllegalArgumentException("callMetricsSize must be greater than 0");
+            }
+            this.callMetricsSize = callMetricsSize;
+            return this;
+        }
+
+        /**
+         * 请求体不小于minBytes时gzip压缩 并添加请求头Content-Encoding: gzip multipart请求体不压缩
+         * 长度未知的请求体(例如JSON)先写出最多minBytes字节判断 较小的请求体直接按固定长度发送
+         * 可以通过{@link EasyOptions.OKHttpOptionsBuilder#gzipRequest(boolean)}覆盖
+         * 默认不压缩 服务端需要支持解压请求体
+         *
+         * @see #disableGzipRequests(String...)
+         */
+        public Builder gzipRequests(long minBytes) {
+            if (minBytes < 0) {
+                throw new IllegalArgumentException("minBytes < 0");
+            }
+            this.gzipThreshold = minBytes;
+            return this;
+        }
+
+        /**
+         * 发往这些host的请求体不压缩 host为Domain-Name路由之后实际访问的地址
+         */
+        public Builder disableGzipRequests(String... hosts) {
+            EasyUtils.checkNotNull(hosts, "hosts == null");
+            for (String host : hosts) {
+                EasyUtils.checkNotNull(host, "host == null");
+                // HttpUrl中的host都是小写
+                gzipExcludedHosts.add(host.toLowerCase(Locale.US));
+            }
+            return this;
+        }
+
+        /**
+         * Add converter factory for deserialization of response bodies off the main thread.
+         */
+        public Builder addConverterFactory(EasyConverter.Factory factory) {
+            converterFactories.add(EasyUtils.checkNotNull(factory, "factory == null"));
+            return this;
+        }
+
+        /**
+         * Add a call adapter factory for supporting return types other than {@link EasyCall}.
+         * 先注册的优先 内置的CompletableFuture(API 24)和{@link EasyCall}适配器在最后
+         *
+         * @see EasyOKHttp#createCall(Object, EasyOptions, Class)
+         */
+        public Builder addCallAdapterFactory(EasyCallAdapter.Factory factory) {
+            callAdapterFactories.add(EasyUtils.checkNotNull(factory, "factory == null"));
+            return this;
+        }
+
+        /**
+         * 注册POST JSON参数中自定义对象的写法 同样用于type的子类
+         * 参数支持嵌套的Map、Collection、数组 直接写入请求体
+         */
+        public <T> Builder addJsonAdapter(Class<T> type, EasyJsonAdapter<? super T> adapter) {
+            EasyUtils.checkNotNull(type, "type == null");
+            jsonAdapters.put(type, EasyUtils.checkNotNull(adapter, "adapter == null"));
+            return this;
+        }
+
         public EasyOKHttp build() {
 
             if (baseUrl == null) {
                 throw new IllegalStateException("Base URL required.");
             }
 
-            callbackExecutor = platform.defaultCallbackExecutor();
-
-            if (otherBaseUrls == null) {
-                return new EasyOKHttp(baseUrl, readTimeout, connectTimeout, writeTimeout, callbackExecutor);
-            } else {
-                return new EasyOKHttp(baseUrl, otherBaseUrls, readTimeout, connectTimeout, writeTimeout, callbackExecutor);
+            if (callbackExecutor == null) {
+                callbackExecutor = coalesceBudget > 0
+                        ? platform.coalescingCallbackExecutor(coalesceInterval, coalesceBudget)
+                        : platform.defaultCallbackExecutor();
             }
+
+            return new EasyOKHttp(this);
         }
 
     }
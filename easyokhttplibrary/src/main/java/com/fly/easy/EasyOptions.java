@@ -1,11 +1,11 @@
 package com.fly.easy;
 
 import android.support.annotation.IntDef;
-import android.text.TextUtils;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
-import java.util.HashMap;
+import java.lang.reflect.Type;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -25,16 +25,74 @@ public class EasyOptions {
 
     public static final int JSON = 0; // post提交json
     public static final int FROM = 1; // post提交form表单
+    public static final int MULTIPART = 2; // post提交multipart 参数可以是File、InputStream、ByteBuffer
 
-    @IntDef({JSON, FROM})
+    @IntDef({JSON, FROM, MULTIPART})
     @Retention(RetentionPolicy.SOURCE) //注解保留范围为源代码
     public @interface PostType {
     }
 
+    public static final int BUFFERED = 0; // 响应体一次性读取为String 默认
+    public static final int STREAMING = 1; // 响应体以流的形式交给回调 按需读取
+
+    /**
+     * 响应体的读取方式
+     * <p>
+     * {@link #BUFFERED} 在网络线程中读取完整的响应体，可以通过{@link EasyResponse#string()}获取<br/>
+     * {@link #STREAMING} 不预先读取响应体，{@link EasyCallback#onResponse(EasyCall, EasyResponse)}
+     * 直接在网络线程中回调，通过{@link EasyResponse#source()}或{@link EasyResponse#byteStream()}
+     * 读取，使用完毕后必须调用{@link EasyResponse#close()}
+     */
+    @IntDef({BUFFERED, STREAMING})
+    @Retention(RetentionPolicy.SOURCE) //注解保留范围为源代码
+    public @interface ResponseMode {
+    }
+
+    public static final int CACHE_DEFAULT = 0; // 按照HTTP缓存协议使用磁盘缓存 默认
+    public static final int NETWORK_ONLY = 1; // 不读取磁盘缓存 响应依然会写入缓存
+    public static final int CACHE_FIRST = 2; // 有磁盘缓存时直接使用 不管是否过期 没有缓存时访问网络
+    public static final int STALE_WHILE_REVALIDATE = 3; // 在maxStale内的缓存直接使用 过期的缓存同时在后台刷新
+
+    /**
+     * 磁盘缓存策略 需要配置{@link EasyOKHttp.Builder#diskCache(java.io.File, long)}
+     * 只对{@link #GET}请求生效
+     */
+    @IntDef({CACHE_DEFAULT, NETWORK_ONLY, CACHE_FIRST, STALE_WHILE_REVALIDATE})
+    @Retention(RetentionPolicy.SOURCE) //注解保留范围为源代码
+    public @interface CachePolicy {
+    }
+
+    public static final int PRIORITY_LOW = 0; // 预加载、统计等用户看不到的请求
+    public static final int PRIORITY_NORMAL = 1; // 默认
+    public static final int PRIORITY_HIGH = 2; // 用户正在等待的请求
+
+    /**
+     * 请求排队时的优先级 高优先级的请求先发出
+     * 低优先级的请求等待时间越长 优先级越高 不会一直等待
+     *
+     * @see EasyOKHttp.Builder#priorityAging(long)
+     */
+    @IntDef({PRIORITY_LOW, PRIORITY_NORMAL, PRIORITY_HIGH})
+    @Retention(RetentionPolicy.SOURCE) //注解保留范围为源代码
+    public @interface Priority {
+    }
+
     String url; // 访问全路径
     String path; // 地址 当url和path同时存在url生效
     final int method; // 请求方式 支持 GET POST 默认GET
     int postType; // post提交json
+    int responseMode; // 响应体读取方式 默认BUFFERED
+    Type responseType; // 响应体转换的目标类型 为null时不进行转换
+    boolean coalesce; // 是否合并同时发出的相同GET请求
+    long memoryCacheTtl; // 内存缓存有效期 单位毫秒 0表示不缓存
+    int cachePolicy; // 磁盘缓存策略 默认CACHE_DEFAULT
+    long maxStale; // STALE_WHILE_REVALIDATE允许使用的最大过期时间 单位毫秒 0表示不限制
+    EasyRetryPolicy retryPolicy; // 重试策略 为null时使用全局配置
+    EasyHedgePolicy hedgePolicy; // 对冲策略 为null时使用全局配置
+    int priority; // 排队时的优先级 默认PRIORITY_NORMAL
+    EasyProgressListener uploadProgress; // 请求体的上传进度 为null时不回调
+    long progressInterval; // 两次进度回调的最小间隔 单位毫秒
+    Boolean gzipRequest; // 是否gzip压缩请求体 为null时使用全局配置
     Map<String, Object> params; // 参数t
     // 配置请求头 不会覆盖之前添加的
     Map<String, List<String>> mulHeaders;
@@ -54,7 +112,7 @@ public class EasyOptions {
      * @return
      */
     public boolean isFullPath() {
-        return TextUtils.isEmpty(path);
+        return EasyUtils.isEmpty(path);
     }
 
     public static class OKHttpOptionsBuilder {
@@ -62,6 +120,19 @@ public class EasyOptions {
         private String url = null;
         private String path = null;
         private int method = GET;
+        private int responseMode = BUFFERED;
+        private Type responseType = null;
+        private boolean coalesce = false;
+        private long memoryCacheTtl = 0;
+        private int cachePolicy = CACHE_DEFAULT;
+        private long maxStale = 0;
+        private EasyRetryPolicy retryPolicy = null;
+        private EasyHedgePolicy hedgePolicy = null;
+        private int priority = PRIORITY_NORMAL;
+        private int postType = JSON;
+        private EasyProgressListener uploadProgress = null;
+        private long progressInterval = 100;
+        private Boolean gzipRequest = null;
         private Map<String, Object> params = null; // 参数
         private Map<String, List<String>> mulHeaders;
         private Map<String, String> sigHeaders;
@@ -115,11 +186,166 @@ public class EasyOptions {
          * @see #method(int)
          */
         public OKHttpOptionsBuilder postType(@PostType int postType) {
-            if (this instanceof OKHttpOptionsPostBuilder) {
-                ((OKHttpOptionsPostBuilder)this).postType(postType);
-            } else {
+            if (method != POST) {
                 throw new IllegalArgumentException("this is not OKHttpOptionsPostBuilder, see method(int)");
             }
+            if (postType != JSON && postType != FROM && postType != MULTIPART) {
+                throw new IllegalArgumentException("see PostType");
+            }
+            this.postType = postType;
+            return this;
+        }
+
+        /**
+         * 请求体的上传进度 通过callbackExecutor回调 两次回调至少间隔100毫秒
+         *
+         * @see #uploadProgress(EasyProgressListener, long)
+         */
+        public OKHttpOptionsBuilder uploadProgress(EasyProgressListener listener) {
+            return uploadProgress(listener, 100);
+        }
+
+        /**
+         * 请求体的上传进度 通过callbackExecutor回调 上传完成时一定会回调一次
+         * 回调不会在callbackExecutor中堆积 执行时总是拿到最新的进度
+         *
+         * @param intervalMillis 两次回调的最小间隔 0表示每写出一块数据回调一次
+         */
+        public OKHttpOptionsBuilder uploadProgress(EasyProgressListener listener, long intervalMillis) {
+            EasyUtils.checkNotNull(listener, "listener == null");
+            if (intervalMillis < 0) {
+                throw new IllegalArgumentException("intervalMillis < 0");
+            }
+            this.uploadProgress = listener;
+            this.progressInterval = intervalMillis;
+            return this;
+        }
+
+        /**
+         * 是否gzip压缩请求体 覆盖{@link EasyOKHttp.Builder#gzipRequests(long)}
+         * true时忽略全局的大小阈值 但仍然不会压缩{@link EasyOKHttp.Builder#disableGzipRequests(String...)}中的host
+         */
+        public OKHttpOptionsBuilder gzipRequest(boolean gzip) {
+            this.gzipRequest = gzip;
+            return this;
+        }
+
+        /**
+         * 指定响应体的读取方式
+         *
+         * @param responseMode {@link ResponseMode}
+         */
+        public OKHttpOptionsBuilder responseMode(@ResponseMode int responseMode) {
+            if (responseMode != BUFFERED && responseMode != STREAMING) {
+                throw new IllegalArgumentException("see ResponseMode");
+            }
+            this.responseMode = responseMode;
+            return this;
+        }
+
+        /**
+         * 指定响应体转换的目标类型 在网络线程中通过{@link EasyConverter}完成转换
+         * 结果通过{@link EasyResponse#entity()}获取
+         *
+         * @param responseType 目标类型 例如 User.class
+         * @see EasyOKHttp.Builder#addConverterFactory(EasyConverter.Factory)
+         */
+        public OKHttpOptionsBuilder responseType(Type responseType) {
+            EasyUtils.checkNotNull(responseType, "responseType == null");
+            this.responseType = responseType;
+            return this;
+        }
+
+        /**
+         * 合并同时发出的相同GET请求 地址、参数、请求头相同的请求只发出一次 结果分发给所有回调
+         * 只对{@link #GET}且{@link #BUFFERED}的请求生效 默认不合并
+         * <p>
+         * 注意所有回调收到的是同一个{@link EasyResponse}对象
+         *
+         * @param coalesce true 合并
+         */
+        public OKHttpOptionsBuilder coalesce(boolean coalesce) {
+            this.coalesce = coalesce;
+            return this;
+        }
+
+        /**
+         * 将成功的响应缓存在内存中 有效期内不再访问网络
+         * 过期后如果响应带有ETag或Last-Modified 通过条件请求验证 服务端返回304时继续使用缓存
+         * 只对{@link #GET}且{@link #BUFFERED}的请求生效 需要先配置{@link EasyOKHttp.Builder#memoryCache(long)}
+         * <p>
+         * 注意命中缓存的回调收到的是同一个{@link EasyResponse}对象 {@link EasyResponse#entity()}也是同一个对象
+         * 对应的responseType最好是不可变的类型 修改entity会影响之后命中缓存的请求
+         *
+         * @param memoryCacheTtl 有效期 单位毫秒 0表示不缓存 默认0
+         */
+        public OKHttpOptionsBuilder memoryCacheTtl(long memoryCacheTtl) {
+            if (memoryCacheTtl < 0) {
+                throw new IllegalArgumentException("memoryCacheTtl must be greater than 0 ");
+            }
+            this.memoryCacheTtl = memoryCacheTtl;
+            return this;
+        }
+
+        /**
+         * 指定磁盘缓存策略
+         *
+         * @param cachePolicy {@link CachePolicy}
+         * @see #maxStale(long)
+         */
+        public OKHttpOptionsBuilder cachePolicy(@CachePolicy int cachePolicy) {
+            if (cachePolicy < CACHE_DEFAULT || cachePolicy > STALE_WHILE_REVALIDATE) {
+                throw new IllegalArgumentException("see CachePolicy");
+            }
+            this.cachePolicy = cachePolicy;
+            return this;
+        }
+
+        /**
+         * {@link #STALE_WHILE_REVALIDATE}时允许直接使用的缓存最大过期时间 超过后等待网络请求
+         *
+         * @param maxStale 单位毫秒 0表示不限制 默认0
+         */
+        public OKHttpOptionsBuilder maxStale(long maxStale) {
+            if (maxStale < 0) {
+                throw new IllegalArgumentException("maxStale must be greater than 0 ");
+            }
+            this.maxStale = maxStale;
+            return this;
+        }
+
+        /**
+         * 指定排队时的优先级
+         *
+         * @param priority {@link Priority} 默认{@link #PRIORITY_NORMAL}
+         */
+        public OKHttpOptionsBuilder priority(@Priority int priority) {
+            if (priority < PRIORITY_LOW || priority > PRIORITY_HIGH) {
+                throw new IllegalArgumentException("see Priority");
+            }
+            this.priority = priority;
+            return this;
+        }
+
+        /**
+         * 指定重试策略 覆盖{@link EasyOKHttp.Builder#retryPolicy(EasyRetryPolicy)}
+         *
+         * @param retryPolicy {@link EasyRetryPolicy#NONE}表示不重试
+         */
+        public OKHttpOptionsBuilder retryPolicy(EasyRetryPolicy retryPolicy) {
+            EasyUtils.checkNotNull(retryPolicy, "retryPolicy == null");
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * 指定对冲策略 覆盖{@link EasyOKHttp.Builder#hedgePolicy(EasyHedgePolicy)} 只对GET请求生效
+         *
+         * @param hedgePolicy {@link EasyHedgePolicy#NONE}表示不对冲
+         */
+        public OKHttpOptionsBuilder hedgePolicy(EasyHedgePolicy hedgePolicy) {
+            EasyUtils.checkNotNull(hedgePolicy, "hedgePolicy == null");
+            this.hedgePolicy = hedgePolicy;
             return this;
         }
 
@@ -133,7 +359,7 @@ public class EasyOptions {
             EasyUtils.checkNotNull(key, "key == null");
             EasyUtils.checkNotNull(value, "value == null");
             if (params == null) {
-                params = new HashMap<>();
+                params = new LinkedHashMap<>();
             }
             params.put(key, value);
             return this;
@@ -148,7 +374,8 @@ public class EasyOptions {
             EasyUtils.checkNotNull(params, "params == null");
             EasyUtils.checkMapNotEmpty(params, "params is empty");
             if (this.params == null) {
-                this.params = params;
+                // 复制一份 之后添加参数不会修改调用方的集合
+                this.params = new LinkedHashMap<>(params);
             } else {
                 this.params.putAll(params);
             }
@@ -186,20 +413,32 @@ public class EasyOptions {
          */
         public EasyOptions build() {
 
-            if (TextUtils.isEmpty(url) && TextUtils.isEmpty(path)) {
+            if (EasyUtils.isEmpty(url) && EasyUtils.isEmpty(path)) {
                 throw new IllegalStateException("url or path must be one.");
             }
+            if (responseType != null && responseMode == STREAMING) {
+                throw new IllegalStateException("responseType can not be used with STREAMING.");
+            }
 
             EasyOptions easyOptions = new EasyOptions(method);
-            if (TextUtils.isEmpty(this.url)) {
+            if (EasyUtils.isEmpty(this.url)) {
                 easyOptions.path = this.path;
             } else {
                 easyOptions.url = this.url;
             }
-            if (this instanceof OKHttpOptionsPostBuilder) {
-                OKHttpOptionsPostBuilder builder = (OKHttpOptionsPostBuilder) this;
-                easyOptions.postType = builder.postType;
-            }
+            easyOptions.postType = postType;
+            easyOptions.uploadProgress = uploadProgress;
+            easyOptions.progressInterval = progressInterval;
+            easyOptions.gzipRequest = gzipRequest;
+            easyOptions.responseMode = responseMode;
+            easyOptions.responseType = responseType;
+            easyOptions.coalesce = coalesce;
+            easyOptions.memoryCacheTtl = memoryCacheTtl;
+            easyOptions.cachePolicy = cachePolicy;
+            easyOptions.maxStale = maxStale;
+            easyOptions.retryPolicy = retryPolicy;
+            easyOptions.hedgePolicy = hedgePolicy;
+            easyOptions.priority = priority;
             if (params != null && !params.isEmpty()) {
                 easyOptions.params = params;
             }
@@ -223,7 +462,6 @@ public class EasyOptions {
         final Map<String, Object> params; // 参数
         Map<String, List<String>> mulHeaders;
         Map<String, String> sigHeaders;
-        int postType = JSON;
 
         OKHttpOptionsPostBuilder(OKHttpOptionsBuilder builder) {
             url = builder.url;
@@ -240,12 +478,20 @@ public class EasyOptions {
          * @param postType {@link PostType}
          * @see #method(int)
          */
-        public OKHttpOptionsPostBuilder postType(@PostType int postType) {
-            if (postType != JSON && postType != FROM) {
-                throw new IllegalArgumentException("see PostType");
-            }
-            this.postType = postType;
-            return this;
+        @Override
+        public OKHttpOptionsBuilder postType(@PostType int postType) {
+            // 提交方式保存在原来的Builder中 链式调用返回的是原来的Builder
+            return mBuilder.postType(postType);
+        }
+
+        @Override
+        public OKHttpOptionsBuilder uploadProgress(EasyProgressListener listener, long intervalMillis) {
+            return mBuilder.uploadProgress(listener, intervalMillis);
+        }
+
+        @Override
+        public OKHttpOptionsBuilder gzipRequest(boolean gzip) {
+            return mBuilder.gzipRequest(gzip);
         }
 
         @Override
@@ -263,6 +509,51 @@ public class EasyOptions {
             throw new UnsupportedOperationException();
         }
 
+        @Override
+        public OKHttpOptionsBuilder responseMode(@ResponseMode int responseMode) {
+            return mBuilder.responseMode(responseMode);
+        }
+
+        @Override
+        public OKHttpOptionsBuilder responseType(Type responseType) {
+            return mBuilder.responseType(responseType);
+        }
+
+        @Override
+        public OKHttpOptionsBuilder coalesce(boolean coalesce) {
+            return mBuilder.coalesce(coalesce);
+        }
+
+        @Override
+        public OKHttpOptionsBuilder memoryCacheTtl(long memoryCacheTtl) {
+            return mBuilder.memoryCacheTtl(memoryCacheTtl);
+        }
+
+        @Override
+        public OKHttpOptionsBuilder cachePolicy(@CachePolicy int cachePolicy) {
+            return mBuilder.cachePolicy(cachePolicy);
+        }
+
+        @Override
+        public OKHttpOptionsBuilder maxStale(long maxStale) {
+            return mBuilder.maxStale(maxStale);
+        }
+
+        @Override
+        public OKHttpOptionsBuilder retryPolicy(EasyRetryPolicy retryPolicy) {
+            return mBuilder.retryPolicy(retryPolicy);
+        }
+
+        @Override
+        public OKHttpOptionsBuilder priority(@Priority int priority) {
+            return mBuilder.priority(priority);
+        }
+
+        @Override
+        public OKHttpOptionsBuilder hedgePolicy(EasyHedgePolicy hedgePolicy) {
+            return mBuilder.hedgePolicy(hedgePolicy);
+        }
+
         @Override
         public OKHttpOptionsBuilder param(String key, Object value) {
             return mBuilder.param(key, value);
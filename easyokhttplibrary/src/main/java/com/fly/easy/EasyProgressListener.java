@@ -0,0 +1,15 @@
+package com.fly.easy;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 上传或下载进度 通过callbackExecutor回调
+ */
+
+public interface EasyProgressListener {
+
+    /**
+     * @param bytesWritten  已经传输的字节数 重试时从0重新开始
+     * @param contentLength 总字节数 未知时为-1
+     */
+    void onProgress(long bytesWritten, long contentLength);
+}
@@ -17,33 +17,160 @@ package com.fly.easy;
 
 import android.support.annotation.Nullable;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 
 import okhttp3.Headers;
 import okhttp3.ResponseBody;
+import okio.BufferedSource;
 
 /**
  * An HTTP response.
+ *
+ * @param <T> the type of the {@linkplain #entity() converted body}, see
+ *            {@link EasyOptions.OKHttpOptionsBuilder#responseType(java.lang.reflect.Type)}
  */
-public final class EasyResponse {
+public final class EasyResponse<T> implements Closeable {
 
 
     private final okhttp3.Response rawResponse;
     private final
     @Nullable
     ResponseBody body;
-    private final String data;
+    private final
+    @Nullable
+    String data;
+    private final
+    @Nullable
+    T entity;
+    private final boolean streaming;
+    private final boolean converted;
+    // 转换时实际读取的字节数 -1表示没有统计
+    private final long bodySize;
 
     EasyResponse(okhttp3.Response rawResponse, @Nullable ResponseBody body) throws IOException {
+        this(rawResponse, body, false);
+    }
+
+    /**
+     * @param streaming true 不预先读取响应体 由调用方通过{@link #source()}按需读取
+     */
+    EasyResponse(okhttp3.Response rawResponse, @Nullable ResponseBody body, boolean streaming) throws IOException {
+        this(rawResponse, body, streaming || body == null ? null : body.string(), null, streaming, false, -1);
+    }
+
+    private EasyResponse(okhttp3.Response rawResponse, @Nullable ResponseBody body, @Nullable String data,
+                         @Nullable T entity, boolean streaming, boolean converted, long bodySize) {
         this.rawResponse = rawResponse;
         this.body = body;
-        data = body.string();
+        this.data = data;
+        this.entity = entity;
+        this.streaming = streaming;
+        this.converted = converted;
+        this.bodySize = bodySize;
+    }
+
+    /**
+     * 响应体已经被{@link EasyConverter}读取并转换
+     *
+     * @param bodySize 转换时实际读取的字节数 -1表示没有统计
+     */
+    static <T> EasyResponse<T> converted(okhttp3.Response rawResponse, @Nullable ResponseBody body,
+                                         @Nullable T entity, long bodySize) {
+        return new EasyResponse<>(rawResponse, body, null, entity, false, true, bodySize);
     }
 
+    /**
+     * The whole response body decoded as a String.
+     *
+     * @throws IllegalStateException if this is a {@linkplain #isStreaming() streaming} response or
+     *                               the body has been {@linkplain #entity() converted}.
+     */
     public String string() {
+        if (streaming) {
+            throw new IllegalStateException("Streaming response, read it from source() or byteStream()");
+        }
+        if (converted) {
+            throw new IllegalStateException("Converted response, use entity()");
+        }
         return data;
     }
 
+    /**
+     * The body of a {@linkplain #isSuccessful() successful} response decoded by the {@link
+     * EasyConverter} registered for the requested {@linkplain
+     * EasyOptions.OKHttpOptionsBuilder#responseType(java.lang.reflect.Type) response type}, or null
+     * if no response type was requested.
+     */
+    public
+    @Nullable
+    T entity() {
+        return entity;
+    }
+
+    /**
+     * 缓存占用的字节数估算 无法估算时返回-1
+     */
+    long estimatedSize() {
+        if (streaming) {
+            return -1;
+        }
+        if (converted) {
+            // chunked的响应没有Content-Length 使用实际读取的字节数
+            return bodySize;
+        }
+        return data == null ? 0 : data.length() * 2L;
+    }
+
+    /**
+     * Returns true if the body has not been buffered and must be read from {@link #source()} or
+     * {@link #byteStream()}.
+     *
+     * @see EasyOptions#STREAMING
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * A lazily read view of the response body. Only available for {@linkplain #isStreaming()
+     * streaming} responses, callers must {@linkplain #close() close} the response when done.
+     */
+    public BufferedSource source() {
+        return streamingBody().source();
+    }
+
+    /**
+     * The response body as an {@link InputStream}.
+     *
+     * @see #source()
+     */
+    public InputStream byteStream() {
+        return streamingBody().byteStream();
+    }
+
+    private ResponseBody streamingBody() {
+        if (!streaming) {
+            throw new IllegalStateException("Buffered response, the body has already been read");
+        }
+        if (body == null) {
+            throw new IllegalStateException("body == null");
+        }
+        return body;
+    }
+
+    /**
+     * Releases the underlying connection. Buffered responses are already closed, this is a no-op
+     * for them.
+     */
+    @Override
+    public void close() {
+        if (body != null) {
+            body.close();
+        }
+    }
+
     /**
      * The raw response from the HTTP client.
      */
@@ -8,13 +8,13 @@ import java.io.IOException;
 
 public class EasyResponseFailedException extends IOException {
 
-    private EasyResponse mResponse;
+    private EasyResponse<?> mResponse;
 
-    public EasyResponseFailedException(EasyResponse response) {
+    public EasyResponseFailedException(EasyResponse<?> response) {
         mResponse = response;
     }
 
-    public EasyResponse getResponse() {
+    public EasyResponse<?> getResponse() {
         return mResponse;
     }
 
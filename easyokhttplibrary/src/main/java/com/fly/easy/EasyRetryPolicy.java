@@ -0,0 +1,181 @@
+package com.fly.easy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 重试策略 指数退避加随机抖动
+ * <p>
+ * 默认只重试幂等的GET请求 重试在调度线程中延迟发起 不会阻塞OkHttp的线程
+ *
+ * @see EasyOKHttp.Builder#retryPolicy(EasyRetryPolicy)
+ * @see EasyOptions.OKHttpOptionsBuilder#retryPolicy(EasyRetryPolicy)
+ */
+
+public final class EasyRetryPolicy {
+
+    /** 不进行重试 可以用来关闭全局的重试策略 */
+    public static final EasyRetryPolicy NONE = new Builder().maxAttempts(1).build();
+
+    private static final Random RANDOM = new Random();
+
+    final int maxAttempts;
+    final long initialBackoff;
+    final long maxBackoff;
+    final double multiplier;
+    final double jitter;
+    final boolean retryNonIdempotent;
+    private final Set<Integer> retryableStatusCodes;
+    private final List<Class<? extends Throwable>> retryableExceptions;
+
+    EasyRetryPolicy(Builder builder) {
+        maxAttempts = builder.maxAttempts;
+        initialBackoff = builder.initialBackoff;
+        maxBackoff = builder.maxBackoff;
+        multiplier = builder.multiplier;
+        jitter = builder.jitter;
+        retryNonIdempotent = builder.retryNonIdempotent;
+        retryableStatusCodes = Collections.unmodifiableSet(new HashSet<>(builder.retryableStatusCodes));
+        retryableExceptions = Collections.unmodifiableList(new ArrayList<>(builder.retryableExceptions));
+    }
+
+    public int maxAttempts() {
+        return maxAttempts;
+    }
+
+    boolean isRetryable(int code) {
+        return retryableStatusCodes.contains(code);
+    }
+
+    boolean isRetryable(Throwable t) {
+        // 熔断时重试没有意义
+        if (t instanceof EasyCircuitOpenException) {
+            return false;
+        }
+        for (Class<? extends Throwable> type : retryableExceptions) {
+            if (type.isInstance(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 第attempt次请求失败后等待的时间 单位毫秒
+     *
+     * @param attempt 从1开始
+     */
+    long backoff(int attempt) {
+        double delay = initialBackoff * Math.pow(multiplier, attempt - 1);
+        delay = Math.min(delay, maxBackoff);
+        // 在[delay * (1 - jitter), delay]之间随机 避免大量客户端同时重试
+        delay -= delay * jitter * RANDOM.nextDouble();
+        return (long) delay;
+    }
+
+    public static final class Builder {
+        private int maxAttempts = 3;
+        private long initialBackoff = 200;
+        private long maxBackoff = 5 * 1000L;
+        private double multiplier = 2;
+        private double jitter = 0.5;
+        private boolean retryNonIdempotent = false;
+        private final Set<Integer> retryableStatusCodes = new HashSet<>(Arrays.asList(408, 429, 502, 503, 504));
+        private final List<Class<? extends Throwable>> retryableExceptions = new ArrayList<>();
+
+        public Builder() {
+            retryableExceptions.add(IOException.class);
+        }
+
+        /**
+         * 最多请求的次数 包括第一次请求
+         *
+         * @param maxAttempts 默认3
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be greater than 0 ");
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * 退避时间 第n次重试前等待 min(initialBackoff * multiplier^(n-1), maxBackoff)
+         *
+         * @param initialBackoff 单位毫秒 默认200
+         * @param maxBackoff     单位毫秒 默认5000
+         * @param multiplier     默认2
+         */
+        public Builder backoff(long initialBackoff, long maxBackoff, double multiplier) {
+            if (initialBackoff < 0 || maxBackoff < initialBackoff) {
+                throw new IllegalArgumentException("0 <= initialBackoff <= maxBackoff");
+            }
+            if (multiplier < 1) {
+                throw new IllegalArgumentException("multiplier must be greater than 1 ");
+            }
+            this.initialBackoff = initialBackoff;
+            this.maxBackoff = maxBackoff;
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        /**
+         * 随机抖动的比例 实际等待时间在[backoff * (1 - jitter), backoff]之间
+         *
+         * @param jitter 0到1之间 默认0.5
+         */
+        public Builder jitter(double jitter) {
+            if (jitter < 0 || jitter > 1) {
+                throw new IllegalArgumentException("jitter must be between 0 and 1");
+            }
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * 需要重试的响应码 会替换默认的408, 429, 502, 503, 504
+         */
+        public Builder retryOnStatus(int... codes) {
+            EasyUtils.checkNotNull(codes, "codes == null");
+            retryableStatusCodes.clear();
+            for (int code : codes) {
+                retryableStatusCodes.add(code);
+            }
+            return this;
+        }
+
+        /**
+         * 需要重试的异常类型 会替换默认的{@link IOException} 取消请求不会重试
+         */
+        @SafeVarargs
+        public final Builder retryOn(Class<? extends Throwable>... types) {
+            EasyUtils.checkNotNull(types, "types == null");
+            retryableExceptions.clear();
+            for (Class<? extends Throwable> type : types) {
+                retryableExceptions.add(EasyUtils.checkNotNull(type, "type == null"));
+            }
+            return this;
+        }
+
+        /**
+         * 是否重试非幂等的请求 例如POST 默认false
+         * 包含InputStream的multipart请求只能发送一次 总是不重试
+         */
+        public Builder retryNonIdempotent(boolean retryNonIdempotent) {
+            this.retryNonIdempotent = retryNonIdempotent;
+            return this;
+        }
+
+        public EasyRetryPolicy build() {
+            return new EasyRetryPolicy(this);
+        }
+    }
+}
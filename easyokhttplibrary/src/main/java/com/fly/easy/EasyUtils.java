@@ -1,8 +1,8 @@
 package com.fly.easy;
 
 import android.support.annotation.Nullable;
-import android.text.TextUtils;
 
+import java.io.Closeable;
 import java.util.List;
 import java.util.Map;
 
@@ -24,8 +24,23 @@ public class EasyUtils {
         return object;
     }
 
+    /**
+     * 响应体转换后的类型由responseType在运行时决定 回调的类型参数只能由调用方保证
+     */
+    @SuppressWarnings("unchecked")
+    static EasyCallback<Object> castCallback(EasyCallback<?> callback) {
+        return (EasyCallback<Object>) callback;
+    }
+
+    /**
+     * 与TextUtils.isEmpty相同 不依赖Android
+     */
+    static boolean isEmpty(@Nullable CharSequence str) {
+        return str == null || str.length() == 0;
+    }
+
     static String checkStringArgument(@Nullable String str, String message) {
-        if (TextUtils.isEmpty(str)) {
+        if (isEmpty(str)) {
             throw new IllegalArgumentException(message);
         }
         return str;
@@ -45,6 +60,17 @@ public class EasyUtils {
         return object;
     }
 
+    static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (RuntimeException rethrown) {
+                throw rethrown;
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
     static Headers checkHeadersNotEmpty(@Nullable Headers headers, String message) {
         if (headers.size() <= 0) {
             throw new NullPointerException(message);
@@ -0,0 +1,31 @@
+package com.fly.easy;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.Executor;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 默认的适配器 {@link EasyCall}的回调通过callbackExecutor执行
+ */
+
+final class ExecutorCallAdapterFactory extends EasyCallAdapter.Factory {
+
+    private final Executor callbackExecutor;
+
+    ExecutorCallAdapterFactory(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    @Override
+    public EasyCallAdapter<?> get(Type returnType, EasyOKHttp easyOKHttp) {
+        if (returnType != EasyCall.class) {
+            return null;
+        }
+        return new EasyCallAdapter<EasyCall>() {
+            @Override
+            public EasyCall adapt(EasyCall call) {
+                return new ExecutorCallbackCall(callbackExecutor, call);
+            }
+        };
+    }
+}
@@ -33,14 +33,30 @@ public class ExecutorCallbackCall implements EasyCall {
     }
 
     @Override
-    public void enqueue(final EasyCallback callback) {
-        EasyUtils.checkNotNull(callback, "callback == null");
-        delegate.enqueue(new EasyCallback() {
+    public void enqueue(EasyCallback<?> easyCallback) {
+        EasyUtils.checkNotNull(easyCallback, "callback == null");
+        final EasyCallback<Object> callback = EasyUtils.castCallback(easyCallback);
+        delegate.enqueue(new EasyCallback<Object>() {
             @Override
-            public void onResponse(EasyCall call, final EasyResponse response) {
+            public void onResponse(EasyCall call, final EasyResponse<Object> response) {
+                if (response.isStreaming()) {
+                    // 流式响应体需要在网络线程中读取 不切换线程
+                    if (delegate.isCanceled()) {
+                        response.close();
+                        callback.onFailure(ExecutorCallbackCall.this, new IOException("Canceled"));
+                    } else {
+                        callback.onResponse(ExecutorCallbackCall.this, response);
+                    }
+                    return;
+                }
+                final CallMetrics metrics = metrics();
+                final long posted = metrics != null ? System.nanoTime() : 0;
                 callbackExecutor.execute(new Runnable() {
                     @Override
                     public void run() {
+                        if (metrics != null) {
+                            metrics.record(CallMetrics.CALLBACK, System.nanoTime() - posted);
+                        }
                         if (delegate.isCanceled()) {
                             // Emulate OkHttp's behavior of throwing/delivering an IOException on cancellation.
                             callback.onFailure(ExecutorCallbackCall.this, new IOException("Canceled"));
@@ -57,9 +73,14 @@ public class ExecutorCallbackCall implements EasyCall {
 
             @Override
             public void onFailure(EasyCall call, final Throwable t) {
+                final CallMetrics metrics = metrics();
+                final long posted = metrics != null ? System.nanoTime() : 0;
                 callbackExecutor.execute(new Runnable() {
                     @Override
                     public void run() {
+                        if (metrics != null) {
+                            metrics.record(CallMetrics.CALLBACK, System.nanoTime() - posted);
+                        }
                         callback.onFailure(ExecutorCallbackCall.this, t);
                     }
                 });
@@ -67,6 +88,12 @@ public class ExecutorCallbackCall implements EasyCall {
         });
     }
 
+    /**
+     * 开启耗时统计时 记录回调在callbackExecutor中等待的时间
+     */
+    private CallMetrics metrics() {
+        return delegate instanceof EasyCallImpl ? ((EasyCallImpl) delegate).metrics() : null;
+    }
 
     @Override
     public void cancel() {
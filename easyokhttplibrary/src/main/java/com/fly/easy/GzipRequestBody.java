@@ -0,0 +1,90 @@
+package com.fly.easy;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.GzipSink;
+import okio.Okio;
+import okio.Sink;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 写出时边写边压缩 不在内存中保留完整的请求体
+ * 压缩后的长度未知 使用chunked方式提交
+ */
+
+final class GzipRequestBody extends RequestBody {
+
+    private final RequestBody delegate;
+
+    GzipRequestBody(RequestBody delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * 长度未知的请求体先写出到内存 不超过limit字节
+     *
+     * @return 小于limit字节时返回写出的内容 否则返回null
+     */
+    static RequestBody bufferIfSmaller(RequestBody body, long limit) throws IOException {
+        Buffer buffer = new Buffer();
+        BufferedSink sink = Okio.buffer(new LimitedSink(buffer, limit));
+        try {
+            body.writeTo(sink);
+            sink.flush();
+        } catch (LimitReachedException e) {
+            return null;
+        }
+        return RequestBody.create(body.contentType(), buffer.readByteString());
+    }
+
+    @Override
+    public MediaType contentType() {
+        return delegate.contentType();
+    }
+
+    @Override
+    public long contentLength() {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        // 每次写出都重新创建GzipSink 重试和对冲时可以重复写出
+        BufferedSink gzipSink = Okio.buffer(new GzipSink(sink));
+        delegate.writeTo(gzipSink);
+        // 写出gzip尾部
+        gzipSink.close();
+    }
+
+    /**
+     * 写出的字节数达到limit时停止写出
+     */
+    private static final class LimitedSink extends ForwardingSink {
+
+        private final long limit;
+        private long written;
+
+        LimitedSink(Sink delegate, long limit) {
+            super(delegate);
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            written += byteCount;
+            if (written >= limit) {
+                throw new LimitReachedException();
+            }
+            super.write(source, byteCount);
+        }
+    }
+
+    private static final class LimitReachedException extends IOException {
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -0,0 +1,49 @@
+package com.fly.easy;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 对冲请求的预算
+ * 每个请求存入budget个令牌 每个对冲请求消耗一个令牌
+ */
+
+final class HedgeBudget {
+
+    // 最多积攒的令牌 允许短时间内的突发
+    private static final double MAX_TOKENS = 10;
+
+    private double tokens;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong hedgeCount = new AtomicLong();
+    private final AtomicLong hedgeWinCount = new AtomicLong();
+    private final AtomicLong throttledCount = new AtomicLong();
+
+    void onRequest(double budget) {
+        requestCount.incrementAndGet();
+        synchronized (this) {
+            tokens = Math.min(MAX_TOKENS, tokens + budget);
+        }
+    }
+
+    boolean tryAcquire() {
+        synchronized (this) {
+            if (tokens >= 1) {
+                tokens -= 1;
+                hedgeCount.incrementAndGet();
+                return true;
+            }
+        }
+        throttledCount.incrementAndGet();
+        return false;
+    }
+
+    void onHedgeWin() {
+        hedgeWinCount.incrementAndGet();
+    }
+
+    EasyHedgeStats stats() {
+        return new EasyHedgeStats(requestCount.get(), hedgeCount.get(), hedgeWinCount.get(), throttledCount.get());
+    }
+}
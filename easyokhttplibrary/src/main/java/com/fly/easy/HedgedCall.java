@@ -0,0 +1,171 @@
+package com.fly.easy;
+
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 按照{@link EasyHedgePolicy}发出对冲请求
+ * 先返回的响应交给delegate 另一个请求会被取消 两个请求都失败时才回调失败
+ */
+
+final class HedgedCall implements Runnable {
+
+    private final ServiceMethod serviceMethod;
+    private final EasyHedgePolicy policy;
+    private final Request request;
+    private final int priority;
+    private final Callback delegate;
+
+    private long startNanos;
+    private Call primary;
+    private Call hedge;
+    private ScheduledFuture<?> pending;
+    // 还没有结果的请求数量
+    private int activeCount;
+    private boolean done;
+    private boolean canceled;
+
+    HedgedCall(ServiceMethod serviceMethod, EasyHedgePolicy policy, Request request, int priority, Callback delegate) {
+        this.serviceMethod = serviceMethod;
+        this.policy = policy;
+        this.request = request;
+        this.priority = priority;
+        this.delegate = delegate;
+    }
+
+    Request request() {
+        return request;
+    }
+
+    void start() {
+        serviceMethod.easyOKHttp.hedgeBudget.onRequest(policy.budget);
+        long delay = policy.delayNanos(serviceMethod.latency);
+
+        Call call = serviceMethod.httpClient.newCall(request);
+        ScheduledExecutorService scheduler = serviceMethod.easyOKHttp.scheduler();
+        synchronized (this) {
+            startNanos = System.nanoTime();
+            primary = call;
+            activeCount = 1;
+            if (canceled) {
+                // start()之前已经取消 只回调失败 不再对冲
+                call.cancel();
+            } else {
+                try {
+                    pending = scheduler.schedule(this, delay, TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException ignored) {
+                    // 无法调度时只发出原始请求
+                }
+            }
+        }
+        serviceMethod.easyOKHttp.dispatcher.enqueue(call, priority, new Leg(false));
+    }
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            pending = null;
+            if (done || canceled) {
+                return;
+            }
+        }
+        Call call = serviceMethod.httpClient.newCall(request);
+        synchronized (this) {
+            // 原始请求可能已经返回或者被取消 这时不消耗预算也不计入对冲次数
+            // 持有锁时获取令牌 获取之后不会再放弃这次对冲
+            if (done || canceled || !serviceMethod.easyOKHttp.hedgeBudget.tryAcquire()) {
+                return;
+            }
+            hedge = call;
+            activeCount++;
+        }
+        serviceMethod.easyOKHttp.dispatcher.enqueue(call, priority, new Leg(true));
+    }
+
+    void cancel() {
+        Call primaryCall;
+        Call hedgeCall;
+        ScheduledFuture<?> future;
+        synchronized (this) {
+            canceled = true;
+            primaryCall = primary;
+            hedgeCall = hedge;
+            future = pending;
+        }
+        if (future != null) {
+            future.cancel(false);
+        }
+        if (primaryCall != null) {
+            primaryCall.cancel();
+        }
+        if (hedgeCall != null) {
+            hedgeCall.cancel();
+        }
+    }
+
+    private final class Leg implements Callback {
+
+        private final boolean isHedge;
+
+        Leg(boolean isHedge) {
+            this.isHedge = isHedge;
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) throws IOException {
+            Call loser;
+            ScheduledFuture<?> future;
+            long elapsed;
+            synchronized (HedgedCall.this) {
+                activeCount--;
+                if (done) {
+                    response.close();
+                    return;
+                }
+                done = true;
+                loser = isHedge ? primary : hedge;
+                future = pending;
+                elapsed = System.nanoTime() - startNanos;
+            }
+            if (future != null) {
+                future.cancel(false);
+            }
+            if (loser != null) {
+                loser.cancel();
+            }
+            // 对冲请求获胜时 原始请求的耗时至少是elapsed
+            serviceMethod.latency.record(elapsed);
+            if (isHedge) {
+                serviceMethod.easyOKHttp.hedgeBudget.onHedgeWin();
+            }
+            delegate.onResponse(call, response);
+        }
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            ScheduledFuture<?> future;
+            synchronized (HedgedCall.this) {
+                activeCount--;
+                // 另一个请求还可能成功
+                if (done || activeCount > 0) {
+                    return;
+                }
+                done = true;
+                future = pending;
+            }
+            if (future != null) {
+                future.cancel(false);
+            }
+            delegate.onFailure(call, e);
+        }
+    }
+}
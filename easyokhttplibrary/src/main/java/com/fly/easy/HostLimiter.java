@@ -0,0 +1,68 @@
+package com.fly.easy;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 单个host的自适应并发限制 AIMD
+ * <p>
+ * 平滑后的耗时超过最小耗时的tolerance倍 或者请求超时、被限流时 每个RTT最多把限制乘以0.9
+ * 耗时正常并且并发接近限制时 每个请求把限制增加1/limit 大约每个RTT增加1
+ * <p>
+ * 不是线程安全的 由{@link PriorityDispatcher}加锁访问
+ */
+
+final class HostLimiter {
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double RTT_TOLERANCE = 2.0;
+    private static final double SMOOTHING = 0.2;
+    // 每隔一定数量的样本重新统计最小耗时 跟随网络环境的变化
+    private static final int MIN_RTT_WINDOW = 100;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    private double limit;
+    private long minRtt = Long.MAX_VALUE;
+    private long windowMinRtt = Long.MAX_VALUE;
+    private int windowSamples;
+    private double smoothedRtt;
+    private long lastDecrease;
+
+    HostLimiter(int initialLimit, int maxLimit) {
+        this.minLimit = 1;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+    }
+
+    int limit() {
+        return (int) limit;
+    }
+
+    long smoothedRtt() {
+        return (long) smoothedRtt;
+    }
+
+    /**
+     * @param rtt      请求耗时 单位纳秒
+     * @param inFlight 请求开始时同一个host正在进行的请求数量 包括自己
+     * @param dropped  请求超时或者被服务端限流
+     */
+    void onSample(long now, long rtt, int inFlight, boolean dropped) {
+        windowMinRtt = Math.min(windowMinRtt, rtt);
+        if (++windowSamples >= MIN_RTT_WINDOW || minRtt == Long.MAX_VALUE) {
+            minRtt = windowMinRtt;
+            windowMinRtt = Long.MAX_VALUE;
+            windowSamples = 0;
+        }
+        smoothedRtt = smoothedRtt == 0 ? rtt : smoothedRtt + SMOOTHING * (rtt - smoothedRtt);
+
+        if (dropped || smoothedRtt > minRtt * RTT_TOLERANCE) {
+            if (now - lastDecrease >= smoothedRtt) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                lastDecrease = now;
+            }
+        } else if (inFlight * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.fly.easy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 注册的{@link EasyJsonAdapter} 按对象的实际类型查找
+ * 没有完全匹配时使用第一个注册的父类或接口 查找结果按类型缓存
+ */
+
+final class JsonAdapters {
+
+    static final JsonAdapters EMPTY = new JsonAdapters(new LinkedHashMap<Class<?>, EasyJsonAdapter<?>>());
+
+    // 没有对应的adapter 缓存中不能保存null
+    private static final Object NONE = new Object();
+
+    private final Map<Class<?>, EasyJsonAdapter<?>> registered;
+    private final ConcurrentHashMap<Class<?>, Object> resolved = new ConcurrentHashMap<>();
+
+    JsonAdapters(Map<Class<?>, EasyJsonAdapter<?>> registered) {
+        this.registered = new LinkedHashMap<>(registered);
+    }
+
+    boolean isEmpty() {
+        return registered.isEmpty();
+    }
+
+    EasyJsonAdapter<?> get(Class<?> type) {
+        if (registered.isEmpty()) {
+            return null;
+        }
+        Object adapter = resolved.get(type);
+        if (adapter == null) {
+            adapter = resolve(type);
+            resolved.putIfAbsent(type, adapter);
+        }
+        return adapter == NONE ? null : (EasyJsonAdapter<?>) adapter;
+    }
+
+    private Object resolve(Class<?> type) {
+        EasyJsonAdapter<?> adapter = registered.get(type);
+        if (adapter != null) {
+            return adapter;
+        }
+        for (Map.Entry<Class<?>, EasyJsonAdapter<?>> entry : registered.entrySet()) {
+            if (entry.getKey().isAssignableFrom(type)) {
+                return entry.getValue();
+            }
+        }
+        return NONE;
+    }
+}
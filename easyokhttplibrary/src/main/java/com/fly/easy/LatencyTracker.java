@@ -0,0 +1,48 @@
+package com.fly.easy;
+
+import java.util.Arrays;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 记录最近的请求耗时 用来计算分位数
+ */
+
+final class LatencyTracker {
+
+    private static final int CAPACITY = 128;
+    // 每记录一定数量的样本重新计算一次 避免每次都排序
+    private static final int RECOMPUTE_INTERVAL = 16;
+
+    private final long[] samples = new long[CAPACITY];
+    private int count;
+    private int next;
+    private int sinceComputed = RECOMPUTE_INTERVAL;
+    private double computedPercentile = -1;
+    private long computed = -1;
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % CAPACITY;
+        if (count < CAPACITY) {
+            count++;
+        }
+        sinceComputed++;
+    }
+
+    /**
+     * @return 样本数量少于minSamples时返回-1
+     */
+    synchronized long percentile(double percentile, int minSamples) {
+        if (count < minSamples) {
+            return -1;
+        }
+        if (sinceComputed >= RECOMPUTE_INTERVAL || percentile != computedPercentile) {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            computed = sorted[Math.min(count - 1, (int) Math.ceil(percentile * count) - 1)];
+            computedPercentile = percentile;
+            sinceComputed = 0;
+        }
+        return computed;
+    }
+}
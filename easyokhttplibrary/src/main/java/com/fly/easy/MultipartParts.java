@@ -0,0 +1,195 @@
+package com.fly.easy;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * multipart请求体的各个部分 文件和流在写出时按固定大小分块读取 不会整体加载到内存
+ */
+
+final class MultipartParts {
+
+    // 与Okio的Segment大小一致
+    static final int CHUNK_SIZE = 8192;
+
+    private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+
+    private MultipartParts() {
+    }
+
+    /**
+     * 包含InputStream时返回{@link OneShotRequestBody}
+     */
+    static RequestBody encode(Map<String, Object> params) {
+        MultipartBody.Builder builder = new MultipartBody.Builder().setType(MultipartBody.FORM);
+        List<StreamPart> streams = new ArrayList<>(0);
+        for (Map.Entry<String, Object> param : params.entrySet()) {
+            String name = param.getKey();
+            Object value = param.getValue();
+            if (value instanceof Iterable) {
+                for (Object element : (Iterable<?>) value) {
+                    addPart(builder, streams, name, element);
+                }
+            } else if (value != null && value.getClass().isArray() && !(value instanceof byte[])) {
+                for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                    addPart(builder, streams, name, Array.get(value, i));
+                }
+            } else {
+                addPart(builder, streams, name, value);
+            }
+        }
+        MultipartBody body = builder.build();
+        return streams.isEmpty() ? body : new OneShotRequestBody(body, streams);
+    }
+
+    private static void addPart(MultipartBody.Builder builder, List<StreamPart> streams, String name, Object value) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof File) {
+            File file = (File) value;
+            builder.addFormDataPart(name, file.getName(), new FilePart(file));
+        } else if (value instanceof InputStream) {
+            StreamPart part = new StreamPart((InputStream) value);
+            streams.add(part);
+            builder.addFormDataPart(name, name, part);
+        } else if (value instanceof ByteBuffer) {
+            builder.addFormDataPart(name, name, new ByteBufferPart((ByteBuffer) value));
+        } else if (value instanceof byte[]) {
+            builder.addFormDataPart(name, name, RequestBody.create(OCTET_STREAM, (byte[]) value));
+        } else {
+            builder.addFormDataPart(name, value.toString());
+        }
+    }
+
+    private static MediaType guessContentType(String fileName) {
+        String contentType = URLConnection.guessContentTypeFromName(fileName);
+        MediaType mediaType = contentType == null ? null : MediaType.parse(contentType);
+        return mediaType == null ? OCTET_STREAM : mediaType;
+    }
+
+    private static void writeAll(Source source, BufferedSink sink) throws IOException {
+        while (source.read(sink.buffer(), CHUNK_SIZE) != -1) {
+            sink.emitCompleteSegments();
+        }
+    }
+
+    /**
+     * 每次写出时重新打开文件 可以重试
+     */
+    static final class FilePart extends RequestBody {
+
+        private final File file;
+        private final MediaType contentType;
+
+        FilePart(File file) {
+            this.file = file;
+            this.contentType = guessContentType(file.getName());
+        }
+
+        @Override
+        public MediaType contentType() {
+            return contentType;
+        }
+
+        @Override
+        public long contentLength() {
+            return file.length();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            Source source = Okio.source(file);
+            try {
+                writeAll(source, sink);
+            } finally {
+                EasyUtils.closeQuietly(source);
+            }
+        }
+    }
+
+    /**
+     * 长度未知 只能写出一次 写出后关闭
+     */
+    static final class StreamPart extends RequestBody implements Closeable {
+
+        private final InputStream inputStream;
+
+        StreamPart(InputStream inputStream) {
+            this.inputStream = inputStream;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return OCTET_STREAM;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            Source source = Okio.source(inputStream);
+            try {
+                writeAll(source, sink);
+            } finally {
+                EasyUtils.closeQuietly(source);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * 写出position到limit之间的内容 不改变原来的ByteBuffer 可以重试
+     */
+    static final class ByteBufferPart extends RequestBody {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferPart(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return OCTET_STREAM;
+        }
+
+        @Override
+        public long contentLength() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            ByteBuffer source = buffer.duplicate();
+            if (source.hasArray()) {
+                sink.write(source.array(), source.arrayOffset() + source.position(), source.remaining());
+                return;
+            }
+            byte[] chunk = new byte[Math.min(CHUNK_SIZE, source.remaining())];
+            while (source.hasRemaining()) {
+                int count = Math.min(chunk.length, source.remaining());
+                source.get(chunk, 0, count);
+                sink.write(chunk, 0, count);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.fly.easy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.internal.http.UnrepeatableRequestBody;
+import okio.BufferedSink;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 包含InputStream的请求体只能写出一次
+ * 实现UnrepeatableRequestBody OkHttp在连接失败和重定向时不会重新发送
+ * 请求结束后通过{@link #close()}关闭没有写出的流
+ */
+
+final class OneShotRequestBody extends RequestBody implements UnrepeatableRequestBody, Closeable {
+
+    private final RequestBody delegate;
+    private final List<? extends Closeable> streams;
+    private final AtomicBoolean written = new AtomicBoolean();
+
+    OneShotRequestBody(RequestBody delegate, List<? extends Closeable> streams) {
+        this.delegate = delegate;
+        this.streams = streams;
+    }
+
+    /**
+     * 包装之后的请求体依然只能写出一次
+     */
+    OneShotRequestBody wrap(RequestBody body) {
+        return new OneShotRequestBody(body, streams);
+    }
+
+    @Override
+    public MediaType contentType() {
+        return delegate.contentType();
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return delegate.contentLength();
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        if (!written.compareAndSet(false, true)) {
+            throw new IOException("Request body with InputStream parts can only be sent once");
+        }
+        delegate.writeTo(sink);
+    }
+
+    /**
+     * 请求取消或者失败时 流可能还没有写出
+     */
+    @Override
+    public void close() {
+        for (Closeable stream : streams) {
+            EasyUtils.closeQuietly(stream);
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package com.fly.easy;
 
+import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 import android.support.annotation.Nullable;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executor;
 
 /**
@@ -11,24 +14,95 @@ import java.util.concurrent.Executor;
  */
 
 class Platform {
-    private static final Platform PLATFORM = new OKAndroid();
+    private static final Platform PLATFORM = findPlatform();
 
     static Platform get() {
         return PLATFORM;
     }
 
+    private static Platform findPlatform() {
+        try {
+            Class.forName("android.os.Build");
+            // 本地单元测试的android.jar中也有Build 但SDK_INT为0 没有主线程
+            if (Build.VERSION.SDK_INT != 0) {
+                return new OKAndroid();
+            }
+        } catch (Throwable ignored) {
+        }
+        return new Java();
+    }
+
     @Nullable
     Executor defaultCallbackExecutor() {
         return null;
     }
 
+    @Nullable
+    Executor coalescingCallbackExecutor(long intervalMillis, long budgetMillis) {
+        return defaultCallbackExecutor();
+    }
+
+    /**
+     * 内置的请求适配器 放在用户注册的适配器之后
+     */
+    List<EasyCallAdapter.Factory> defaultCallAdapterFactories(Executor callbackExecutor) {
+        List<EasyCallAdapter.Factory> factories = new ArrayList<>(2);
+        if (hasCompletableFuture()) {
+            factories.add(new CompletableFutureCallAdapterFactory());
+        }
+        factories.add(new ExecutorCallAdapterFactory(callbackExecutor));
+        return factories;
+    }
+
+    boolean hasCompletableFuture() {
+        try {
+            Class.forName("java.util.concurrent.CompletableFuture");
+            return true;
+        } catch (ClassNotFoundException ignored) {
+            return false;
+        }
+    }
+
+    /**
+     * 在调用的线程中直接执行
+     */
+    static final class DirectExecutor implements Executor {
+        static final DirectExecutor INSTANCE = new DirectExecutor();
+
+        @Override
+        public void execute(Runnable r) {
+            r.run();
+        }
+    }
+
+    /**
+     * 普通的JVM 没有主线程 回调直接在OkHttp的线程中执行
+     */
+    static class Java extends Platform {
+
+        @Override
+        Executor defaultCallbackExecutor() {
+            return DirectExecutor.INSTANCE;
+        }
+    }
+
     static class OKAndroid extends Platform {
 
+        @Override
+        boolean hasCompletableFuture() {
+            return Build.VERSION.SDK_INT >= 24;
+        }
+
         @Override
         public Executor defaultCallbackExecutor() {
             return new MainThreadExecutor();
         }
 
+        @Override
+        Executor coalescingCallbackExecutor(long intervalMillis, long budgetMillis) {
+            return new CoalescingMainThreadExecutor(intervalMillis, budgetMillis);
+        }
+
         static class MainThreadExecutor implements Executor {
             private final Handler handler = new Handler(Looper.getMainLooper());
 
@@ -0,0 +1,301 @@
+package com.fly.easy;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 按优先级把请求交给OkHttp
+ * <p>
+ * 同时进行的请求数量遵守{@link Dispatcher#getMaxRequests()}和{@link Dispatcher#getMaxRequestsPerHost()}
+ * 超出的请求在这里排队 而不是在OkHttp的FIFO队列中排队
+ * 开启自适应限制后 每个host的并发数量由{@link HostLimiter}根据耗时调整
+ * <p>
+ * 排队顺序为 入队时间 - 优先级 * aging 每等待aging时间相当于提升一个优先级 低优先级的请求不会一直等待
+ * <p>
+ * 只读取缓存的请求(only-if-cached)和没有访问网络的响应不能说明服务端的状态 不经过熔断器 也不作为耗时样本
+ */
+
+final class PriorityDispatcher {
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_UNAVAILABLE = 503;
+    private static final int HTTP_SERVER_ERROR = 500;
+
+    private final EasyOKHttp easyOKHttp;
+    private final long agingNanos;
+    // 自适应限制 maxHostLimit为0时使用OkHttp的maxRequestsPerHost
+    private final int initialHostLimit;
+    final int maxHostLimit;
+    // 熔断策略 为null时不熔断
+    private final EasyCircuitBreakerPolicy circuitBreaker;
+
+    private final TreeSet<AsyncCall> readyCalls = new TreeSet<>();
+    // 键为Domain-Name路由之后的host
+    private final Map<String, Host> hosts = new HashMap<>();
+    private int runningCount;
+    private long sequence;
+
+    PriorityDispatcher(EasyOKHttp easyOKHttp, long agingMillis, int initialHostLimit, int maxHostLimit,
+                       EasyCircuitBreakerPolicy circuitBreaker) {
+        this.easyOKHttp = easyOKHttp;
+        this.circuitBreaker = circuitBreaker;
+        this.agingNanos = TimeUnit.MILLISECONDS.toNanos(agingMillis);
+        this.initialHostLimit = initialHostLimit;
+        this.maxHostLimit = maxHostLimit;
+    }
+
+    void enqueue(Call call, int priority, Callback callback) {
+        String hostName = easyOKHttp.resolveHost(call.request());
+        boolean cacheOnly = call.request().cacheControl().onlyIfCached();
+        boolean circuitOpen;
+        synchronized (this) {
+            long now = System.nanoTime();
+            Host host = host(hostName);
+            // 熔断时立即失败 不等待连接超时 熔断时依然可以读取缓存
+            circuitOpen = !cacheOnly && host.breaker != null && host.breaker.state(now) == CircuitBreaker.OPEN;
+            if (!circuitOpen) {
+                long deadline = now - priority * agingNanos;
+                host.queued++;
+                readyCalls.add(new AsyncCall(call, callback, hostName, cacheOnly, now, deadline, sequence++));
+            }
+        }
+        if (circuitOpen) {
+            callback.onFailure(call, new EasyCircuitOpenException(hostName));
+            return;
+        }
+        promoteCalls();
+    }
+
+    synchronized int queuedCallsCount() {
+        return readyCalls.size();
+    }
+
+    synchronized int runningCallsCount() {
+        return runningCount;
+    }
+
+    synchronized List<EasyHostLimit> hostLimits() {
+        OkHttpClient httpClient = easyOKHttp.httpClient;
+        if (httpClient == null) {
+            // 还没有发出过请求 不需要为此创建OkHttpClient
+            return Collections.emptyList();
+        }
+        int maxRequestsPerHost = httpClient.dispatcher().getMaxRequestsPerHost();
+        List<EasyHostLimit> result = new ArrayList<>(hosts.size());
+        for (Map.Entry<String, Host> entry : hosts.entrySet()) {
+            Host host = entry.getValue();
+            long rtt = host.limiter == null ? 0 : TimeUnit.NANOSECONDS.toMillis(host.limiter.smoothedRtt());
+            result.add(new EasyHostLimit(entry.getKey(), host.limit(maxRequestsPerHost),
+                    host.running, host.queued, rtt));
+        }
+        return result;
+    }
+
+    private Host host(String hostName) {
+        Host host = hosts.get(hostName);
+        if (host == null) {
+            host = new Host(maxHostLimit > 0 ? new HostLimiter(initialHostLimit, maxHostLimit) : null,
+                    circuitBreaker != null ? new CircuitBreaker(circuitBreaker) : null);
+            hosts.put(hostName, host);
+        }
+        return host;
+    }
+
+    /**
+     * 发出排在前面的请求 同时移除已经取消的请求
+     */
+    void promoteCalls() {
+        List<AsyncCall> toStart = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            Dispatcher dispatcher = easyOKHttp.httpClient.dispatcher();
+            int maxRequests = dispatcher.getMaxRequests();
+            int maxRequestsPerHost = dispatcher.getMaxRequestsPerHost();
+            for (Iterator<AsyncCall> i = readyCalls.iterator(); i.hasNext(); ) {
+                AsyncCall asyncCall = i.next();
+                Host host = hosts.get(asyncCall.host);
+                if (asyncCall.call.isCanceled()) {
+                    // 已经取消的请求不占用名额 直接回调失败
+                    i.remove();
+                    host.queued--;
+                    removeIfIdle(asyncCall.host, host);
+                    toStart.add(asyncCall);
+                    continue;
+                }
+                boolean breaker = host.breaker != null && !asyncCall.cacheOnly;
+                if (breaker && host.breaker.state(now) == CircuitBreaker.OPEN) {
+                    // 排队期间熔断器打开
+                    i.remove();
+                    host.queued--;
+                    removeIfIdle(asyncCall.host, host);
+                    asyncCall.circuitOpen = true;
+                    toStart.add(asyncCall);
+                    continue;
+                }
+                if (runningCount >= maxRequests || host.running >= host.limit(maxRequestsPerHost)) {
+                    continue;
+                }
+                if (breaker) {
+                    asyncCall.probe = host.breaker.state(now) == CircuitBreaker.HALF_OPEN;
+                    if (!host.breaker.tryAcquire(now)) {
+                        // 半开状态的名额已经用完
+                        continue;
+                    }
+                }
+                i.remove();
+                host.queued--;
+                host.running++;
+                runningCount++;
+                asyncCall.running = true;
+                asyncCall.inFlight = host.running;
+                toStart.add(asyncCall);
+            }
+        }
+        for (AsyncCall asyncCall : toStart) {
+            if (asyncCall.running) {
+                asyncCall.startNanos = System.nanoTime();
+                CallMetrics metrics = CallMetrics.of(asyncCall.call.request());
+                if (metrics != null) {
+                    metrics.record(CallMetrics.QUEUE, asyncCall.startNanos - asyncCall.enqueuedNanos);
+                }
+                asyncCall.call.enqueue(asyncCall);
+            } else if (asyncCall.circuitOpen) {
+                asyncCall.callback.onFailure(asyncCall.call, new EasyCircuitOpenException(asyncCall.host));
+            } else {
+                asyncCall.callback.onFailure(asyncCall.call, new IOException("Canceled"));
+            }
+        }
+    }
+
+    private void removeIfIdle(String hostName, Host host) {
+        // 自适应限制和熔断器需要保留状态
+        if (host.limiter == null && host.breaker == null && host.running == 0 && host.queued == 0) {
+            hosts.remove(hostName);
+        }
+    }
+
+    /**
+     * @param dropped 为null时不统计耗时 例如请求被取消
+     * @param failure 为null时不统计结果
+     */
+    private void finished(AsyncCall asyncCall, long now, Boolean dropped, Boolean failure) {
+        synchronized (this) {
+            runningCount--;
+            Host host = hosts.get(asyncCall.host);
+            host.running--;
+            long duration = now - asyncCall.startNanos;
+            if (host.limiter != null && dropped != null && !asyncCall.cacheOnly) {
+                host.limiter.onSample(now, duration, asyncCall.inFlight, dropped);
+            }
+            if (host.breaker != null && !asyncCall.cacheOnly) {
+                if (failure != null) {
+                    host.breaker.onResult(now, asyncCall.probe, failure, duration);
+                } else {
+                    host.breaker.onIgnored(asyncCall.probe);
+                }
+            }
+            removeIfIdle(asyncCall.host, host);
+        }
+        promoteCalls();
+    }
+
+    private static final class Host {
+        final HostLimiter limiter;
+        final CircuitBreaker breaker;
+        int running;
+        int queued;
+
+        Host(HostLimiter limiter, CircuitBreaker breaker) {
+            this.limiter = limiter;
+            this.breaker = breaker;
+        }
+
+        int limit(int maxRequestsPerHost) {
+            return limiter == null ? maxRequestsPerHost : limiter.limit();
+        }
+    }
+
+    private final class AsyncCall implements Callback, Comparable<AsyncCall> {
+
+        final Call call;
+        final Callback callback;
+        final String host;
+        // only-if-cached 不经过熔断器
+        final boolean cacheOnly;
+        final long enqueuedNanos;
+        final long deadline;
+        final long sequence;
+        boolean running;
+        boolean circuitOpen;
+        // 熔断器半开状态放行的请求
+        boolean probe;
+        int inFlight;
+        volatile long startNanos;
+
+        AsyncCall(Call call, Callback callback, String host, boolean cacheOnly, long enqueuedNanos, long deadline,
+                  long sequence) {
+            this.call = call;
+            this.callback = callback;
+            this.host = host;
+            this.cacheOnly = cacheOnly;
+            this.enqueuedNanos = enqueuedNanos;
+            this.deadline = deadline;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(AsyncCall other) {
+            if (deadline != other.deadline) {
+                return deadline < other.deadline ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) throws IOException {
+            // 耗时不包括读取响应体和回调
+            long now = System.nanoTime();
+            Boolean dropped = null;
+            Boolean failure = null;
+            // 直接使用缓存或者only-if-cached没有缓存时返回的504 没有访问网络
+            if (response.networkResponse() != null) {
+                dropped = response.code() == HTTP_TOO_MANY_REQUESTS || response.code() == HTTP_UNAVAILABLE;
+                failure = response.code() >= HTTP_SERVER_ERROR;
+            }
+            try {
+                callback.onResponse(call, response);
+            } finally {
+                finished(this, now, dropped, failure);
+            }
+        }
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            // 超时说明服务端过载 其他错误不作为耗时样本
+            long now = System.nanoTime();
+            boolean canceled = call.isCanceled();
+            Boolean dropped = !canceled && e instanceof InterruptedIOException ? Boolean.TRUE : null;
+            Boolean failure = canceled ? null : Boolean.TRUE;
+            try {
+                callback.onFailure(call, e);
+            } finally {
+                finished(this, now, dropped, failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.fly.easy;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 按时间间隔节流后通过callbackExecutor回调进度
+ * 同一时间callbackExecutor中最多只有一个进度回调 执行时读取最新的进度 传输很快时也不会堆积
+ */
+
+final class ProgressReporter implements Runnable {
+
+    private final EasyProgressListener listener;
+    private final Executor callbackExecutor;
+    private final long intervalNanos;
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile long bytes;
+    private volatile long contentLength = -1;
+    private volatile long lastReport = System.nanoTime();
+
+    ProgressReporter(EasyProgressListener listener, Executor callbackExecutor, long intervalMillis) {
+        this.listener = listener;
+        this.callbackExecutor = callbackExecutor;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    /**
+     * 可以在多个线程中调用 间隔内的进度只保留最新的
+     */
+    void update(long bytes, long contentLength) {
+        this.bytes = bytes;
+        this.contentLength = contentLength;
+        long now = System.nanoTime();
+        if (now - lastReport >= intervalNanos) {
+            lastReport = now;
+            schedule();
+        }
+    }
+
+    /**
+     * 传输完成 不受时间间隔限制
+     */
+    void finish(long bytes, long contentLength) {
+        this.bytes = bytes;
+        this.contentLength = contentLength;
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            callbackExecutor.execute(this);
+        }
+    }
+
+    @Override
+    public void run() {
+        // 先清除标记再读取进度 之后的进度会再次回调
+        scheduled.set(false);
+        listener.onProgress(bytes, contentLength);
+    }
+}
@@ -0,0 +1,65 @@
+package com.fly.easy;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+import okio.Sink;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 统计写出的字节数 通过{@link ProgressReporter}回调上传进度
+ */
+
+final class ProgressRequestBody extends RequestBody {
+
+    private final RequestBody delegate;
+    private final ProgressReporter reporter;
+
+    ProgressRequestBody(RequestBody delegate, ProgressReporter reporter) {
+        this.delegate = delegate;
+        this.reporter = reporter;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return delegate.contentType();
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return delegate.contentLength();
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        CountingSink countingSink = new CountingSink(sink, delegate.contentLength());
+        BufferedSink bufferedSink = Okio.buffer(countingSink);
+        delegate.writeTo(bufferedSink);
+        bufferedSink.flush();
+        // 上传完成时一定回调
+        reporter.finish(countingSink.bytesWritten, countingSink.contentLength);
+    }
+
+    private final class CountingSink extends ForwardingSink {
+
+        final long contentLength;
+        long bytesWritten;
+
+        CountingSink(Sink delegate, long contentLength) {
+            super(delegate);
+            this.contentLength = contentLength;
+        }
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            super.write(source, byteCount);
+            bytesWritten += byteCount;
+            reporter.update(bytesWritten, contentLength);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.fly.easy;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 适配为reactive-streams的{@link Publisher} 可以直接交给RxJava2、Reactor等使用
+ * 每次subscribe发出一个新的请求 收到request之后才发出 在网络线程中发出onNext和onComplete
+ * 响应失败时以{@link EasyResponseFailedException}结束 cancel会取消请求
+ * <p>
+ * 需要自行添加依赖org.reactivestreams:reactive-streams 通过
+ * {@code addCallAdapterFactory(PublisherCallAdapterFactory.create())}注册
+ */
+
+public final class PublisherCallAdapterFactory extends EasyCallAdapter.Factory {
+
+    public static PublisherCallAdapterFactory create() {
+        return new PublisherCallAdapterFactory();
+    }
+
+    private PublisherCallAdapterFactory() {
+    }
+
+    @Override
+    public EasyCallAdapter<?> get(Type returnType, EasyOKHttp easyOKHttp) {
+        if (returnType != Publisher.class) {
+            return null;
+        }
+        return new EasyCallAdapter<Publisher<EasyResponse<?>>>() {
+            @Override
+            public Publisher<EasyResponse<?>> adapt(EasyCall call) {
+                return new CallPublisher(call);
+            }
+        };
+    }
+
+    private static final class CallPublisher implements Publisher<EasyResponse<?>> {
+
+        private final EasyCall call;
+        // 第一次subscribe使用原来的call 之后的使用clone
+        private final AtomicBoolean used = new AtomicBoolean();
+
+        CallPublisher(EasyCall call) {
+            this.call = call;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super EasyResponse<?>> subscriber) {
+            EasyUtils.checkNotNull(subscriber, "subscriber == null");
+            EasyCall call = used.compareAndSet(false, true) ? this.call : this.call.clone();
+            subscriber.onSubscribe(new CallSubscription(call, subscriber));
+        }
+    }
+
+    private static final class CallSubscription implements Subscription, EasyCallback<Object> {
+
+        private final EasyCall call;
+        private final Subscriber<? super EasyResponse<?>> subscriber;
+        private final AtomicBoolean requested = new AtomicBoolean();
+        // 保证onComplete、onError只发出一次 cancel之后不再发出任何信号
+        private final AtomicBoolean terminated = new AtomicBoolean();
+
+        CallSubscription(EasyCall call, Subscriber<? super EasyResponse<?>> subscriber) {
+            this.call = call;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                // Rule 3.9
+                if (terminated.compareAndSet(false, true)) {
+                    call.cancel();
+                    subscriber.onError(new IllegalArgumentException("non-positive request: " + n));
+                }
+                return;
+            }
+            if (requested.compareAndSet(false, true) && !terminated.get()) {
+                call.enqueue(this);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (terminated.compareAndSet(false, true)) {
+                call.cancel();
+            }
+        }
+
+        @Override
+        public void onResponse(EasyCall call, EasyResponse<Object> response) {
+            if (!terminated.compareAndSet(false, true)) {
+                // 已经取消 释放连接
+                response.close();
+                return;
+            }
+            if (response.isSuccessful()) {
+                subscriber.onNext(response);
+                subscriber.onComplete();
+            } else {
+                subscriber.onError(new EasyResponseFailedException(response));
+            }
+        }
+
+        @Override
+        public void onFailure(EasyCall call, Throwable t) {
+            if (terminated.compareAndSet(false, true)) {
+                subscriber.onError(t);
+            }
+        }
+    }
+}
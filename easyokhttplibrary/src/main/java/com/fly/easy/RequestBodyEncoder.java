@@ -0,0 +1,128 @@
+package com.fly.easy;
+
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okhttp3.FormBody;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 将每次请求的参数编码为请求体
+ * 根据{@link EasyOptions.PostType}在{@link ServiceMethod}创建时选定 之后每次请求复用
+ */
+
+abstract class RequestBodyEncoder {
+
+    static final MediaType MEDIA_TYPE = MediaType.parse("application/json; charset=utf-8");
+
+    static final RequestBodyEncoder JSON = new JsonEncoder(JsonAdapters.EMPTY);
+    static final RequestBodyEncoder FORM = new FormEncoder();
+    static final RequestBodyEncoder MULTIPART = new MultipartEncoder();
+
+    /**
+     * @param json 使用{@link EasyOKHttp}中注册了adapter的JSON编码
+     */
+    static RequestBodyEncoder forPostType(@EasyOptions.PostType int postType, RequestBodyEncoder json) {
+        if (postType == EasyOptions.JSON) {
+            return json;
+        }
+        if (postType == EasyOptions.MULTIPART) {
+            return MULTIPART;
+        }
+        return FORM;
+    }
+
+    static RequestBodyEncoder json(JsonAdapters adapters) {
+        return adapters.isEmpty() ? JSON : new JsonEncoder(adapters);
+    }
+
+    /**
+     * @param params 本次请求的参数 可能为null
+     */
+    abstract RequestBody encode(@Nullable Map<String, Object> params);
+
+    static final class JsonEncoder extends RequestBodyEncoder {
+
+        private static final RequestBody EMPTY = RequestBody.create(MEDIA_TYPE, "");
+
+        private final JsonAdapters adapters;
+
+        JsonEncoder(JsonAdapters adapters) {
+            this.adapters = adapters;
+        }
+
+        @Override
+        RequestBody encode(@Nullable Map<String, Object> params) {
+            if (params == null) {
+                return EMPTY;
+            }
+            // 请求体在网络线程中写出 复制一份 之后修改参数不影响本次请求和重试
+            return new JsonBody(new LinkedHashMap<>(params), adapters);
+        }
+    }
+
+    /**
+     * 发送时直接把参数写入连接 不生成中间的字符串
+     * 重试和对冲时重新写出 长度未知 HTTP/1.1使用分块传输
+     */
+    static final class JsonBody extends RequestBody {
+
+        private final Map<String, Object> params;
+        private final JsonAdapters adapters;
+
+        JsonBody(Map<String, Object> params, JsonAdapters adapters) {
+            this.params = params;
+            this.adapters = adapters;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return MEDIA_TYPE;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            try {
+                new EasyJsonWriter(sink, adapters).value(params);
+            } catch (RuntimeException | LinkageError e) {
+                // 在OkHttp的线程中只有IOException会回调onFailure 其他异常会直接崩溃 回调也不会发出
+                throw new IOException("Unable to write JSON body", e);
+            }
+        }
+    }
+
+    static final class FormEncoder extends RequestBodyEncoder {
+
+        @Override
+        RequestBody encode(@Nullable Map<String, Object> params) {
+            FormBody.Builder formBilder = new FormBody.Builder();
+            if (params != null) {
+                for (Map.Entry<String, Object> param : params.entrySet()) {
+                    if (param.getValue() instanceof String) {
+                        formBilder.add(param.getKey(), (String) param.getValue());
+                    } else {
+                        throw new IllegalArgumentException("The form submission value must be string");
+                    }
+                }
+            }
+            return formBilder.build();
+        }
+    }
+
+    static final class MultipartEncoder extends RequestBodyEncoder {
+
+        @Override
+        RequestBody encode(@Nullable Map<String, Object> params) {
+            if (params == null || params.isEmpty()) {
+                throw new IllegalArgumentException("Multipart body must have at least one part.");
+            }
+            return MultipartParts.encode(params);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.fly.easy;
+
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 用于判断两个GET请求是否相同 地址、请求头、响应体转换器都相同
+ */
+
+final class RequestKey {
+
+    private final HttpUrl url;
+    private final Headers headers;
+    private final Object converter;
+
+    RequestKey(Request request, Object converter) {
+        this.url = request.url();
+        this.headers = request.headers();
+        this.converter = converter;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RequestKey)) return false;
+        RequestKey other = (RequestKey) o;
+        return converter == other.converter
+                && url.equals(other.url)
+                && headers.equals(other.headers);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = url.hashCode();
+        result = 31 * result + headers.hashCode();
+        result = 31 * result + System.identityHashCode(converter);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return url.toString();
+    }
+}
@@ -0,0 +1,127 @@
+package com.fly.easy;
+
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 按照{@link EasyRetryPolicy}重试请求
+ * 等待在调度线程中完成 OkHttp的线程不会被阻塞
+ */
+
+final class RetryingCallback implements Callback, Runnable {
+
+    /**
+     * 发起一次请求
+     */
+    interface Attempts {
+        boolean isCanceled();
+
+        void enqueue(Request request, Callback callback);
+    }
+
+    private final EasyRetryPolicy policy;
+    private final ScheduledExecutorService scheduler;
+    private final Request request;
+    private final Attempts attempts;
+    private final Callback delegate;
+
+    private int attempt = 1;
+    private Call lastCall;
+    private ScheduledFuture<?> pending;
+
+    RetryingCallback(EasyRetryPolicy policy, ScheduledExecutorService scheduler, Request request,
+                     Attempts attempts, Callback delegate) {
+        this.policy = policy;
+        this.scheduler = scheduler;
+        this.request = request;
+        this.attempts = attempts;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void onResponse(Call call, Response response) throws IOException {
+        if (attempt < policy.maxAttempts && !attempts.isCanceled() && policy.isRetryable(response.code())) {
+            long delay = Math.max(policy.backoff(attempt), retryAfter(response));
+            response.close();
+            if (schedule(call, delay)) {
+                return;
+            }
+            delegate.onFailure(call, new IOException("Retry rejected"));
+            return;
+        }
+        delegate.onResponse(call, response);
+    }
+
+    @Override
+    public void onFailure(Call call, IOException e) {
+        if (attempt < policy.maxAttempts && !attempts.isCanceled() && policy.isRetryable(e)
+                && schedule(call, policy.backoff(attempt))) {
+            return;
+        }
+        delegate.onFailure(call, e);
+    }
+
+    /**
+     * Retry-After 只支持秒数 不超过最大退避时间
+     */
+    private long retryAfter(Response response) {
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter == null) {
+            return 0;
+        }
+        try {
+            return Math.min(TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim())), policy.maxBackoff);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private synchronized boolean schedule(Call call, long delay) {
+        lastCall = call;
+        attempt++;
+        try {
+            pending = scheduler.schedule(this, delay, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void run() {
+        Call call;
+        synchronized (this) {
+            pending = null;
+            call = lastCall;
+        }
+        if (attempts.isCanceled()) {
+            delegate.onFailure(call, new IOException("Canceled"));
+            return;
+        }
+        attempts.enqueue(request, this);
+    }
+
+    /**
+     * 取消正在等待的重试
+     */
+    void cancel() {
+        ScheduledFuture<?> future;
+        Call call;
+        synchronized (this) {
+            future = pending;
+            call = lastCall;
+        }
+        if (future != null && future.cancel(false)) {
+            delegate.onFailure(call, new IOException("Canceled"));
+        }
+    }
+}
@@ -1,68 +1,204 @@
 package com.fly.easy;
 
-import org.json.JSONException;
-import org.json.JSONObject;
+import android.support.annotation.Nullable;
 
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Type;
 import java.util.List;
 import java.util.Map;
 
-import okhttp3.FormBody;
-import okhttp3.MediaType;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
-import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
 
 
 /**
  * 作者 ${郭鹏飞}.<br/>
+ * 请求模板 按requestSignature缓存
+ * 方法、地址、请求头、请求体编码方式在创建时解析校验 之后不可变
+ * 参数在每次请求时通过{@link #toRequest(Map)}绑定
  */
  class ServiceMethod {
 
-    OkHttpClient httpClient;
-    Request.Builder requestBuilder;
-    EasyCallAdapter<ExecutorCallbackCall> callAdapter;
+    final EasyOKHttp easyOKHttp;
+    // 缓存这个模板使用的签名 用于统计耗时
+    final Object requestSignature;
+    final OkHttpClient httpClient;
+    final int method;
+    final HttpUrl url;
+    final Headers headers;
+    // GET请求为null
+    final RequestBodyEncoder bodyEncoder;
+    // 是否以流的形式处理响应体
+    final boolean streaming;
+    // 响应体转换器 为null时不进行转换
+    final EasyConverter<?> responseConverter;
+    // 第一次创建时的策略 之后相同配置的请求直接复用
+    private final CallPolicy defaultPolicy;
+    // 最近的请求耗时 用于计算对冲的延迟
+    final LatencyTracker latency = new LatencyTracker();
+    // 没有参数的GET请求可以直接复用
+    private final Request noParamsRequest;
+    // 创建模板的配置 用于判断其他配置能否使用这个模板
+    private final String location;
+    private final int postType;
+    private final Type responseType;
+    private final Map<String, String> sigHeaders;
+    private final Map<String, List<String>> mulHeaders;
 
     ServiceMethod(Builder builder) {
+        easyOKHttp = builder.easyOKHttp;
+        requestSignature = builder.requestSignature;
         httpClient = builder.easyOKHttp.httpClient;
-        callAdapter = builder.callAdapter;
-        requestBuilder = builder.builder;
+        method = builder.easyOptions.method;
+        url = builder.url;
+        headers = builder.headers;
+        bodyEncoder = builder.bodyEncoder;
+        streaming = builder.easyOptions.responseMode == EasyOptions.STREAMING;
+        responseConverter = builder.responseConverter;
+        defaultPolicy = builder.defaultPolicy;
+        noParamsRequest = method == EasyOptions.GET
+                ? new Request.Builder().get().url(url).headers(headers).build()
+                : null;
+        location = location(builder.easyOptions);
+        postType = builder.easyOptions.postType;
+        responseType = builder.easyOptions.responseType;
+        sigHeaders = builder.easyOptions.sigHeaders;
+        mulHeaders = builder.easyOptions.mulHeaders;
     }
 
-    Request toRequest() {
-        return requestBuilder.build();
+    /**
+     * easyOptions的请求方式、地址、请求头、提交方式、响应体处理方式是否与模板相同
+     */
+    boolean isSameTemplate(EasyOptions easyOptions) {
+        return easyOptions.method == method
+                && (easyOptions.responseMode == EasyOptions.STREAMING) == streaming
+                && easyOptions.postType == postType
+                && equal(location(easyOptions), location)
+                && equal(easyOptions.responseType, responseType)
+                && equal(easyOptions.sigHeaders, sigHeaders)
+                && equal(easyOptions.mulHeaders, mulHeaders);
     }
 
-    static final class Builder {
+    private static String location(EasyOptions easyOptions) {
+        return easyOptions.isFullPath() ? easyOptions.url : easyOptions.path;
+    }
+
+    private static boolean equal(@Nullable Object a, @Nullable Object b) {
+        return a == b || (a != null && a.equals(b));
+    }
+
+    /**
+     * 本次请求的合并、缓存、重试、对冲策略 每次请求可以不同
+     *
+     * @throws IllegalArgumentException 策略不能用于这个模板
+     */
+    CallPolicy policy(EasyOptions easyOptions) {
+        if (defaultPolicy.matches(easyOptions)) {
+            return defaultPolicy;
+        }
+        return CallPolicy.resolve(easyOKHttp, easyOptions, method, streaming);
+    }
+
+    /**
+     * 绑定本次请求的参数
+     *
+     * @param params 参数 可能为null
+     */
+    Request toRequest(@Nullable Map<String, Object> params) {
+        if (method == EasyOptions.GET) {
+            if (params == null || params.isEmpty()) {
+                return noParamsRequest;
+            }
+            // 在解析好的模板上追加参数 保留模板中原有的参数
+            HttpUrl.Builder urlBuilder = url.newBuilder();
+            addQueryParameters(urlBuilder, params);
+            return new Request.Builder().get().url(urlBuilder.build()).headers(headers).build();
+        }
+        return new Request.Builder().post(bodyEncoder.encode(params)).url(url).headers(headers).build();
+    }
 
-        private static final MediaType MEDIA_TYPE = MediaType.parse("application/json; charset=utf-8");
+    /**
+     * 在网络线程中读取并转换响应体
+     */
+    Object toResponse(ResponseBody body) throws IOException {
+        return responseConverter.convert(body);
+    }
+
+    /**
+     * 参数按URL规则编码 Collection和数组的值展开为重复的参数 值为null时只有参数名
+     */
+    static void addQueryParameters(HttpUrl.Builder urlBuilder, Map<String, Object> params) {
+        for (Map.Entry<String, Object> entry : params.entrySet()) {
+            String name = entry.getKey();
+            Object value = entry.getValue();
+            if (value instanceof Iterable) {
+                for (Object element : (Iterable<?>) value) {
+                    urlBuilder.addQueryParameter(name, queryValue(element));
+                }
+            } else if (value != null && value.getClass().isArray()) {
+                for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                    urlBuilder.addQueryParameter(name, queryValue(Array.get(value, i)));
+                }
+            } else {
+                urlBuilder.addQueryParameter(name, queryValue(value));
+            }
+        }
+    }
+
+    private static String queryValue(@Nullable Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    static final class Builder {
 
         final EasyOKHttp easyOKHttp;
         final EasyOptions easyOptions;
-        Request.Builder builder;
-        EasyCallAdapter<ExecutorCallbackCall> callAdapter;
+        Object requestSignature;
+        HttpUrl url;
+        Headers headers;
+        RequestBodyEncoder bodyEncoder;
+        EasyConverter<?> responseConverter;
+        CallPolicy defaultPolicy;
 
         Builder(EasyOKHttp easyOKHttp, EasyOptions easyOptions) {
             this.easyOKHttp = easyOKHttp;
             this.easyOptions = easyOptions;
         }
 
+        Builder requestSignature(Object requestSignature) {
+            this.requestSignature = requestSignature;
+            return this;
+        }
+
         public ServiceMethod build() {
-            callAdapter = createCallAdapter();
+            responseConverter = createResponseConverter();
+
+            url = getUrl();
 
-            builder = buildRequestBuilder(getUrl());
+            headers = buildHeaders();
 
-            addHeaders(builder);
+            if (easyOptions.method != EasyOptions.GET) {
+                bodyEncoder = RequestBodyEncoder.forPostType(easyOptions.postType, easyOKHttp.jsonEncoder);
+            }
+
+            defaultPolicy = CallPolicy.resolve(easyOKHttp, easyOptions, easyOptions.method,
+                    easyOptions.responseMode == EasyOptions.STREAMING);
 
             return new ServiceMethod(this);
         }
 
-        private void addHeaders(Request.Builder builder) {
+        private Headers buildHeaders() {
+            Headers.Builder builder = new Headers.Builder();
             if (easyOptions.sigHeaders != null && !easyOptions.sigHeaders.isEmpty()) {
                 for (Map.Entry<String, String> headers :
                         easyOptions.sigHeaders.entrySet()) {
                     EasyUtils.checkStringArgument(headers.getKey(), "header key == null");
                     EasyUtils.checkStringArgument(headers.getValue(), "header value == null");
-                    builder.header(headers.getKey(), headers.getValue());
+                    builder.set(headers.getKey(), headers.getValue());
                 }
             }
             if (easyOptions.mulHeaders != null && !easyOptions.mulHeaders.isEmpty()) {
@@ -75,93 +211,36 @@ import okhttp3.RequestBody;
                     for (String value :
                             values) {
                         EasyUtils.checkStringArgument(value, "addHeader value == null");
-                        builder.addHeader(key, value);
+                        builder.add(key, value);
                     }
                 }
             }
+            return builder.build();
         }
 
-        private String getUrl() {
+        private HttpUrl getUrl() {
             String url;
             if (easyOptions.isFullPath()) {
                 url = easyOptions.url;
             } else {
                 url = easyOKHttp.baseUrl + easyOptions.path;
             }
-            return url;
-        }
-
-        private Request.Builder buildRequestBuilder(String url) {
-            Request.Builder builder;
-            if (easyOptions.method == EasyOptions.GET) {
-                if (easyOptions.params != null) {
-                    url = url + "?" + spliceParamsForGET(easyOptions.params);
-                }
-                builder = new Request.Builder().get().url(url);
-            } else {
-                RequestBody body;
-                if (easyOptions.params != null) {
-                    body = getBodyByParams(easyOptions.params);
-                } else {
-                    if (easyOptions.postType == EasyOptions.JSON) {
-                        body = RequestBody.create(MEDIA_TYPE, "");
-                    } else {
-                        FormBody.Builder formBilder = new FormBody.Builder();
-                        body = formBilder.build();
-                    }
-                }
-                builder = new Request.Builder().post(body).url(url);
+            HttpUrl httpUrl = HttpUrl.parse(url);
+            if (httpUrl == null) {
+                throw new IllegalArgumentException("Illegal URL: " + url);
             }
-            return builder;
+            return httpUrl;
         }
 
-        private RequestBody getBodyByParams(Map<String, Object> params) {
-            RequestBody body;
-            if (easyOptions.postType == EasyOptions.JSON) {
-                JSONObject json = new JSONObject();
-                for (Map.Entry<String, Object> param : params.entrySet()) {
-                    try {
-                        json.put(param.getKey(), param.getValue());
-                    } catch (JSONException e) {
-                        throw new RuntimeException(e);
-                    }
-                }
-                body = RequestBody.create(MEDIA_TYPE, json.toString());
-            } else {
-                FormBody.Builder formBilder = new FormBody.Builder();
-                for (Map.Entry<String, Object> param : easyOptions.params.entrySet()) {
-                    if (param.getValue() instanceof String) {
-                        formBilder.add(param.getKey(), (String) param.getValue());
-                    } else {
-                        throw new IllegalArgumentException("The form submission value must be string");
-                    }
-                }
-                body = formBilder.build();
+        private EasyConverter<?> createResponseConverter() {
+            if (easyOptions.responseType == null) {
+                return null;
             }
-            return body;
-        }
-
-        private String spliceParamsForGET(Map<String, Object> params) {
-            StringBuilder sb = new StringBuilder();
-            int index = 0;
-            for (Map.Entry<String, Object> entry:
-                 params.entrySet()) {
-                if (index != 0) {
-                    sb.append("&");
-                }
-                sb.append(entry.getKey()).append("=").append(entry.getValue());
-                index++;
+            try {
+                return easyOKHttp.responseBodyConverter(easyOptions.responseType);
+            } catch (RuntimeException e) { // Wide exception range because factories are user code.
+                throw new IllegalArgumentException("Unable to create converter for " + easyOptions.responseType, e);
             }
-            return sb.toString();
-        }
-
-        private EasyCallAdapter<ExecutorCallbackCall> createCallAdapter() {
-            return new EasyCallAdapter<ExecutorCallbackCall>() {
-                @Override
-                public ExecutorCallbackCall adapt(EasyCall call) {
-                    return new ExecutorCallbackCall(easyOKHttp.callbackExecutor, call);
-                }
-            };
         }
     }
 
@@ -0,0 +1,133 @@
+package com.fly.easy;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 有容量上限的{@link ServiceMethod}缓存
+ * <p>
+ * 命中时不加锁 只设置访问标记<br/>
+ * 未命中时通过putIfAbsent占位 只有相同key的请求会等待创建完成 不会阻塞其他key<br/>
+ * 超出容量时使用CLOCK(second chance)算法淘汰 近似LRU
+ */
+
+final class ServiceMethodCache {
+
+    private final EasyOKHttp easyOKHttp;
+    private final int maxSize;
+    private final ConcurrentHashMap<Object, Entry> map = new ConcurrentHashMap<>();
+    // 按插入顺序排列的时钟环
+    private final ConcurrentLinkedQueue<Entry> clock = new ConcurrentLinkedQueue<>();
+    // ConcurrentHashMap.size()在低版本中可能锁住所有segment 单独计数
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    ServiceMethodCache(EasyOKHttp easyOKHttp, int maxSize) {
+        this.easyOKHttp = easyOKHttp;
+        this.maxSize = maxSize;
+    }
+
+    ServiceMethod get(final Object key, final EasyOptions easyOptions) {
+        Entry entry = map.get(key);
+        if (entry == null) {
+            Entry created = new Entry(key, new Callable<ServiceMethod>() {
+                @Override
+                public ServiceMethod call() throws Exception {
+                    return new ServiceMethod.Builder(easyOKHttp, easyOptions).requestSignature(key).build();
+                }
+            });
+            entry = map.putIfAbsent(key, created);
+            if (entry == null) {
+                missCount.incrementAndGet();
+                // 在调用线程中创建 相同key的其他线程等待这个结果
+                created.run();
+                ServiceMethod result = getResult(created);
+                size.incrementAndGet();
+                clock.offer(created);
+                evict();
+                return result;
+            }
+        }
+        hitCount.incrementAndGet();
+        entry.referenced = true;
+        return getResult(entry);
+    }
+
+    private ServiceMethod getResult(Entry entry) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return entry.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            // 创建失败不缓存 下次重新创建
+            map.remove(entry.key, entry);
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void evict() {
+        if (size.get() <= maxSize || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            // 并发访问会不断重新设置访问标记 超出扫描次数后不再给second chance 保证一定能淘汰
+            int chances = 2 * size.get() + 1;
+            while (size.get() > maxSize) {
+                Entry entry = clock.poll();
+                if (entry == null) {
+                    break;
+                }
+                if (entry.referenced && chances-- > 0) {
+                    entry.referenced = false;
+                    clock.offer(entry);
+                } else if (map.remove(entry.key, entry)) {
+                    size.decrementAndGet();
+                    evictionCount.incrementAndGet();
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    EasyCacheStats stats() {
+        return new EasyCacheStats(hitCount.get(), missCount.get(), evictionCount.get(), size.get(), maxSize);
+    }
+
+    private static final class Entry extends FutureTask<ServiceMethod> {
+        final Object key;
+        volatile boolean referenced;
+
+        Entry(Object key, Callable<ServiceMethod> callable) {
+            super(callable);
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.fly.easy;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * {@link BudgetedQueue}超出预算的任务留到下一次执行
+ */
+
+public class BudgetedQueueTest {
+
+    private final AtomicInteger scheduleCount = new AtomicInteger();
+    private final List<Integer> ran = Collections.synchronizedList(new ArrayList<Integer>());
+
+    private final Runnable scheduler = new Runnable() {
+        @Override
+        public void run() {
+            scheduleCount.incrementAndGet();
+        }
+    };
+
+    @Test
+    public void schedulesOnceUntilDrained() {
+        BudgetedQueue queue = new BudgetedQueue(TimeUnit.SECONDS.toNanos(1), scheduler);
+        for (int i = 0; i < 3; i++) {
+            queue.offer(task(i, 0));
+        }
+        assertEquals(1, scheduleCount.get());
+
+        queue.drain();
+
+        assertEquals(Arrays.asList(0, 1, 2), ran);
+        assertEquals(1, scheduleCount.get());
+        // 执行之后新加入的任务重新安排
+        queue.offer(task(3, 0));
+        assertEquals(2, scheduleCount.get());
+    }
+
+    @Test
+    public void carriesOverTasksBeyondBudgetInOrder() {
+        BudgetedQueue queue = new BudgetedQueue(TimeUnit.MILLISECONDS.toNanos(1), scheduler);
+        for (int i = 0; i < 3; i++) {
+            queue.offer(task(i, 2));
+        }
+
+        // 每个任务都超出预算 每次只执行一个 剩下的重新安排
+        queue.drain();
+        assertEquals(Collections.singletonList(0), ran);
+        assertEquals(2, scheduleCount.get());
+        queue.drain();
+        assertEquals(Arrays.asList(0, 1), ran);
+        assertEquals(3, scheduleCount.get());
+        queue.drain();
+
+        assertEquals(Arrays.asList(0, 1, 2), ran);
+        assertEquals(3, scheduleCount.get());
+    }
+
+    @Test
+    public void failingTaskDoesNotStrandTheRest() {
+        BudgetedQueue queue = new BudgetedQueue(TimeUnit.SECONDS.toNanos(1), scheduler);
+        queue.offer(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("boom");
+            }
+        });
+        queue.offer(task(1, 0));
+
+        try {
+            queue.drain();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(2, scheduleCount.get());
+        queue.drain();
+
+        assertEquals(Collections.singletonList(1), ran);
+    }
+
+    private Runnable task(final int index, final long sleepMillis) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                ran.add(index);
+                if (sleepMillis > 0) {
+                    try {
+                        Thread.sleep(sleepMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,129 @@
+package com.fly.easy;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * {@link CallCoalescer}共享请求和按引用计数取消
+ */
+
+public class CallCoalescerTest {
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    @Test
+    public void identicalCallsShareOneRequest() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                release.await(10, TimeUnit.SECONDS);
+                return new MockResponse().setBody("shared");
+            }
+        });
+        EasyOKHttp easyOKHttp = client();
+        EasyOptions options = options(null);
+        RecordingCallback first = new RecordingCallback();
+        RecordingCallback second = new RecordingCallback();
+        EasyCall canceled = easyOKHttp.createCall("shared", options);
+
+        easyOKHttp.createCall("shared", options).enqueue(first);
+        easyOKHttp.createCall("shared", options).enqueue(second);
+        canceled.enqueue(new RecordingCallback());
+        // 还有其他请求在等待 共享的请求不会取消
+        canceled.cancel();
+        release.countDown();
+
+        assertEquals("shared", first.awaitResponse().string());
+        assertEquals("shared", second.awaitResponse().string());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void allCallersCanceledBeforeStartSendsNothing() throws Exception {
+        assertCanceledBeforeStart(options(null));
+    }
+
+    @Test
+    public void allCallersCanceledBeforeStartSendsNoHedge() throws Exception {
+        assertCanceledBeforeStart(options(new EasyHedgePolicy.Builder().delay(0).budget(1).build()));
+    }
+
+    /**
+     * 最后一个请求在共享的请求发出之前取消 原始请求和对冲请求都不会发出
+     */
+    private void assertCanceledBeforeStart(EasyOptions options) throws Exception {
+        server.enqueue(new MockResponse().setBody("shared"));
+        server.enqueue(new MockResponse().setBody("shared"));
+        final AtomicInteger executed = new AtomicInteger();
+        EasyOKHttp easyOKHttp = client();
+        // 交给OkHttp执行的请求都会经过拦截器 之后再取消也可能已经发出
+        easyOKHttp.initHttpClient(new OkHttpClient.Builder()
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        executed.incrementAndGet();
+                        return chain.proceed(chain.request());
+                    }
+                })
+                .build());
+        ServiceMethod serviceMethod = new ServiceMethod.Builder(easyOKHttp, options)
+                .requestSignature("shared")
+                .build();
+        EasyCallImpl leader = new EasyCallImpl(serviceMethod, options);
+        EasyCallImpl follower = new EasyCallImpl(serviceMethod, options);
+        Request request = serviceMethod.toRequest(options.params);
+        CallCoalescer.InFlight inFlight = easyOKHttp.callCoalescer.new InFlight(
+                new RequestKey(request, serviceMethod.responseConverter),
+                serviceMethod, serviceMethod.policy(options), request, leader);
+        RecordingCallback leaderCallback = new RecordingCallback();
+        RecordingCallback followerCallback = new RecordingCallback();
+        assertTrue(inFlight.join(leader, leaderCallback));
+        assertTrue(inFlight.join(follower, followerCallback));
+
+        inFlight.cancel(leader);
+        inFlight.cancel(follower);
+        inFlight.start();
+
+        assertEquals("Canceled", leaderCallback.awaitFailure().getMessage());
+        assertEquals("Canceled", followerCallback.awaitFailure().getMessage());
+        assertEquals(0, executed.get());
+        assertEquals(0, server.getRequestCount());
+    }
+
+    private EasyOKHttp client() {
+        return new EasyOKHttp.Builder(new Platform.Java())
+                .baseUrl(server.url("/").toString())
+                .build();
+    }
+
+    private static EasyOptions options(EasyHedgePolicy hedgePolicy) {
+        EasyOptions.OKHttpOptionsBuilder builder = new EasyOptions.OKHttpOptionsBuilder()
+                .path("shared")
+                .coalesce(true)
+                .retryPolicy(EasyRetryPolicy.NONE);
+        if (hedgePolicy != null) {
+            builder.hedgePolicy(hedgePolicy);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,256 @@
+package com.fly.easy;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * {@link CircuitBreaker}的状态切换 时间由测试传入
+ */
+
+public class CircuitBreakerTest {
+
+    private static final long OPEN_DURATION = TimeUnit.SECONDS.toNanos(1);
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final CircuitBreaker breaker = new CircuitBreaker(new EasyCircuitBreakerPolicy.Builder()
+            .window(4, 4)
+            .failureRateThreshold(0.5)
+            .slowCallRateThreshold(0.75, 100)
+            .openDuration(1000)
+            .halfOpenCalls(2)
+            .build());
+
+    @Test
+    public void staysClosedUntilMinimumCalls() {
+        for (int i = 0; i < 3; i++) {
+            breaker.onResult(0, false, true, FAST);
+        }
+
+        assertEquals(CircuitBreaker.CLOSED, breaker.state(0));
+        assertTrue(breaker.tryAcquire(0));
+    }
+
+    @Test
+    public void opensWhenFailureRateReachesThreshold() {
+        breaker.onResult(0, false, false, FAST);
+        breaker.onResult(0, false, false, FAST);
+        breaker.onResult(0, false, true, FAST);
+        assertEquals(CircuitBreaker.CLOSED, breaker.state(0));
+        breaker.onResult(0, false, true, FAST);
+
+        assertEquals(CircuitBreaker.OPEN, breaker.state(0));
+        assertFalse(breaker.tryAcquire(0));
+    }
+
+    @Test
+    public void opensWhenSlowCallRateReachesThreshold() {
+        breaker.onResult(0, false, false, FAST);
+        for (int i = 0; i < 3; i++) {
+            breaker.onResult(0, false, false, SLOW);
+        }
+
+        assertEquals(CircuitBreaker.OPEN, breaker.state(0));
+    }
+
+    @Test
+    public void windowOnlyCountsRecentCalls() {
+        breaker.onResult(0, false, true, FAST);
+        for (int i = 0; i < 10; i++) {
+            breaker.onResult(0, false, false, FAST);
+        }
+        breaker.onResult(0, false, true, FAST);
+
+        // 最近4个请求中只有1个失败
+        assertEquals(CircuitBreaker.CLOSED, breaker.state(0));
+    }
+
+    @Test
+    public void halfOpensAfterOpenDurationAndLimitsProbes() {
+        open(0);
+        assertEquals(CircuitBreaker.OPEN, breaker.state(OPEN_DURATION - 1));
+
+        assertEquals(CircuitBreaker.HALF_OPEN, breaker.state(OPEN_DURATION));
+        assertTrue(breaker.tryAcquire(OPEN_DURATION));
+        assertTrue(breaker.tryAcquire(OPEN_DURATION));
+        assertFalse(breaker.tryAcquire(OPEN_DURATION));
+    }
+
+    @Test
+    public void closesWhenProbesSucceed() {
+        open(0);
+        acquireProbes(OPEN_DURATION);
+        breaker.onResult(OPEN_DURATION, true, false, FAST);
+        assertEquals(CircuitBreaker.HALF_OPEN, breaker.state(OPEN_DURATION));
+        breaker.onResult(OPEN_DURATION, true, false, FAST);
+
+        assertEquals(CircuitBreaker.CLOSED, breaker.state(OPEN_DURATION));
+        // 关闭后重新统计 之前的失败不再计入
+        breaker.onResult(OPEN_DURATION, false, true, FAST);
+        breaker.onResult(OPEN_DURATION, false, true, FAST);
+        assertEquals(CircuitBreaker.CLOSED, breaker.state(OPEN_DURATION));
+    }
+
+    @Test
+    public void reopensWhenProbesFail() {
+        open(0);
+        acquireProbes(OPEN_DURATION);
+        breaker.onResult(OPEN_DURATION, true, false, FAST);
+        breaker.onResult(OPEN_DURATION, true, true, FAST);
+
+        assertEquals(CircuitBreaker.OPEN, breaker.state(OPEN_DURATION));
+        // 重新计算打开的时间
+        assertEquals(CircuitBreaker.OPEN, breaker.state(2 * OPEN_DURATION - 1));
+        assertEquals(CircuitBreaker.HALF_OPEN, breaker.state(2 * OPEN_DURATION));
+    }
+
+    @Test
+    public void ignoredProbeReturnsItsPermit() {
+        open(0);
+        acquireProbes(OPEN_DURATION);
+        assertFalse(breaker.tryAcquire(OPEN_DURATION));
+
+        breaker.onIgnored(true);
+
+        assertTrue(breaker.tryAcquire(OPEN_DURATION));
+    }
+
+    @Test
+    public void resultsOfCallsSentBeforeHalfOpenAreIgnored() {
+        open(0);
+        acquireProbes(OPEN_DURATION);
+        // 打开之前发出的请求
+        breaker.onResult(OPEN_DURATION, false, true, FAST);
+        breaker.onResult(OPEN_DURATION, false, true, FAST);
+
+        assertEquals(CircuitBreaker.HALF_OPEN, breaker.state(OPEN_DURATION));
+    }
+
+    @Test
+    public void openCircuitFailsFastWithoutSendingTheRequest() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setBody("ok"));
+        EasyOKHttp easyOKHttp = new EasyOKHttp.Builder(new Platform.Java())
+                .baseUrl(server.url("/").toString())
+                .circuitBreaker(new EasyCircuitBreakerPolicy.Builder().window(2, 2).build())
+                .build();
+        EasyOptions options = new EasyOptions.OKHttpOptionsBuilder()
+                .path("breaker")
+                .retryPolicy(EasyRetryPolicy.NONE)
+                .build();
+        for (int i = 0; i < 2; i++) {
+            RecordingCallback callback = new RecordingCallback();
+            easyOKHttp.createCall("breaker", options).enqueue(callback);
+            callback.awaitFailure();
+        }
+        awaitIdle(easyOKHttp);
+
+        RecordingCallback callback = new RecordingCallback();
+        easyOKHttp.createCall("breaker", options).enqueue(callback);
+
+        EasyCircuitOpenException failure = (EasyCircuitOpenException) callback.awaitFailure();
+        assertEquals(server.getHostName(), failure.getHost());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void cacheMissDoesNotCountAsFailure() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setBody("ok").setHeader("Cache-Control", "no-store"));
+        }
+        EasyOKHttp easyOKHttp = cacheClient();
+        EasyOptions options = new EasyOptions.OKHttpOptionsBuilder()
+                .path("cold")
+                .cachePolicy(EasyOptions.CACHE_FIRST)
+                .build();
+
+        // 每次都是only-if-cached的504之后访问网络 504不是服务端返回的
+        for (int i = 0; i < 3; i++) {
+            RecordingCallback callback = new RecordingCallback();
+            easyOKHttp.createCall("cold", options).enqueue(callback);
+            assertEquals("ok", callback.awaitResponse().string());
+            awaitIdle(easyOKHttp);
+        }
+
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void openCircuitStillServesDiskCache() throws Exception {
+        server.enqueue(new MockResponse().setBody("cached").setHeader("Cache-Control", "max-age=60"));
+        server.enqueue(new MockResponse().setResponseCode(500));
+        EasyOKHttp easyOKHttp = cacheClient();
+        EasyOptions cached = new EasyOptions.OKHttpOptionsBuilder()
+                .path("cached")
+                .cachePolicy(EasyOptions.CACHE_FIRST)
+                .build();
+        EasyOptions failing = new EasyOptions.OKHttpOptionsBuilder()
+                .path("failing")
+                .retryPolicy(EasyRetryPolicy.NONE)
+                .build();
+        RecordingCallback first = new RecordingCallback();
+        easyOKHttp.createCall("cached", cached).enqueue(first);
+        assertEquals("cached", first.awaitResponse().string());
+        // 最近两个请求一个成功一个失败 熔断器打开
+        RecordingCallback failed = new RecordingCallback();
+        easyOKHttp.createCall("failing", failing).enqueue(failed);
+        failed.awaitFailure();
+        awaitIdle(easyOKHttp);
+        RecordingCallback open = new RecordingCallback();
+        easyOKHttp.createCall("failing", failing).enqueue(open);
+        assertTrue(open.awaitFailure() instanceof EasyCircuitOpenException);
+
+        RecordingCallback callback = new RecordingCallback();
+        easyOKHttp.createCall("cached", cached).enqueue(callback);
+
+        assertEquals("cached", callback.awaitResponse().string());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    private EasyOKHttp cacheClient() {
+        return new EasyOKHttp.Builder(new Platform.Java())
+                .baseUrl(server.url("/").toString())
+                .diskCache(folder.getRoot(), 1024 * 1024)
+                .circuitBreaker(new EasyCircuitBreakerPolicy.Builder().window(2, 2).build())
+                .build();
+    }
+
+    /**
+     * 回调之后才记录结果
+     */
+    private static void awaitIdle(EasyOKHttp easyOKHttp) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (easyOKHttp.dispatcher.runningCallsCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void open(long now) {
+        for (int i = 0; i < 4; i++) {
+            breaker.onResult(now, false, true, FAST);
+        }
+        assertEquals(CircuitBreaker.OPEN, breaker.state(now));
+    }
+
+    private void acquireProbes(long now) {
+        assertTrue(breaker.tryAcquire(now));
+        assertTrue(breaker.tryAcquire(now));
+    }
+}
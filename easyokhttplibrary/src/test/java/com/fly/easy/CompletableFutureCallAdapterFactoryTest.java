@@ -0,0 +1,123 @@
+package com.fly.easy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * {@link CompletableFutureCallAdapterFactory}的结果、失败和取消
+ */
+
+public class CompletableFutureCallAdapterFactoryTest {
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    private final CountDownLatch unblock = new CountDownLatch(1);
+    private EasyOKHttp easyOKHttp;
+
+    @Before
+    public void setUp() {
+        easyOKHttp = new EasyOKHttp.Builder(new Platform.Java())
+                .baseUrl(server.url("/").toString())
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        unblock.countDown();
+    }
+
+    @Test
+    public void completesWithConvertedResponse() throws Exception {
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        EasyResponse<?> response = future(options().responseType(String.class)).get(10, TimeUnit.SECONDS);
+
+        assertEquals(200, response.code());
+        assertEquals("ok", response.entity());
+    }
+
+    @Test
+    public void failedResponseCompletesExceptionally() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404));
+
+        try {
+            future(options()).get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals(404, ((EasyResponseFailedException) e.getCause()).getResponse().code());
+        }
+    }
+
+    @Test
+    public void networkFailureCompletesExceptionally() throws Exception {
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+
+        try {
+            future(options().retryPolicy(EasyRetryPolicy.NONE)).get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void cancelingTheFutureCancelsTheCall() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                unblock.await(10, TimeUnit.SECONDS);
+                return new MockResponse().setBody("ok");
+            }
+        });
+        CompletableFuture<EasyResponse<?>> future = future(options());
+        server.takeRequest();
+
+        assertTrue(future.cancel(false));
+
+        // 服务端还没有返回 请求已经结束
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (easyOKHttp.dispatcher.runningCallsCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, easyOKHttp.dispatcher.runningCallsCount());
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    public void unsupportedReturnTypeIsRejected() {
+        try {
+            easyOKHttp.createCall("future", options().build(), Runnable.class);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Could not locate call adapter"));
+        }
+    }
+
+    private static EasyOptions.OKHttpOptionsBuilder options() {
+        return new EasyOptions.OKHttpOptionsBuilder().path("future");
+    }
+
+    private CompletableFuture<EasyResponse<?>> future(EasyOptions.OKHttpOptionsBuilder options) {
+        return easyOKHttp.createCall("future", options.build(), CompletableFuture.class);
+    }
+}
@@ -0,0 +1,106 @@
+package com.fly.easy;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * {@link EasyBatch}按顺序回调和取消
+ */
+
+public class EasyBatchTest {
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    @Test
+    public void deliversItemsInOrder() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setBody("ok"));
+        }
+        EasyBatch batch = createBatch(3);
+        RecordingBatchCallback callback = new RecordingBatchCallback();
+
+        batch.parallelism(2).enqueue(callback);
+
+        EasyBatchResult<Object> result = callback.await();
+        assertTrue(result.isSuccessful());
+        assertEquals("[0, 1, 2]", callback.items.toString());
+        // 每一项使用自己的参数
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            paths.add(server.takeRequest().getPath());
+        }
+        for (int i = 0; i < 3; i++) {
+            assertTrue(paths.toString(), paths.contains("/batch?id=" + i));
+        }
+    }
+
+    @Test
+    public void cancelBeforeEnqueueSendsNothing() throws Exception {
+        EasyBatch batch = createBatch(3);
+        RecordingBatchCallback callback = new RecordingBatchCallback();
+
+        batch.cancel();
+        batch.enqueue(callback);
+
+        EasyBatchResult<Object> result = callback.await();
+        assertTrue(batch.isCanceled());
+        assertEquals(3, result.failureCount());
+        for (int i = 0; i < 3; i++) {
+            assertEquals("Canceled", result.failure(i).getMessage());
+        }
+        assertTrue(callback.items.isEmpty());
+        assertEquals(0, server.getRequestCount());
+    }
+
+    private EasyBatch createBatch(int size) {
+        EasyOKHttp easyOKHttp = new EasyOKHttp.Builder(new Platform.Java())
+                .baseUrl(server.url("/").toString())
+                .build();
+        List<EasyOptions> options = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            options.add(new EasyOptions.OKHttpOptionsBuilder()
+                    .path("batch")
+                    .method(EasyOptions.GET)
+                    .param("id", i)
+                    .build());
+        }
+        return easyOKHttp.createBatch("batch", options);
+    }
+
+    private static final class RecordingBatchCallback implements EasyBatchCallback<Object> {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+        final List<Integer> items = new CopyOnWriteArrayList<>();
+        private volatile EasyBatchResult<Object> result;
+
+        @Override
+        public void onItem(EasyBatch batch, int index, EasyResponse<Object> response, Throwable failure) {
+            items.add(index);
+        }
+
+        @Override
+        public void onComplete(EasyBatch batch, EasyBatchResult<Object> result) {
+            this.result = result;
+            latch.countDown();
+        }
+
+        EasyBatchResult<Object> await() throws InterruptedException {
+            assertTrue("timeout", latch.await(10, TimeUnit.SECONDS));
+            return result;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.fly.easy;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * {@link EasyDownload}的断点续传 进度通过{@link DownloadState}预先写入
+ */
+
+public class EasyDownloadTest {
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private EasyOKHttp easyOKHttp;
+    private File target;
+
+    @Before
+    public void setUp() throws IOException {
+        easyOKHttp = new EasyOKHttp.Builder(new Platform.Java())
+                .baseUrl(server.url("/").toString())
+                .build();
+        target = new File(folder.getRoot(), "download/file.txt");
+    }
+
+    @Test
+    public void parsesContentRange() {
+        assertArrayEquals(new long[]{0, 99, 100}, EasyDownload.parseContentRange("bytes 0-99/100"));
+        assertArrayEquals(new long[]{6, 10, -1}, EasyDownload.parseContentRange("bytes 6-10/*"));
+        assertNull(EasyDownload.parseContentRange(null));
+        assertNull(EasyDownload.parseContentRange("items 0-99/100"));
+        assertNull(EasyDownload.parseContentRange("bytes 0-99"));
+        assertNull(EasyDownload.parseContentRange("bytes */100"));
+        assertNull(EasyDownload.parseContentRange("bytes a-b/100"));
+    }
+
+    @Test
+    public void weakEtagIsNotAValidator() {
+        assertEquals("\"v1\"", EasyDownload.validator(response("ETag", "\"v1\"")));
+        assertEquals("Mon, 01 Jan 2018 00:00:00 GMT", EasyDownload.validator(response("ETag", "W/\"v1\"")
+                .newBuilder().header("Last-Modified", "Mon, 01 Jan 2018 00:00:00 GMT").build()));
+        assertNull(EasyDownload.validator(response("ETag", "W/\"v1\"")));
+    }
+
+    @Test
+    public void downloadsToTargetAndRemovesProgressFiles() throws Exception {
+        server.enqueue(new MockResponse().setBody("hello world").setHeader("ETag", "\"v1\""));
+
+        download("file");
+
+        assertEquals("hello world", read(target));
+        assertNull(server.takeRequest().getHeader("Range"));
+        assertFalse(new File(target.getPath() + ".part").exists());
+        assertFalse(new File(target.getPath() + ".part.meta").exists());
+    }
+
+    @Test
+    public void resumesFromSavedPosition() throws Exception {
+        seed("file", "hello ", 11);
+        server.enqueue(new MockResponse().setResponseCode(206)
+                .setHeader("Content-Range", "bytes 6-10/11")
+                .setBody("world"));
+
+        download("file");
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals("bytes=6-", request.getHeader("Range"));
+        assertEquals("\"v1\"", request.getHeader("If-Range"));
+        assertEquals("hello world", read(target));
+    }
+
+    @Test
+    public void restartsWhenServerReturnsFullContent() throws Exception {
+        seed("file", "stale ", 11);
+        // If-Range不匹配 服务端返回完整的内容
+        server.enqueue(new MockResponse().setBody("hello world").setHeader("ETag", "\"v2\""));
+
+        download("file");
+
+        assertEquals("bytes=6-", server.takeRequest().getHeader("Range"));
+        assertEquals("hello world", read(target));
+    }
+
+    @Test
+    public void differentUrlDiscardsProgress() throws Exception {
+        seed("old", "stale ", 11);
+        server.enqueue(new MockResponse().setBody("hello world"));
+
+        download("new");
+
+        RecordedRequest request = server.takeRequest();
+        assertNull(request.getHeader("Range"));
+        assertNull(request.getHeader("If-Range"));
+        assertEquals("hello world", read(target));
+    }
+
+    @Test
+    public void unexpectedContentRangeFailsAndKeepsProgress() throws Exception {
+        seed("file", "hello ", 11);
+        server.enqueue(new MockResponse().setResponseCode(206)
+                .setHeader("Content-Range", "bytes 0-10/11")
+                .setBody("hello world"));
+        RecordingDownloadCallback callback = new RecordingDownloadCallback();
+
+        easyOKHttp.createDownload("file", target).retryPolicy(EasyRetryPolicy.NONE).enqueue(callback);
+
+        assertTrue(callback.awaitFailure() instanceof IOException);
+        assertFalse(target.exists());
+        DownloadState state = DownloadState.load(target, server.url("file").toString());
+        assertEquals(6, state.segments().get(0).position);
+    }
+
+    @Test
+    public void segmentedDownloadFetchesTheRestWithRanges() throws Exception {
+        byte[] content = content(2 * EasyDownload.MIN_SEGMENT_SIZE + 1000);
+        serveRanges(content, "\"v1\"");
+        RecordingDownloadCallback callback = new RecordingDownloadCallback();
+
+        easyOKHttp.createDownload("file", target).segments(2).enqueue(callback);
+        callback.awaitSuccess();
+
+        assertArrayEquals(content, readBytes(target));
+        // 第一段继续使用完整内容的响应 第二段单独请求
+        assertEquals(2, server.getRequestCount());
+        assertNull(server.takeRequest().getHeader("Range"));
+        RecordedRequest second = server.takeRequest();
+        long half = (content.length + 1) / 2;
+        assertEquals("bytes=" + half + "-" + (content.length - 1), second.getHeader("Range"));
+        assertEquals("\"v1\"", second.getHeader("If-Range"));
+    }
+
+    @Test
+    public void segmentedDownloadResumesEverySegment() throws Exception {
+        byte[] content = content(2 * EasyDownload.MIN_SEGMENT_SIZE);
+        List<DownloadState.Segment> segments = seedSegments(content, 100);
+        serveRanges(content, "\"v1\"");
+        RecordingDownloadCallback callback = new RecordingDownloadCallback();
+
+        easyOKHttp.createDownload("file", target).segments(2).enqueue(callback);
+        callback.awaitSuccess();
+
+        assertArrayEquals(content, readBytes(target));
+        assertEquals(2, server.getRequestCount());
+        String first = server.takeRequest().getHeader("Range");
+        String second = server.takeRequest().getHeader("Range");
+        for (DownloadState.Segment segment : segments) {
+            String range = "bytes=" + (segment.start + 100) + "-" + segment.end;
+            assertTrue(range, range.equals(first) || range.equals(second));
+        }
+    }
+
+    @Test
+    public void changedRemoteFileFailsSegmentedDownload() throws Exception {
+        byte[] content = content(2 * EasyDownload.MIN_SEGMENT_SIZE);
+        seedSegments(content, 100);
+        // 服务端的文件已经改变 If-Range不匹配时返回完整的内容
+        serveRanges(content, "\"v2\"");
+        RecordingDownloadCallback callback = new RecordingDownloadCallback();
+
+        easyOKHttp.createDownload("file", target).segments(2).enqueue(callback);
+
+        assertEquals("Remote file changed during a segmented download", callback.awaitFailure().getMessage());
+        assertFalse(new File(target.getPath() + ".part.meta").exists());
+    }
+
+    /**
+     * 按Range返回content的一部分 If-Range和etag不同时返回完整的内容
+     */
+    private void serveRanges(final byte[] content, final String etag) {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                MockResponse response = new MockResponse()
+                        .setHeader("Accept-Ranges", "bytes")
+                        .setHeader("ETag", etag);
+                String range = request.getHeader("Range");
+                String ifRange = request.getHeader("If-Range");
+                if (range == null || (ifRange != null && !ifRange.equals(etag))) {
+                    return response.setBody(new Buffer().write(content));
+                }
+                String[] bounds = range.substring("bytes=".length()).split("-");
+                int start = Integer.parseInt(bounds[0]);
+                int end = bounds.length > 1 ? Integer.parseInt(bounds[1]) : content.length - 1;
+                return response.setResponseCode(206)
+                        .setHeader("Content-Range", "bytes " + start + "-" + end + "/" + content.length)
+                        .setBody(new Buffer().write(content, start, end - start + 1));
+            }
+        });
+    }
+
+    /**
+     * 分为两段 每一段已经下载了downloaded个字节
+     */
+    private List<DownloadState.Segment> seedSegments(byte[] content, int downloaded) throws IOException {
+        DownloadState state = DownloadState.load(target, server.url("file").toString());
+        state.validator = "\"v1\"";
+        state.contentLength = content.length;
+        List<DownloadState.Segment> segments = state.split(2);
+        RandomAccessFile file = new RandomAccessFile(state.partFile, "rw");
+        try {
+            for (DownloadState.Segment segment : segments) {
+                file.seek(segment.start);
+                file.write(content, (int) segment.start, downloaded);
+                segment.position = segment.start + downloaded;
+            }
+        } finally {
+            file.close();
+        }
+        state.save();
+        return segments;
+    }
+
+    private static byte[] content(long length) {
+        byte[] content = new byte[(int) length];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i % 251);
+        }
+        return content;
+    }
+
+    /**
+     * 写入已经下载的部分和进度
+     */
+    private void seed(String path, String downloaded, long contentLength) throws IOException {
+        DownloadState state = DownloadState.load(target, server.url(path).toString());
+        BufferedSink sink = Okio.buffer(Okio.sink(state.partFile));
+        sink.writeUtf8(downloaded).close();
+        state.validator = "\"v1\"";
+        state.contentLength = contentLength;
+        state.segments().get(0).position = state.partFile.length();
+        state.save();
+    }
+
+    private void download(String path) throws Exception {
+        RecordingDownloadCallback callback = new RecordingDownloadCallback();
+        easyOKHttp.createDownload(path, target).enqueue(callback);
+        assertEquals(target, callback.awaitSuccess());
+    }
+
+    private static String read(File file) throws IOException {
+        BufferedSource source = Okio.buffer(Okio.source(file));
+        try {
+            return source.readUtf8();
+        } finally {
+            source.close();
+        }
+    }
+
+    private static byte[] readBytes(File file) throws IOException {
+        BufferedSource source = Okio.buffer(Okio.source(file));
+        try {
+            return source.readByteArray();
+        } finally {
+            source.close();
+        }
+    }
+
+    private static Response response(String name, String value) {
+        return new Response.Builder()
+                .request(new Request.Builder().url("http://example.com/").build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .header(name, value)
+                .build();
+    }
+
+    static final class RecordingDownloadCallback implements EasyDownloadCallback {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile File file;
+        private volatile Throwable failure;
+
+        @Override
+        public void onSuccess(EasyDownload download, File file) {
+            this.file = file;
+            latch.countDown();
+        }
+
+        @Override
+        public void onFailure(EasyDownload download, Throwable t) {
+            this.failure = t;
+            latch.countDown();
+        }
+
+        File awaitSuccess() throws Exception {
+            assertTrue("timeout", latch.await(10, TimeUnit.SECONDS));
+            if (failure != null) {
+                throw new AssertionError("Expected success but failed with " + failure);
+            }
+            return file;
+        }
+
+        Throwable awaitFailure() throws Exception {
+            assertTrue("timeout", latch.await(10, TimeUnit.SECONDS));
+            if (failure == null) {
+                throw new AssertionError("Expected a failure but succeeded");
+            }
+            return failure;
+        }
+    }
+}
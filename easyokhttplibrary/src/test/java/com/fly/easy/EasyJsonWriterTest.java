@@ -0,0 +1,216 @@
+package com.fly.easy;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.RequestBody;
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * {@link EasyJsonWriter}的转义和嵌套
+ */
+
+public class EasyJsonWriterTest {
+
+    private enum Color {RED}
+
+    private static final class Point {
+        final int x;
+        final int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    private final Buffer buffer = new Buffer();
+
+    @Test
+    public void escapesSpecialCharacters() throws IOException {
+        writer().value("quote\" backslash\\ slash/ \b\f\n\r\t \u0001\u001f   ");
+
+        assertEquals("\"quote\\\" backslash\\\\ slash/ \\b\\f\\n\\r\\t \\u0001\\u001f \\u2028\\u2029\"",
+                buffer.readUtf8());
+    }
+
+    @Test
+    public void writesNonAsciiAsUtf8() throws IOException {
+        writer().value("中文 é 😀");
+
+        assertEquals("\"中文 é 😀\"", buffer.readUtf8());
+    }
+
+    @Test
+    public void escapesNames() throws IOException {
+        writer().beginObject().name("a\"b\n").value(1L).endObject();
+
+        assertEquals("{\"a\\\"b\\n\":1}", buffer.readUtf8());
+    }
+
+    @Test
+    public void writesNestedCollections() throws IOException {
+        Map<String, Object> inner = new LinkedHashMap<>();
+        inner.put("ids", new int[]{1, 2});
+        inner.put("tags", Arrays.asList("a", null));
+        inner.put("empty", Collections.emptyMap());
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("inner", inner);
+        root.put("list", Arrays.asList(Collections.singletonMap("k", true), new Object[]{}));
+        root.put("name", null);
+
+        writer().value((Object) root);
+
+        assertEquals("{\"inner\":{\"ids\":[1,2],\"tags\":[\"a\",null],\"empty\":{}},"
+                + "\"list\":[{\"k\":true},[]],\"name\":null}", buffer.readUtf8());
+    }
+
+    @Test
+    public void writesNumbers() throws IOException {
+        writer().value((Object) Arrays.asList(1, 2L, 1.5, 0.25f, new BigDecimal("1.10"), (short) 3));
+
+        assertEquals("[1,2,1.5,0.25,1.10,3]", buffer.readUtf8());
+    }
+
+    @Test
+    public void rejectsNonFiniteNumbers() throws IOException {
+        EasyJsonWriter writer = writer();
+        try {
+            writer.value(Double.NaN);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            writer.value((Object) Float.POSITIVE_INFINITY);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void writesOrgJsonAndEnums() throws Exception {
+        JSONObject object = new JSONObject();
+        object.put("array", new JSONArray().put(1).put("x"));
+        object.put("null", JSONObject.NULL);
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("object", object);
+        root.put("color", Color.RED);
+
+        writer().value((Object) root);
+
+        String json = buffer.readUtf8();
+        JSONObject parsed = new JSONObject(json);
+        assertEquals("RED", parsed.getString("color"));
+        assertEquals("x", parsed.getJSONObject("object").getJSONArray("array").getString(1));
+        assertEquals(JSONObject.NULL, parsed.getJSONObject("object").get("null"));
+    }
+
+    @Test
+    public void usesRegisteredAdapter() throws IOException {
+        writer(new EasyJsonAdapter<Point>() {
+            @Override
+            public void toJson(EasyJsonWriter writer, Point value) throws IOException {
+                writer.beginArray().value(value.x).value(value.y).endArray();
+            }
+        }).value((Object) Collections.singletonMap("p", new Point(1, 2)));
+
+        assertEquals("{\"p\":[1,2]}", buffer.readUtf8());
+    }
+
+    @Test
+    public void rejectsAdapterThatLeavesObjectOpen() throws IOException {
+        EasyJsonWriter writer = writer(new EasyJsonAdapter<Point>() {
+            @Override
+            public void toJson(EasyJsonWriter writer, Point value) throws IOException {
+                writer.beginObject();
+            }
+        });
+        try {
+            writer.value((Object) new Point(1, 2));
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void rejectsNestingProblems() throws IOException {
+        try {
+            writer().endObject();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            writer().beginArray().endObject();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            writer().beginArray().name("a");
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            writer().value(1L).value(2L);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void rejectsCircularReference() throws IOException {
+        List<Object> list = new ArrayList<>();
+        list.add(list);
+        try {
+            writer().value((Object) list);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void jsonBodyReportsLinkageErrorAsIOException() {
+        Map<Class<?>, EasyJsonAdapter<?>> adapters = new LinkedHashMap<>();
+        adapters.put(Point.class, new EasyJsonAdapter<Point>() {
+            @Override
+            public void toJson(EasyJsonWriter writer, Point value) {
+                throw new NoClassDefFoundError("org/json/JSONObject");
+            }
+        });
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("p", new Point(1, 2));
+        RequestBody body = new RequestBodyEncoder.JsonEncoder(new JsonAdapters(adapters)).encode(params);
+
+        // 在OkHttp的线程中只有IOException会回调onFailure
+        try {
+            body.writeTo(buffer);
+            fail();
+        } catch (IOException expected) {
+            assertTrue(expected.getCause() instanceof NoClassDefFoundError);
+        }
+    }
+
+    private EasyJsonWriter writer() {
+        return new EasyJsonWriter(buffer, JsonAdapters.EMPTY);
+    }
+
+    private EasyJsonWriter writer(EasyJsonAdapter<Point> adapter) {
+        Map<Class<?>, EasyJsonAdapter<?>> adapters = new LinkedHashMap<>();
+        adapters.put(Point.class, adapter);
+        return new EasyJsonWriter(buffer, new JsonAdapters(adapters));
+    }
+}
@@ -0,0 +1,114 @@
+package com.fly.easy;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * {@link EasyMemoryCache}的命中、304验证和按读取的字节数计算大小
+ */
+
+public class EasyMemoryCacheTest {
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    @Test
+    public void freshEntryIsServedWithoutNetwork() throws Exception {
+        server.enqueue(new MockResponse().setBody("cached"));
+        EasyOKHttp easyOKHttp = client();
+        EasyOptions options = options(60 * 1000);
+
+        assertEquals("cached", call(easyOKHttp, options).string());
+        assertEquals("cached", call(easyOKHttp, options).string());
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, easyOKHttp.memoryCacheStats().hitCount());
+    }
+
+    @Test
+    public void expiredEntryIsRevalidatedWithEtag() throws Exception {
+        server.enqueue(new MockResponse().setBody("cached").setHeader("ETag", "\"v1\""));
+        server.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"v1\""));
+        EasyOKHttp easyOKHttp = client();
+        EasyOptions options = options(1);
+
+        EasyResponse<Object> first = call(easyOKHttp, options);
+        Thread.sleep(10);
+        EasyResponse<Object> second = call(easyOKHttp, options);
+
+        // 304时继续使用缓存的响应
+        assertSame(first, second);
+        assertEquals("cached", second.string());
+        assertNull(server.takeRequest().getHeader("If-None-Match"));
+        RecordedRequest conditional = server.takeRequest();
+        assertEquals("\"v1\"", conditional.getHeader("If-None-Match"));
+        assertEquals(1, easyOKHttp.memoryCacheStats().hitCount());
+    }
+
+    @Test
+    public void changedEntryReplacesCache() throws Exception {
+        server.enqueue(new MockResponse().setBody("old").setHeader("ETag", "\"v1\""));
+        server.enqueue(new MockResponse().setBody("new").setHeader("ETag", "\"v2\""));
+        EasyOKHttp easyOKHttp = client();
+
+        assertEquals("old", call(easyOKHttp, options(1)).string());
+        Thread.sleep(10);
+        assertEquals("new", call(easyOKHttp, options(1)).string());
+        assertEquals("new", call(easyOKHttp, options(60 * 1000)).string());
+
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void chunkedConvertedEntryIsSizedByBytesRead() throws Exception {
+        byte[] body = new byte[1000];
+        server.enqueue(new MockResponse().setChunkedBody(new Buffer().write(body), 100));
+        server.enqueue(new MockResponse().setChunkedBody(new Buffer().write(body), 100));
+        EasyOKHttp easyOKHttp = client();
+        EasyOptions options = new EasyOptions.OKHttpOptionsBuilder()
+                .path("cached")
+                .responseType(byte[].class)
+                .memoryCacheTtl(60 * 1000)
+                .build();
+
+        // chunked的响应没有Content-Length
+        EasyResponse<Object> first = call(easyOKHttp, options);
+        EasyResponse<Object> second = call(easyOKHttp, options);
+
+        assertArrayEquals(body, (byte[]) first.entity());
+        assertSame(first.entity(), second.entity());
+        assertEquals(1, server.getRequestCount());
+        assertEquals(body.length, easyOKHttp.memoryCacheStats().size());
+    }
+
+    private EasyOKHttp client() {
+        return new EasyOKHttp.Builder(new Platform.Java())
+                .baseUrl(server.url("/").toString())
+                .memoryCache(64 * 1024)
+                .build();
+    }
+
+    private static EasyOptions options(long ttl) {
+        return new EasyOptions.OKHttpOptionsBuilder()
+                .path("cached")
+                .memoryCacheTtl(ttl)
+                .build();
+    }
+
+    private static EasyResponse<Object> call(EasyOKHttp easyOKHttp, EasyOptions options) throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        easyOKHttp.createCall("cached", options).enqueue(callback);
+        return callback.awaitResponse();
+    }
+}
@@ -0,0 +1,132 @@
+package com.fly.easy;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * {@link EasyRetryPolicy}的退避时间和只重试幂等请求的限制
+ */
+
+public class EasyRetryPolicyTest {
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    private EasyOKHttp easyOKHttp;
+
+    @Before
+    public void setUp() {
+        easyOKHttp = new EasyOKHttp.Builder(new Platform.Java())
+                .baseUrl(server.url("/").toString())
+                .build();
+    }
+
+    @Test
+    public void backoffGrowsExponentiallyUpToMaxBackoff() {
+        EasyRetryPolicy policy = new EasyRetryPolicy.Builder()
+                .backoff(100, 1000, 2)
+                .jitter(0)
+                .build();
+
+        assertEquals(100, policy.backoff(1));
+        assertEquals(200, policy.backoff(2));
+        assertEquals(400, policy.backoff(3));
+        assertEquals(800, policy.backoff(4));
+        assertEquals(1000, policy.backoff(5));
+        assertEquals(1000, policy.backoff(20));
+    }
+
+    @Test
+    public void jitterOnlyShortensTheBackoff() {
+        EasyRetryPolicy policy = new EasyRetryPolicy.Builder()
+                .backoff(100, 1000, 2)
+                .jitter(0.5)
+                .build();
+
+        for (int i = 0; i < 100; i++) {
+            long backoff = policy.backoff(2);
+            assertTrue(String.valueOf(backoff), backoff >= 100 && backoff <= 200);
+        }
+    }
+
+    @Test
+    public void retriesGetOnRetryableStatus() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        EasyResponse<Object> response = enqueue(EasyOptions.GET, fastRetry().build()).awaitResponse();
+
+        assertEquals("ok", response.string());
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void failsWithLastResponseAfterMaxAttempts() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setResponseCode(503));
+        }
+
+        Throwable failure = enqueue(EasyOptions.GET, fastRetry().maxAttempts(2).build()).awaitFailure();
+
+        assertEquals(503, ((EasyResponseFailedException) failure).getResponse().code());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void doesNotRetryOtherStatusCodes() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404));
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        enqueue(EasyOptions.GET, fastRetry().build()).awaitFailure();
+
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void doesNotRetryPostByDefault() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        enqueue(EasyOptions.POST, fastRetry().build()).awaitFailure();
+
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void retriesPostWhenNonIdempotentRetryIsEnabled() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        enqueue(EasyOptions.POST, fastRetry().retryNonIdempotent(true).build()).awaitResponse();
+
+        assertEquals(2, server.getRequestCount());
+        // 重试时重新写出请求体
+        server.takeRequest();
+        assertEquals("{\"a\":\"b\"}", server.takeRequest().getBody().readUtf8());
+    }
+
+    private static EasyRetryPolicy.Builder fastRetry() {
+        return new EasyRetryPolicy.Builder().backoff(1, 10, 2);
+    }
+
+    private RecordingCallback enqueue(int method, EasyRetryPolicy policy) {
+        EasyOptions options = new EasyOptions.OKHttpOptionsBuilder()
+                .path("retry")
+                .method(method)
+                .param("a", "b")
+                .retryPolicy(policy)
+                .build();
+        RecordingCallback callback = new RecordingCallback();
+        easyOKHttp.createCall("retry" + method, options).enqueue(callback);
+        return callback;
+    }
+}
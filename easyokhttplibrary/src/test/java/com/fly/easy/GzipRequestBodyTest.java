@@ -0,0 +1,188 @@
+package com.fly.easy;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSource;
+import okio.Okio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * {@link GzipRequestBody}的压缩 以及按阈值决定是否压缩
+ */
+
+public class GzipRequestBodyTest {
+
+    private static final MediaType TEXT = MediaType.parse("text/plain; charset=utf-8");
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    @Test
+    public void roundTrip() throws IOException {
+        String content = repeat("easy", 1000);
+        RequestBody body = new GzipRequestBody(RequestBody.create(TEXT, content));
+
+        Buffer compressed = new Buffer();
+        body.writeTo(compressed);
+
+        assertEquals(-1, body.contentLength());
+        assertEquals(TEXT, body.contentType());
+        assertTrue(compressed.size() < content.length());
+        assertEquals(content, gunzip(compressed));
+    }
+
+    @Test
+    public void canBeWrittenAgain() throws IOException {
+        RequestBody body = new GzipRequestBody(RequestBody.create(TEXT, "hello"));
+        Buffer first = new Buffer();
+        Buffer second = new Buffer();
+
+        body.writeTo(first);
+        body.writeTo(second);
+
+        assertEquals(first.snapshot(), second.snapshot());
+        assertEquals("hello", gunzip(second));
+    }
+
+    @Test
+    public void buffersBodyBelowTheLimit() throws IOException {
+        RequestBody small = GzipRequestBody.bufferIfSmaller(unknownLength("hello"), 6);
+
+        assertEquals(5, small.contentLength());
+        assertEquals(TEXT, small.contentType());
+        Buffer buffer = new Buffer();
+        small.writeTo(buffer);
+        assertEquals("hello", buffer.readUtf8());
+    }
+
+    @Test
+    public void doesNotBufferBodyReachingTheLimit() throws IOException {
+        assertNull(GzipRequestBody.bufferIfSmaller(unknownLength("hello"), 5));
+        assertNull(GzipRequestBody.bufferIfSmaller(unknownLength(repeat("easy", 10000)), 1024));
+    }
+
+    @Test
+    public void compressesLargeJsonBody() throws Exception {
+        String value = repeat("easy", 1000);
+
+        RecordedRequest request = post(gzipClient(1024), options().param("a", value));
+
+        assertEquals("gzip", request.getHeader("Content-Encoding"));
+        assertNull(request.getHeader("Content-Length"));
+        assertEquals("{\"a\":\"" + value + "\"}", gunzip(request.getBody()));
+    }
+
+    @Test
+    public void sendsSmallJsonBodyUncompressed() throws Exception {
+        RecordedRequest request = post(gzipClient(1024), options().param("a", "b"));
+
+        assertNull(request.getHeader("Content-Encoding"));
+        // 长度未知的小请求体已经写出到内存 长度已知
+        assertEquals("9", request.getHeader("Content-Length"));
+        assertEquals("{\"a\":\"b\"}", request.getBody().readUtf8());
+    }
+
+    @Test
+    public void perCallOptionOverridesThreshold() throws Exception {
+        RecordedRequest forced = post(defaultClient(), options().param("a", "b").gzipRequest(true));
+        assertEquals("gzip", forced.getHeader("Content-Encoding"));
+        assertEquals("{\"a\":\"b\"}", gunzip(forced.getBody()));
+
+        RecordedRequest disabled = post(gzipClient(1),
+                options().param("a", repeat("easy", 1000)).gzipRequest(false));
+        assertNull(disabled.getHeader("Content-Encoding"));
+    }
+
+    @Test
+    public void doesNotCompressMultipart() throws Exception {
+        RecordedRequest request = post(gzipClient(1),
+                options().postType(EasyOptions.MULTIPART).param("a", repeat("easy", 1000)));
+
+        assertNull(request.getHeader("Content-Encoding"));
+        assertTrue(request.getHeader("Content-Type").startsWith("multipart/"));
+    }
+
+    @Test
+    public void doesNotCompressForExcludedHost() throws Exception {
+        EasyOKHttp easyOKHttp = new EasyOKHttp.Builder(new Platform.Java())
+                .baseUrl(server.url("/").toString())
+                .gzipRequests(1)
+                .disableGzipRequests(server.getHostName())
+                .build();
+
+        RecordedRequest request = post(easyOKHttp, options().param("a", repeat("easy", 1000)));
+
+        assertNull(request.getHeader("Content-Encoding"));
+    }
+
+    private EasyOKHttp defaultClient() {
+        return new EasyOKHttp.Builder(new Platform.Java())
+                .baseUrl(server.url("/").toString())
+                .build();
+    }
+
+    private EasyOKHttp gzipClient(long minBytes) {
+        return new EasyOKHttp.Builder(new Platform.Java())
+                .baseUrl(server.url("/").toString())
+                .gzipRequests(minBytes)
+                .build();
+    }
+
+    private static EasyOptions.OKHttpOptionsBuilder options() {
+        return new EasyOptions.OKHttpOptionsBuilder()
+                .path("upload")
+                .method(EasyOptions.POST);
+    }
+
+    private RecordedRequest post(EasyOKHttp easyOKHttp, EasyOptions.OKHttpOptionsBuilder options)
+            throws Exception {
+        server.enqueue(new MockResponse().setBody("ok"));
+        RecordingCallback callback = new RecordingCallback();
+        easyOKHttp.createCall("upload" + server.getRequestCount(), options.build()).enqueue(callback);
+        callback.awaitResponse();
+        return server.takeRequest();
+    }
+
+    private static String gunzip(Buffer compressed) throws IOException {
+        return Okio.buffer(new GzipSource(compressed)).readUtf8();
+    }
+
+    private static String repeat(String s, int count) {
+        StringBuilder builder = new StringBuilder(s.length() * count);
+        for (int i = 0; i < count; i++) {
+            builder.append(s);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 和流式的JSON请求体一样 长度未知
+     */
+    private static RequestBody unknownLength(final String content) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return TEXT;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                sink.writeUtf8(content);
+            }
+        };
+    }
+}
@@ -0,0 +1,157 @@
+package com.fly.easy;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * {@link HedgedCall}的对冲时机和{@link HedgeBudget}的令牌消耗
+ */
+
+public class HedgedCallTest {
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    // 阻塞第一个请求 模拟很慢的原始请求
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void releaseServer() {
+        release.countDown();
+    }
+
+    @Test
+    public void slowPrimaryIsHedged() throws Exception {
+        blockFirstRequest();
+        EasyOKHttp easyOKHttp = client(new EasyHedgePolicy.Builder().delay(200).budget(1).build());
+        warmUp(easyOKHttp);
+
+        RecordingCallback callback = new RecordingCallback();
+        easyOKHttp.createCall("hedge", options()).enqueue(callback);
+
+        assertEquals("2", callback.awaitResponse().string());
+        EasyHedgeStats stats = easyOKHttp.hedgeStats();
+        assertEquals(1, stats.requestCount());
+        assertEquals(1, stats.hedgeCount());
+        assertEquals(1, stats.hedgeWinCount());
+    }
+
+    @Test
+    public void exhaustedBudgetSendsNoHedge() throws Exception {
+        blockFirstRequest();
+        EasyOKHttp easyOKHttp = client(new EasyHedgePolicy.Builder().delay(50).budget(0).build());
+
+        RecordingCallback callback = new RecordingCallback();
+        easyOKHttp.createCall("hedge", options()).enqueue(callback);
+        Thread.sleep(200);
+        release.countDown();
+
+        assertEquals("1", callback.awaitResponse().string());
+        assertEquals(0, easyOKHttp.hedgeStats().hedgeCount());
+        assertEquals(1, easyOKHttp.hedgeStats().throttledCount());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void primaryWinningBeforeDelayKeepsToken() throws Exception {
+        server.enqueue(new MockResponse().setBody("primary"));
+        EasyOKHttp easyOKHttp = client(null);
+        easyOKHttp.initHttpClient();
+        EasyHedgePolicy policy = new EasyHedgePolicy.Builder().delay(10 * 1000).budget(1).build();
+        ServiceMethod serviceMethod = new ServiceMethod.Builder(easyOKHttp, options())
+                .requestSignature("hedge")
+                .build();
+        final CountDownLatch responded = new CountDownLatch(1);
+        HedgedCall call = new HedgedCall(serviceMethod, policy, serviceMethod.toRequest(null),
+                EasyOptions.PRIORITY_NORMAL, new Callback() {
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+                responded.countDown();
+            }
+
+            @Override
+            public void onFailure(Call call, IOException e) {
+            }
+        });
+
+        call.start();
+        assertTrue(responded.await(10, TimeUnit.SECONDS));
+        // 原始请求返回后 对冲的定时任务才开始执行
+        call.run();
+
+        EasyHedgeStats stats = easyOKHttp.hedgeStats();
+        assertEquals(0, stats.hedgeCount());
+        assertEquals(0, stats.throttledCount());
+        assertEquals(1, server.getRequestCount());
+        // 令牌还在 下一次对冲可以发出
+        assertTrue(easyOKHttp.hedgeBudget.tryAcquire());
+    }
+
+    /**
+     * 先建立连接 避免第一次连接太慢时对冲请求先到达服务端
+     */
+    private static void warmUp(EasyOKHttp easyOKHttp) throws Exception {
+        EasyOptions options = new EasyOptions.OKHttpOptionsBuilder()
+                .path("warm-up")
+                .hedgePolicy(EasyHedgePolicy.NONE)
+                .build();
+        RecordingCallback callback = new RecordingCallback();
+        easyOKHttp.createCall("warm-up", options).enqueue(callback);
+        callback.awaitResponse();
+    }
+
+    /**
+     * 第一个对冲的请求等到release之后才返回 响应体是请求的序号
+     */
+    private void blockFirstRequest() {
+        final AtomicInteger count = new AtomicInteger();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                if (!"/hedge".equals(request.getPath())) {
+                    return new MockResponse();
+                }
+                int index = count.incrementAndGet();
+                if (index == 1) {
+                    release.await(10, TimeUnit.SECONDS);
+                }
+                return new MockResponse().setBody(String.valueOf(index));
+            }
+        });
+    }
+
+    private EasyOKHttp client(EasyHedgePolicy hedgePolicy) {
+        EasyOKHttp.Builder builder = new EasyOKHttp.Builder(new Platform.Java())
+                .baseUrl(server.url("/").toString());
+        if (hedgePolicy != null) {
+            builder.hedgePolicy(hedgePolicy);
+        }
+        return builder.build();
+    }
+
+    private static EasyOptions options() {
+        return new EasyOptions.OKHttpOptionsBuilder()
+                .path("hedge")
+                .retryPolicy(EasyRetryPolicy.NONE)
+                .build();
+    }
+}
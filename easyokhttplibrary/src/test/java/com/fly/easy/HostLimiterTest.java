@@ -0,0 +1,150 @@
+package com.fly.easy;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * {@link HostLimiter}根据耗时和限流调整并发限制
+ */
+
+public class HostLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void increasesAboutOnePerLimitSamples() {
+        HostLimiter limiter = new HostLimiter(4, 16);
+        for (int i = 0; i < 4; i++) {
+            limiter.onSample(SECOND, FAST, 4, false);
+        }
+        // 每个样本增加1/limit 4个样本还不到5
+        assertEquals(4, limiter.limit());
+
+        limiter.onSample(SECOND, FAST, 4, false);
+
+        assertEquals(5, limiter.limit());
+    }
+
+    @Test
+    public void doesNotIncreaseWhenFarBelowLimit() {
+        HostLimiter limiter = new HostLimiter(4, 16);
+        for (int i = 0; i < 100; i++) {
+            limiter.onSample(SECOND, FAST, 1, false);
+        }
+
+        assertEquals(4, limiter.limit());
+    }
+
+    @Test
+    public void neverExceedsMaxLimit() {
+        HostLimiter limiter = new HostLimiter(4, 6);
+        for (int i = 0; i < 100; i++) {
+            limiter.onSample(SECOND, FAST, limiter.limit(), false);
+        }
+
+        assertEquals(6, limiter.limit());
+    }
+
+    @Test
+    public void decreasesOncePerRttOnDrops() {
+        HostLimiter limiter = new HostLimiter(10, 16);
+
+        limiter.onSample(SECOND, FAST, 10, true);
+        assertEquals(9, limiter.limit());
+        // 同一个RTT内的其他丢弃不再减少
+        limiter.onSample(SECOND + FAST / 2, FAST, 10, true);
+        assertEquals(9, limiter.limit());
+
+        limiter.onSample(SECOND + FAST, FAST, 10, true);
+        assertEquals(8, limiter.limit());
+    }
+
+    @Test
+    public void decreasesWhenRttGrows() {
+        HostLimiter limiter = new HostLimiter(10, 16);
+        limiter.onSample(SECOND, FAST, 10, false);
+        // 平滑后 10 + 0.2 * 90 = 28ms 超过最小耗时的两倍
+        limiter.onSample(2 * SECOND, SLOW, 10, false);
+        assertEquals(9, limiter.limit());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(28), limiter.smoothedRtt());
+
+        limiter.onSample(3 * SECOND, SLOW, 10, false);
+
+        assertEquals(8, limiter.limit());
+    }
+
+    @Test
+    public void neverDropsBelowOne() {
+        HostLimiter limiter = new HostLimiter(1, 16);
+        for (int i = 1; i <= 10; i++) {
+            limiter.onSample(i * SECOND, FAST, 1, true);
+        }
+
+        assertEquals(1, limiter.limit());
+    }
+
+    @Test
+    public void freshClientHasNoHostLimits() {
+        EasyOKHttp easyOKHttp = new EasyOKHttp.Builder(new Platform.Java())
+                .baseUrl(server.url("/").toString())
+                .adaptiveHostLimit(4, 16)
+                .build();
+
+        assertTrue(easyOKHttp.hostLimits().isEmpty());
+    }
+
+    @Test
+    public void cacheReadsAreNotRttSamples() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                Thread.sleep(200);
+                return new MockResponse().setBody("ok").setHeader("Cache-Control", "no-store");
+            }
+        });
+        EasyOKHttp easyOKHttp = new EasyOKHttp.Builder(new Platform.Java())
+                .baseUrl(server.url("/").toString())
+                .diskCache(folder.getRoot(), 1024 * 1024)
+                .adaptiveHostLimit(4, 16)
+                .build();
+        EasyOptions options = new EasyOptions.OKHttpOptionsBuilder()
+                .path("cold")
+                .cachePolicy(EasyOptions.CACHE_FIRST)
+                .build();
+        RecordingCallback callback = new RecordingCallback();
+
+        // 先读取磁盘缓存 几乎不耗时 没有缓存时再访问网络
+        easyOKHttp.createCall("cold", options).enqueue(callback);
+        callback.awaitResponse();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (easyOKHttp.runningCallsCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        List<EasyHostLimit> limits = easyOKHttp.hostLimits();
+        assertEquals(1, limits.size());
+        assertTrue(limits.toString(), limits.get(0).rttMillis() >= 150);
+        // 接近0的缓存耗时会让网络请求看起来变慢 错误地降低限制
+        assertEquals(4, limits.get(0).limit());
+    }
+}
@@ -0,0 +1,148 @@
+package com.fly.easy;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * {@link LatencyHistogram}的桶边界和{@link EasyHistogram}的分位数
+ */
+
+public class LatencyHistogramTest {
+
+    private static final long MAX_TRACKED = 1L << 37;
+
+    @Test
+    public void smallValuesHaveTheirOwnBucket() {
+        for (int i = 0; i < 8; i++) {
+            assertEquals(i, LatencyHistogram.index(i));
+            assertEquals(i, LatencyHistogram.lowerBound(i));
+        }
+        assertEquals(8, LatencyHistogram.index(8));
+        assertEquals(15, LatencyHistogram.index(15));
+        assertEquals(16, LatencyHistogram.index(16));
+        assertEquals(16, LatencyHistogram.index(17));
+    }
+
+    @Test
+    public void everyBucketStartsAtItsLowerBound() {
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long lower = LatencyHistogram.lowerBound(i);
+            assertEquals(i, LatencyHistogram.index(lower));
+            if (i > 0) {
+                assertEquals(i - 1, LatencyHistogram.index(lower - 1));
+            }
+        }
+    }
+
+    @Test
+    public void relativeErrorIsAtMostOneEighth() {
+        for (int i = 8; i + 1 < LatencyHistogram.BUCKET_COUNT; i++) {
+            long lower = LatencyHistogram.lowerBound(i);
+            long width = LatencyHistogram.lowerBound(i + 1) - lower;
+            assertTrue(String.valueOf(i), width * 8 <= lower);
+        }
+    }
+
+    @Test
+    public void valuesBeyondTheRangeGoToTheLastBucket() {
+        int last = LatencyHistogram.BUCKET_COUNT - 1;
+
+        assertEquals(last, LatencyHistogram.index(MAX_TRACKED - 1));
+        assertEquals(last, LatencyHistogram.index(MAX_TRACKED));
+        assertEquals(last, LatencyHistogram.index(Long.MAX_VALUE));
+        assertTrue(LatencyHistogram.lowerBound(last) < MAX_TRACKED);
+    }
+
+    @Test
+    public void percentileReturnsBucketUpperBound() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        EasyHistogram snapshot = histogram.snapshot();
+
+        assertEquals(100, snapshot.count());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(5050), snapshot.sum());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), snapshot.max());
+        assertWithinOneEighth(TimeUnit.MILLISECONDS.toNanos(50), snapshot.percentile(0.5));
+        assertWithinOneEighth(TimeUnit.MILLISECONDS.toNanos(99), snapshot.percentile(0.99));
+        // 不超过记录的最大值
+        assertEquals(snapshot.max(), snapshot.percentile(1));
+        assertWithinOneEighth(TimeUnit.MILLISECONDS.toNanos(1), snapshot.percentile(0));
+    }
+
+    @Test
+    public void percentileOfHugeValueIsTheMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10);
+        histogram.record(Long.MAX_VALUE / 2);
+
+        EasyHistogram snapshot = histogram.snapshot();
+
+        assertEquals(10, snapshot.percentile(0.5));
+        assertEquals(Long.MAX_VALUE / 2, snapshot.percentile(0.99));
+    }
+
+    @Test
+    public void negativeValuesAreIgnored() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-1);
+
+        assertEquals(0, histogram.snapshot().count());
+        assertEquals(0, histogram.snapshot().percentile(0.99));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPercentileOutOfRange() {
+        new LatencyHistogram().snapshot().percentile(1.5);
+    }
+
+    @Test
+    public void bucketsExportNonEmptyBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.record(3);
+        histogram.record(100);
+
+        long[][] buckets = histogram.snapshot().buckets();
+
+        assertEquals(2, buckets.length);
+        assertEquals(3, buckets[0][0]);
+        assertEquals(2, buckets[0][1]);
+        assertEquals(LatencyHistogram.lowerBound(LatencyHistogram.index(100)), buckets[1][0]);
+        assertEquals(1, buckets[1][1]);
+    }
+
+    @Test
+    public void phasesWithoutSamplesShareTheEmptyHistogram() {
+        CallMetrics metrics = new CallMetrics("signature", "host");
+        metrics.record(CallMetrics.TTFB, 100);
+
+        EasyCallMetrics snapshot = metrics.snapshot();
+
+        assertEquals(1, snapshot.histogram(EasyCallMetrics.TTFB).count());
+        assertSame(EasyHistogram.EMPTY, snapshot.histogram(EasyCallMetrics.DNS));
+        assertEquals(0, snapshot.histogram(EasyCallMetrics.DNS).percentile(0.99));
+    }
+
+    @Test
+    public void registryKeepsAtMostMaxSizeSignatures() {
+        CallMetricsRegistry registry = new CallMetricsRegistry(4);
+        for (int i = 0; i < 20; i++) {
+            registry.get("signature" + i, "host").record(CallMetrics.TOTAL, i);
+        }
+
+        assertEquals(4, registry.snapshot().size());
+    }
+
+    private static void assertWithinOneEighth(long expected, long actual) {
+        assertTrue(expected + " vs " + actual, actual >= expected && actual <= expected + expected / 8);
+    }
+}
@@ -0,0 +1,157 @@
+package com.fly.easy;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 包含InputStream的multipart请求只发送一次 结束时关闭流
+ */
+
+public class MultipartPartsTest {
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void releaseServer() {
+        release.countDown();
+    }
+
+    @Test
+    public void streamBodyCanOnlyBeWrittenOnce() throws IOException {
+        TrackingInputStream stream = new TrackingInputStream("data");
+        RequestBody body = MultipartParts.encode(Collections.<String, Object>singletonMap("file", stream));
+        assertTrue(body instanceof OneShotRequestBody);
+
+        Buffer first = new Buffer();
+        body.writeTo(first);
+        assertTrue(first.readUtf8().contains("data"));
+        try {
+            body.writeTo(new Buffer());
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void streamBodyIsNotRetried() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("ok"));
+        EasyOKHttp easyOKHttp = client();
+        TrackingInputStream stream = new TrackingInputStream("data");
+        EasyOptions options = options(stream)
+                .retryPolicy(new EasyRetryPolicy.Builder()
+                        .backoff(1, 10, 2)
+                        .retryNonIdempotent(true)
+                        .build())
+                .build();
+
+        RecordingCallback callback = new RecordingCallback();
+        easyOKHttp.createCall("upload", options).enqueue(callback);
+
+        Throwable failure = callback.awaitFailure();
+        assertEquals(503, ((EasyResponseFailedException) failure).getResponse().code());
+        assertEquals(1, server.getRequestCount());
+        assertTrue(server.takeRequest().getBody().readUtf8().contains("data"));
+        assertTrue(stream.closed);
+    }
+
+    @Test
+    public void unsentStreamIsClosedOnFailure() throws Exception {
+        EasyOKHttp easyOKHttp = new EasyOKHttp.Builder(new Platform.Java())
+                .baseUrl(server.url("/").toString())
+                .build();
+        server.shutdown();
+        TrackingInputStream stream = new TrackingInputStream("data");
+
+        RecordingCallback callback = new RecordingCallback();
+        easyOKHttp.createCall("upload", options(stream).build()).enqueue(callback);
+
+        assertTrue(callback.awaitFailure() instanceof IOException);
+        assertTrue(stream.closed);
+    }
+
+    @Test
+    public void queuedStreamIsClosedOnCancel() throws Exception {
+        server.setDispatcher(new okhttp3.mockwebserver.Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                release.await(10, TimeUnit.SECONDS);
+                return new MockResponse();
+            }
+        });
+        EasyOKHttp easyOKHttp = client();
+        // 每个主机只能同时发出一个请求 上传请求在优先级队列中等待
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(1);
+        easyOKHttp.initHttpClient(new OkHttpClient.Builder().dispatcher(dispatcher).build());
+        RecordingCallback running = new RecordingCallback();
+        easyOKHttp.createCall("running", new EasyOptions.OKHttpOptionsBuilder()
+                .path("running")
+                .retryPolicy(EasyRetryPolicy.NONE)
+                .build()).enqueue(running);
+        TrackingInputStream stream = new TrackingInputStream("data");
+        EasyCall upload = easyOKHttp.createCall("upload", options(stream).build());
+        RecordingCallback callback = new RecordingCallback();
+        upload.enqueue(callback);
+
+        upload.cancel();
+
+        assertEquals("Canceled", callback.awaitFailure().getMessage());
+        assertTrue(stream.closed);
+        release.countDown();
+        running.awaitResponse();
+        assertEquals(1, server.getRequestCount());
+    }
+
+    private EasyOKHttp client() {
+        return new EasyOKHttp.Builder(new Platform.Java())
+                .baseUrl(server.url("/").toString())
+                .build();
+    }
+
+    private static EasyOptions.OKHttpOptionsBuilder options(TrackingInputStream stream) {
+        return new EasyOptions.OKHttpOptionsBuilder()
+                .path("upload")
+                .method(EasyOptions.POST)
+                .postType(EasyOptions.MULTIPART)
+                .retryPolicy(EasyRetryPolicy.NONE)
+                .param("file", stream);
+    }
+
+    private static final class TrackingInputStream extends ByteArrayInputStream {
+        volatile boolean closed;
+
+        TrackingInputStream(String data) {
+            super(data.getBytes());
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
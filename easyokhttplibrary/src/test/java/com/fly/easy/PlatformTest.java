@@ -0,0 +1,46 @@
+package com.fly.easy;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 本地单元测试中android.os.Build可以加载 但SDK_INT为0 应该使用{@link Platform.Java}
+ */
+
+public class PlatformTest {
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    @Test
+    public void localUnitTestsUseJvmPlatform() {
+        assertTrue(Platform.get().getClass().getName(), Platform.get() instanceof Platform.Java);
+    }
+
+    @Test
+    public void publicBuilderWorksInLocalUnitTests() throws Exception {
+        server.enqueue(new MockResponse().setBody("ok"));
+        EasyOKHttp easyOKHttp = new EasyOKHttp.Builder()
+                .baseUrl(server.url("/").toString())
+                .build();
+        EasyOptions options = new EasyOptions.OKHttpOptionsBuilder()
+                .path("platform")
+                .responseType(String.class)
+                .build();
+
+        // 主线程的回调和API 24以下没有的CompletableFuture都不可用时会失败
+        CompletableFuture<EasyResponse<?>> future = easyOKHttp.createCall("platform", options, CompletableFuture.class);
+
+        assertEquals("ok", future.get(10, TimeUnit.SECONDS).entity());
+    }
+}
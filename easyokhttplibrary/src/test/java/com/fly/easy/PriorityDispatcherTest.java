@@ -0,0 +1,121 @@
+package com.fly.easy;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * {@link PriorityDispatcher}的排队顺序 同时只允许一个请求 其他请求在队列中等待
+ */
+
+public class PriorityDispatcherTest {
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    private final CountDownLatch unblock = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        unblock.countDown();
+    }
+
+    @Test
+    public void higherPriorityLeavesTheQueueFirst() throws Exception {
+        EasyOKHttp easyOKHttp = create(10 * 1000L);
+        block(easyOKHttp);
+
+        RecordingCallback low = enqueue(easyOKHttp, "low", EasyOptions.PRIORITY_LOW);
+        RecordingCallback normal = enqueue(easyOKHttp, "normal", EasyOptions.PRIORITY_NORMAL);
+        RecordingCallback high = enqueue(easyOKHttp, "high", EasyOptions.PRIORITY_HIGH);
+        assertEquals(3, easyOKHttp.dispatcher.queuedCallsCount());
+        unblock.countDown();
+
+        assertEquals("/high", server.takeRequest().getPath());
+        assertEquals("/normal", server.takeRequest().getPath());
+        assertEquals("/low", server.takeRequest().getPath());
+        low.awaitResponse();
+        normal.awaitResponse();
+        high.awaitResponse();
+    }
+
+    @Test
+    public void samePriorityIsFifo() throws Exception {
+        EasyOKHttp easyOKHttp = create(10 * 1000L);
+        block(easyOKHttp);
+
+        for (int i = 0; i < 3; i++) {
+            enqueue(easyOKHttp, "call" + i, EasyOptions.PRIORITY_NORMAL);
+        }
+        unblock.countDown();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("/call" + i, server.takeRequest().getPath());
+        }
+    }
+
+    @Test
+    public void waitingCallsAgeIntoHigherPriority() throws Exception {
+        EasyOKHttp easyOKHttp = create(20);
+        block(easyOKHttp);
+
+        enqueue(easyOKHttp, "low", EasyOptions.PRIORITY_LOW);
+        // 等待超过两个aging 低优先级的请求已经相当于高优先级
+        Thread.sleep(100);
+        enqueue(easyOKHttp, "high", EasyOptions.PRIORITY_HIGH);
+        unblock.countDown();
+
+        assertEquals("/low", server.takeRequest().getPath());
+        assertEquals("/high", server.takeRequest().getPath());
+    }
+
+    private EasyOKHttp create(long priorityAging) {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                if (request.getPath().equals("/block")) {
+                    unblock.await(10, TimeUnit.SECONDS);
+                }
+                return new MockResponse().setBody("ok");
+            }
+        });
+        EasyOKHttp easyOKHttp = new EasyOKHttp.Builder(new Platform.Java())
+                .baseUrl(server.url("/").toString())
+                .priorityAging(priorityAging)
+                .build();
+        okhttp3.Dispatcher dispatcher = new okhttp3.Dispatcher();
+        dispatcher.setMaxRequests(1);
+        easyOKHttp.initHttpClient(new OkHttpClient.Builder().dispatcher(dispatcher).build());
+        return easyOKHttp;
+    }
+
+    /**
+     * 占用唯一的名额 之后的请求都要排队
+     */
+    private void block(EasyOKHttp easyOKHttp) throws InterruptedException {
+        enqueue(easyOKHttp, "block", EasyOptions.PRIORITY_NORMAL);
+        assertEquals("/block", server.takeRequest().getPath());
+    }
+
+    private static RecordingCallback enqueue(EasyOKHttp easyOKHttp, String path, int priority) {
+        EasyOptions options = new EasyOptions.OKHttpOptionsBuilder()
+                .path(path)
+                .priority(priority)
+                .build();
+        RecordingCallback callback = new RecordingCallback();
+        easyOKHttp.createCall(path, options).enqueue(callback);
+        return callback;
+    }
+}
@@ -0,0 +1,155 @@
+package com.fly.easy;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * {@link PublisherCallAdapterFactory}发出的信号 收到request之后才发出请求
+ */
+
+public class PublisherCallAdapterFactoryTest {
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    private EasyOKHttp easyOKHttp;
+
+    @Before
+    public void setUp() {
+        easyOKHttp = new EasyOKHttp.Builder(new Platform.Java())
+                .baseUrl(server.url("/").toString())
+                .addCallAdapterFactory(PublisherCallAdapterFactory.create())
+                .build();
+    }
+
+    @Test
+    public void emitsResponseAfterRequest() throws Exception {
+        server.enqueue(new MockResponse().setBody("ok"));
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+
+        publisher().subscribe(subscriber);
+        assertEquals(0, server.getRequestCount());
+        subscriber.subscription.request(1);
+        subscriber.await();
+
+        assertEquals("[onNext ok, onComplete]", subscriber.events.toString());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void eachSubscriptionSendsANewRequest() throws Exception {
+        server.enqueue(new MockResponse().setBody("first"));
+        server.enqueue(new MockResponse().setBody("second"));
+        Publisher<EasyResponse<?>> publisher = publisher();
+
+        RecordingSubscriber first = new RecordingSubscriber();
+        publisher.subscribe(first);
+        first.subscription.request(1);
+        first.await();
+        RecordingSubscriber second = new RecordingSubscriber();
+        publisher.subscribe(second);
+        second.subscription.request(Long.MAX_VALUE);
+        second.await();
+
+        assertEquals("[onNext first, onComplete]", first.events.toString());
+        assertEquals("[onNext second, onComplete]", second.events.toString());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void failedResponseEmitsError() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(500));
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+
+        publisher().subscribe(subscriber);
+        subscriber.subscription.request(1);
+        subscriber.await();
+
+        assertEquals("[onError EasyResponseFailedException]", subscriber.events.toString());
+    }
+
+    @Test
+    public void nonPositiveRequestEmitsError() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+
+        publisher().subscribe(subscriber);
+        subscriber.subscription.request(0);
+        subscriber.subscription.request(1);
+        subscriber.await();
+
+        assertEquals("[onError IllegalArgumentException]", subscriber.events.toString());
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test
+    public void canceledSubscriptionSendsNothing() throws Exception {
+        server.enqueue(new MockResponse().setBody("ok"));
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+
+        publisher().subscribe(subscriber);
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(1);
+        Thread.sleep(100);
+
+        assertEquals(0, server.getRequestCount());
+        assertTrue(subscriber.events.isEmpty());
+    }
+
+    private Publisher<EasyResponse<?>> publisher() {
+        EasyOptions options = new EasyOptions.OKHttpOptionsBuilder()
+                .path("publisher")
+                .responseType(String.class)
+                .retryPolicy(EasyRetryPolicy.NONE)
+                .build();
+        return easyOKHttp.createCall("publisher", options, Publisher.class);
+    }
+
+    private static final class RecordingSubscriber implements Subscriber<EasyResponse<?>> {
+
+        private final CountDownLatch terminated = new CountDownLatch(1);
+        final List<String> events = new CopyOnWriteArrayList<>();
+        volatile Subscription subscription;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(EasyResponse<?> response) {
+            events.add("onNext " + response.entity());
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            events.add("onError " + t.getClass().getSimpleName());
+            terminated.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            events.add("onComplete");
+            terminated.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue("timeout", terminated.await(10, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.fly.easy;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * GET请求参数的编码 重复的参数名和模板中原有的参数
+ */
+
+public class QueryEncodingTest {
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    @Test
+    public void encodesReservedCharacters() {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("q", "a b&c=d#e?中");
+        params.put("k&=", "+");
+
+        assertEquals("/?q=a%20b%26c%3Dd%23e?%E4%B8%AD&k%26%3D=%2B", encode(params));
+    }
+
+    @Test
+    public void expandsCollectionsAndArraysIntoRepeatedKeys() {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("id", Arrays.asList(1, 2));
+        params.put("tag", new String[]{"x", "y"});
+        params.put("n", new int[]{3});
+
+        assertEquals("/?id=1&id=2&tag=x&tag=y&n=3", encode(params));
+    }
+
+    @Test
+    public void nullValueWritesNameOnly() {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("flag", null);
+        params.put("list", Arrays.asList("a", null));
+
+        assertEquals("/?flag&list=a&list", encode(params));
+    }
+
+    @Test
+    public void emptyCollectionWritesNothing() {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("empty", new Object[0]);
+        params.put("a", 1);
+
+        assertEquals("/?a=1", encode(params));
+    }
+
+    @Test
+    public void keepsQueryOfTheTemplate() throws Exception {
+        server.enqueue(new MockResponse().setBody("ok"));
+        EasyOKHttp easyOKHttp = new EasyOKHttp.Builder(new Platform.Java())
+                .baseUrl(server.url("/").toString())
+                .build();
+        EasyOptions options = new EasyOptions.OKHttpOptionsBuilder()
+                .path("search?v=1")
+                .param("q", "a b")
+                .param("v", Arrays.asList(2, 3))
+                .build();
+        RecordingCallback callback = new RecordingCallback();
+
+        easyOKHttp.createCall("search", options).enqueue(callback);
+        callback.awaitResponse();
+
+        assertEquals("/search?v=1&q=a%20b&v=2&v=3", server.takeRequest().getPath());
+    }
+
+    private static String encode(Map<String, Object> params) {
+        HttpUrl.Builder urlBuilder = HttpUrl.parse("http://example.com/").newBuilder();
+        ServiceMethod.addQueryParameters(urlBuilder, params);
+        HttpUrl url = urlBuilder.build();
+        return url.encodedPath() + "?" + url.encodedQuery();
+    }
+}
@@ -0,0 +1,50 @@
+package com.fly.easy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * 记录回调的结果 测试线程中等待
+ */
+
+final class RecordingCallback implements EasyCallback<Object> {
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private volatile EasyResponse<Object> response;
+    private volatile Throwable failure;
+
+    @Override
+    public void onResponse(EasyCall call, EasyResponse<Object> response) {
+        this.response = response;
+        latch.countDown();
+    }
+
+    @Override
+    public void onFailure(EasyCall call, Throwable t) {
+        this.failure = t;
+        latch.countDown();
+    }
+
+    private void await() throws InterruptedException {
+        assertTrue("timeout", latch.await(10, TimeUnit.SECONDS));
+    }
+
+    EasyResponse<Object> awaitResponse() throws Exception {
+        await();
+        if (failure != null) {
+            throw new AssertionError("Expected a response but failed with " + failure);
+        }
+        return response;
+    }
+
+    Throwable awaitFailure() throws Exception {
+        await();
+        if (failure == null) {
+            throw new AssertionError("Expected a failure but received " + response.code());
+        }
+        return failure;
+    }
+}
@@ -0,0 +1,95 @@
+package com.fly.easy;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 作者 ${郭鹏飞}.<br/>
+ * {@link ServiceMethodCache}的CLOCK淘汰
+ */
+
+public class ServiceMethodCacheTest {
+
+    private final EasyOKHttp easyOKHttp = new EasyOKHttp.Builder(new Platform.Java())
+            .baseUrl("http://example.com/")
+            .build();
+    private final EasyOptions options = new EasyOptions.OKHttpOptionsBuilder().path("user").build();
+
+    @Test
+    public void hitReturnsSameTemplate() {
+        ServiceMethodCache cache = new ServiceMethodCache(easyOKHttp, 2);
+        ServiceMethod first = cache.get("a", options);
+
+        assertSame(first, cache.get("a", options));
+        EasyCacheStats stats = cache.stats();
+        assertEquals(1, stats.hitCount());
+        assertEquals(1, stats.missCount());
+        assertEquals(1, stats.size());
+    }
+
+    @Test
+    public void referencedEntryGetsSecondChance() {
+        ServiceMethodCache cache = new ServiceMethodCache(easyOKHttp, 2);
+        ServiceMethod a = cache.get("a", options);
+        ServiceMethod b = cache.get("b", options);
+        // a被访问过 淘汰时跳过一次 b被淘汰
+        cache.get("a", options);
+        cache.get("c", options);
+
+        assertSame(a, cache.get("a", options));
+        assertNotSame(b, cache.get("b", options));
+        assertEquals(2, cache.stats().size());
+    }
+
+    @Test
+    public void newEntryIsEvictedWhenEveryOldEntryIsReferenced() {
+        ServiceMethodCache cache = new ServiceMethodCache(easyOKHttp, 2);
+        ServiceMethod a = cache.get("a", options);
+        ServiceMethod b = cache.get("b", options);
+        cache.get("a", options);
+        cache.get("b", options);
+        // 新加入的c没有访问标记 只访问一次的key不会挤掉常用的模板
+        ServiceMethod c = cache.get("c", options);
+
+        EasyCacheStats stats = cache.stats();
+        assertEquals(2, stats.size());
+        assertEquals(1, stats.evictionCount());
+        assertSame(a, cache.get("a", options));
+        assertSame(b, cache.get("b", options));
+        assertNotSame(c, cache.get("c", options));
+    }
+
+    @Test
+    public void sizeNeverExceedsMaxSize() {
+        ServiceMethodCache cache = new ServiceMethodCache(easyOKHttp, 4);
+        for (int i = 0; i < 100; i++) {
+            cache.get("key" + i, options);
+            cache.get("key" + (i / 2), options);
+            assertTrue(cache.stats().size() <= 4);
+        }
+    }
+
+    @Test
+    public void failedTemplateIsNotCached() {
+        ServiceMethodCache cache = new ServiceMethodCache(easyOKHttp, 2);
+        // 没有配置memoryCache
+        EasyOptions invalid = new EasyOptions.OKHttpOptionsBuilder().path("user").memoryCacheTtl(1000).build();
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.get("a", invalid);
+                fail();
+            } catch (IllegalStateException expected) {
+            }
+        }
+
+        assertEquals(2, cache.stats().missCount());
+        assertEquals(0, cache.stats().size());
+        cache.get("a", options);
+        assertEquals(1, cache.stats().size());
+    }
+}